@@ -0,0 +1,144 @@
+package com.hartz.inventory;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.hartz.inventory.model.Mrmart;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that full downloads and deltas end up row by row in the catalog database, and
+ * compares a one percent delta with downloading the whole catalog again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogDaoTest {
+
+    private static final int CATALOG_SIZE = 50000;
+    private static final int ROUNDS = 3;
+    //a database of its own, the app's inventory.db keeps its catalogs
+    private static final String DATABASE = "catalog-dao-test.db";
+
+    private InventoryDbHelper helper;
+    private CatalogDao dao;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE);
+        helper = new InventoryDbHelper(context, DATABASE);
+        dao = new CatalogDao(helper);
+        dao.replaceAll(Catalog.MRMART, new StringReader("{\"error\":false,\"mart\":["
+                + "{\"MRMART_GROUPID\":\"G1\",\"MRMART_ARTICLEID\":\"A1\",\"MRMART_ARTICLENAME\":\"Bolt\"},"
+                + "{\"MRMART_GROUPID\":\"G1\",\"MRMART_ARTICLEID\":\"A2\",\"MRMART_ARTICLENAME\":\"Nut\"}]}"),
+                new SyncState("\"v1\"", null, "100"));
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DATABASE);
+    }
+
+    @Test
+    public void replaceAllStoresRowsAndState() throws Exception {
+        assertEquals(2, dao.count(Catalog.MRMART));
+        SyncState state = dao.getSyncState(Catalog.MRMART);
+        assertEquals("\"v1\"", state.getEtag());
+        assertNull(state.getLastModified());
+        assertEquals("100", state.getWatermark());
+    }
+
+    @Test
+    public void applyDeltaUpsertsAndDeletesByKey() throws Exception {
+        assertTrue(dao.applyDelta(Catalog.MRMART, new StringReader("{\"error\":false,"
+                + "\"upserted\":[{\"MRMART_GROUPID\":\"G1\",\"MRMART_ARTICLEID\":\"A2\",\"MRMART_ARTICLENAME\":\"Hex nut\"},"
+                + "{\"MRMART_GROUPID\":\"G2\",\"MRMART_ARTICLEID\":\"A1\",\"MRMART_ARTICLENAME\":\"Washer\"}],"
+                + "\"deleted\":[{\"MRMART_GROUPID\":\"G1\",\"MRMART_ARTICLEID\":\"A1\"}]}"),
+                new SyncState(null, null, "101")));
+
+        ArrayList<Mrmart> rows = dao.getMrmartList();
+        assertEquals(2, rows.size());
+        assertFalse(rows.contains(new Mrmart("G1", "A1", null)));
+        assertTrue(rows.contains(new Mrmart("G2", "A1", null)));
+        //equals only compares the keys
+        assertEquals("Hex nut", rows.get(rows.indexOf(new Mrmart("G1", "A2", null))).getArticleName());
+        assertEquals("101", dao.getSyncState(Catalog.MRMART).getWatermark());
+    }
+
+    @Test
+    public void errorResponseKeepsStoredCopy() throws Exception {
+        assertFalse(dao.replaceAll(Catalog.MRMART, new StringReader("{\"error\":true}"),
+                new SyncState(null, null, null)));
+        assertEquals(2, dao.count(Catalog.MRMART));
+        assertEquals("100", dao.getSyncState(Catalog.MRMART).getWatermark());
+    }
+
+    @Test
+    public void errorAfterTheRowsRollsBackTheFullList() throws Exception {
+        //the rows are written as they are parsed, the error comes after them
+        assertFalse(dao.replaceAll(Catalog.MRMART, new StringReader("{\"mart\":["
+                + "{\"MRMART_GROUPID\":\"G9\",\"MRMART_ARTICLEID\":\"A9\",\"MRMART_ARTICLENAME\":\"Baru\"}],"
+                + "\"error\":true}"), new SyncState(null, null, "200")));
+        assertEquals(2, dao.count(Catalog.MRMART));
+        assertFalse(dao.getMrmartList().contains(new Mrmart("G9", "A9", null)));
+        assertEquals("100", dao.getSyncState(Catalog.MRMART).getWatermark());
+    }
+
+    @Test
+    public void onePercentDeltaIsMuchFasterThanAFullDownload() throws Exception {
+        String full = catalog(0, CATALOG_SIZE, "");
+        //every hundredth row changed, half of them updated, half deleted
+        StringBuilder upserted = new StringBuilder();
+        StringBuilder deleted = new StringBuilder();
+        for (int i = 0; i < CATALOG_SIZE; i += 100) {
+            StringBuilder target = (i / 100) % 2 == 0 ? upserted : deleted;
+            if (target.length() > 0) target.append(',');
+            target.append(row(i, " baru"));
+        }
+        String delta = "{\"error\":false,\"upserted\":[" + upserted + "],\"deleted\":[" + deleted + "]}";
+
+        dao.replaceAll(Catalog.MRMART, new StringReader(full), new SyncState(null, null, "1"));
+        long fullNanos = 0;
+        long deltaNanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            dao.replaceAll(Catalog.MRMART, new StringReader(full), new SyncState(null, null, "1"));
+            fullNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            dao.applyDelta(Catalog.MRMART, new StringReader(delta), new SyncState(null, null, "2"));
+            deltaNanos += System.nanoTime() - start;
+        }
+
+        Log.i("CatalogDaoTest", CATALOG_SIZE + " articles: full download " + fullNanos / ROUNDS / 1000000
+                + " ms, 1% delta " + deltaNanos / ROUNDS / 1000000 + " ms");
+        assertEquals(CATALOG_SIZE - CATALOG_SIZE / 200, dao.count(Catalog.MRMART));
+        //500 rows written instead of 50000, anything close to the full time means the delta path is wrong
+        assertTrue("delta " + deltaNanos + " ns, full " + fullNanos + " ns", deltaNanos * 5 < fullNanos);
+    }
+
+    private static String catalog(int from, int to, String suffix) {
+        StringBuilder body = new StringBuilder("{\"error\":false,\"mart\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) body.append(',');
+            body.append(row(i, suffix));
+        }
+        return body.append("]}").toString();
+    }
+
+    private static String row(int i, String suffix) {
+        return "{\"MRMART_GROUPID\":\"G" + (i % 97) + "\",\"MRMART_ARTICLEID\":\"A" + i
+                + "\",\"MRMART_ARTICLENAME\":\"Barang " + i + suffix + "\"}";
+    }
+}
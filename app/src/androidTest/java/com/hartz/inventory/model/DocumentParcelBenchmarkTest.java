@@ -0,0 +1,147 @@
+package com.hartz.inventory.model;
+
+import android.os.Parcel;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares handing a 200 line document to the edit form as Parcelable with the
+ * Serializable extras it used before, written to a Parcel like an Intent extra is.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DocumentParcelBenchmarkTest {
+
+    private static final int LINES = 200;
+    private static final int ITERATIONS = 200;
+
+    @Test
+    public void documentsSurviveTheRoundTrip() {
+        PPRE ppre = ppre();
+        Parcel parcel = Parcel.obtain();
+        parcel.writeParcelable(ppre, 0);
+        parcel.setDataPosition(0);
+        PPRE copy = parcel.readParcelable(PPRE.class.getClassLoader());
+        parcel.recycle();
+        assertEquals(ppre.getId(), copy.getId());
+        assertEquals(LINES, copy.getItemList().size());
+        assertEquals(ppre.itemListToString(), copy.itemListToString());
+
+        SSJDE ssjde = new SSJDE("2017-01-09 08:00:00", new Customer("C1", "Toko Makmur"));
+        ArrayList<Mfgart> lines = new ArrayList<Mfgart>();
+        lines.add(new Mfgart("G1", "A1", "Sendal", 3, "PSG", "warna hitam"));
+        ssjde.setItemList(lines);
+        parcel = Parcel.obtain();
+        parcel.writeParcelable(ssjde, 0);
+        parcel.setDataPosition(0);
+        SSJDE ssjdeCopy = parcel.readParcelable(SSJDE.class.getClassLoader());
+        parcel.recycle();
+        assertEquals("Toko Makmur", ssjdeCopy.getCustomer().getName());
+        assertEquals(ssjde.itemListToString(), ssjdeCopy.itemListToString());
+    }
+
+    @Test
+    public void parcelableIsFasterAndSmallerThanSerializable() {
+        PPRE ppre = ppre();
+        LegacyPPRE legacy = new LegacyPPRE(ppre);
+        //warm up
+        for (int i = 0; i < 20; i++) {
+            roundTrip(ppre, false);
+            roundTrip(legacy, true);
+        }
+
+        long start = System.nanoTime();
+        int parcelSize = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            parcelSize = roundTrip(ppre, false);
+        }
+        long parcelNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        int serialSize = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            serialSize = roundTrip(legacy, true);
+        }
+        long serialNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.i("ParcelBenchmark", LINES + " lines: Parcelable " + parcelNanos / 1000 + " us, "
+                + parcelSize + " bytes; Serializable " + serialNanos / 1000 + " us, " + serialSize + " bytes");
+        assertTrue(parcelSize < serialSize);
+        assertTrue(parcelNanos < serialNanos);
+    }
+
+    /**
+     * write and read the document the way an Intent extra crosses the Binder
+     * @return size of the marshalled extra
+     */
+    private static int roundTrip(Object document, boolean serializable) {
+        Parcel out = Parcel.obtain();
+        if (serializable) {
+            out.writeSerializable((Serializable) document);
+        } else {
+            out.writeParcelable((PPRE) document, 0);
+        }
+        byte[] bytes = out.marshall();
+        out.recycle();
+
+        Parcel in = Parcel.obtain();
+        in.unmarshall(bytes, 0, bytes.length);
+        in.setDataPosition(0);
+        Object copy = serializable ? in.readSerializable() : in.readParcelable(PPRE.class.getClassLoader());
+        in.recycle();
+        assertNotNull(copy);
+        return bytes.length;
+    }
+
+    private static PPRE ppre() {
+        ArrayList<Mrmart> lines = new ArrayList<Mrmart>();
+        for (int i = 0; i < LINES; i++) {
+            lines.add(new Mrmart("G" + i % 7, "ART" + i, "Artikel nomor " + i, i + 1, "PCS", "catatan " + i));
+        }
+        PPRE ppre = new PPRE("2017-01-05 10:00:00");
+        ppre.setItemList(lines);
+        return ppre;
+    }
+
+    /**
+     * same object graph as PPRE and Mrmart had as Serializable classes
+     */
+    private static class LegacyPPRE implements Serializable {
+        private final String id;
+        private final String user;
+        private final ArrayList<LegacyLine> itemList = new ArrayList<LegacyLine>();
+
+        LegacyPPRE(PPRE ppre) {
+            id = ppre.getId();
+            user = ppre.getUser();
+            for (Mrmart mrmart : ppre.getItemList()) {
+                itemList.add(new LegacyLine(mrmart));
+            }
+        }
+    }
+
+    private static class LegacyLine implements Serializable {
+        private final String groupID;
+        private final String articleID;
+        private final String articleName;
+        private final int quantity;
+        private final String satuan;
+        private final String note;
+
+        LegacyLine(Mrmart mrmart) {
+            groupID = mrmart.getGroupID();
+            articleID = mrmart.getArticleID();
+            articleName = mrmart.getArticleName();
+            quantity = mrmart.getQuantity();
+            satuan = mrmart.getSatuan();
+            note = mrmart.getNote();
+        }
+    }
+}
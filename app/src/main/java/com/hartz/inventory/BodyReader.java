@@ -0,0 +1,63 @@
+package com.hartz.inventory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads a whole response body into one byte array and decodes it as UTF-8 once.
+ *
+ * Reading line by line made a String for every line, then copied them all into a
+ * StringBuilder that grew by doubling, with the platform charset. Here the bytes go
+ * straight into an array sized from Content-Length, so a catalog of a few megabytes costs
+ * the array and the final String, and the text is exactly what the server sent.
+ */
+public class BodyReader {
+
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * array size when the length is not known, chunked or compressed responses
+     */
+    static final int DEFAULT_SIZE = 8192;
+    /**
+     * a Content-Length above this is not trusted for the first allocation
+     */
+    static final int MAX_PRESIZE = 16 * 1024 * 1024;
+
+    private BodyReader() {
+    }
+
+    /**
+     * read the stream to the end and close it
+     * @param lengthHint Content-Length of the body as it is read, -1 if unknown
+     * @return the body decoded as UTF-8
+     */
+    public static String readString(InputStream in, long lengthHint) throws IOException {
+        byte[] buffer = new byte[initialSize(lengthHint)];
+        int length = 0;
+        try {
+            while (true) {
+                if (length == buffer.length) {
+                    //a body of exactly the announced length ends here, check before growing
+                    int next = in.read();
+                    if (next == -1) break;
+                    buffer = Arrays.copyOf(buffer, Math.max(DEFAULT_SIZE, buffer.length * 2));
+                    buffer[length++] = (byte) next;
+                }
+                int read = in.read(buffer, length, buffer.length - length);
+                if (read == -1) break;
+                length += read;
+            }
+        } finally {
+            in.close();
+        }
+        return new String(buffer, 0, length, UTF_8);
+    }
+
+    private static int initialSize(long lengthHint) {
+        if (lengthHint < 0 || lengthHint > MAX_PRESIZE) return DEFAULT_SIZE;
+        return (int) lengthHint;
+    }
+}
@@ -0,0 +1,31 @@
+package com.hartz.inventory;
+
+/**
+ * master data lists downloaded at login, with the endpoint each one comes from and the
+ * preference key older versions of the app kept it under
+ */
+public enum Catalog {
+    MRMART(HttpHandler.LINK_MRMART_GET, SharedPrefsHelper.MRMART_PREFS),
+    MFGART(HttpHandler.LINK_MFGART_GET, SharedPrefsHelper.MFGART_PREFS),
+    SATUAN(HttpHandler.LINK_SATUAN_GET, SharedPrefsHelper.SATUAN_PREFS),
+    CUSTOMER(HttpHandler.LINK_CUSTOMER_GET, SharedPrefsHelper.CUSTOMER_PREFS);
+
+    private final String link;
+    private final String prefsKey;
+
+    Catalog(String link, String prefsKey) {
+        this.link = link;
+        this.prefsKey = prefsKey;
+    }
+
+    public String getLink() {
+        return link;
+    }
+
+    /**
+     * @return preference key of the json string stored before the catalog database
+     */
+    public String getPrefsKey() {
+        return prefsKey;
+    }
+}
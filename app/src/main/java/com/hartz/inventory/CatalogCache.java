@@ -0,0 +1,184 @@
+package com.hartz.inventory;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import com.hartz.inventory.model.Customer;
+import com.hartz.inventory.model.Mfgart;
+import com.hartz.inventory.model.Mrmart;
+import com.hartz.inventory.model.Satuan;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Process-wide copy of the master data catalogs, shared by every form.
+ *
+ * The catalogs are read from {@link CatalogDao} once, on a background thread started by
+ * {@link InventoryApplication} and again after every sync, and handed out as an immutable
+ * {@link Snapshot}. Opening a form only picks up the current snapshot.
+ */
+public class CatalogCache {
+
+    private static CatalogCache instance;
+
+    private final CatalogDao dao;
+    private final Object loadLock = new Object();
+    private volatile Snapshot snapshot;
+
+    public static synchronized CatalogCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new CatalogCache(new CatalogDao(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    private CatalogCache(CatalogDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * load the snapshot and build its search indexes on a background thread
+     */
+    public void preload() {
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                long start = System.currentTimeMillis();
+                get().buildIndexes();
+                Log.v("catalog cache", "loaded in " + (System.currentTimeMillis() - start) + " ms");
+            }
+        }, "catalog-cache");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * @return the current snapshot, waits for the database read if it is not loaded yet
+     */
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        if (current != null) return current;
+        synchronized (loadLock) {
+            if (snapshot == null) {
+                snapshot = new Snapshot(dao.getMrmartList(), dao.getMfgartList(),
+                        dao.getSatuanList(), dao.getCustomerList());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * drop the snapshot after the catalog database changed and load the new one in the
+     * background. Forms already open keep the snapshot they got.
+     */
+    public void invalidate() {
+        synchronized (loadLock) {
+            snapshot = null;
+        }
+        preload();
+    }
+
+    /**
+     * catalogs as they were in the database at one point in time, never changes
+     */
+    public static class Snapshot {
+        private final List<Mrmart> mrmartList;
+        private final List<Mfgart> mfgartList;
+        private final List<Satuan> satuanList;
+        private final List<Customer> customerList;
+        private final CatalogSearchIndex<Mrmart> mrmartIndex;
+        private final CatalogSearchIndex<Mfgart> mfgartIndex;
+        private final CatalogSearchIndex<Customer> customerIndex;
+        private final CatalogIndex<Mrmart> mrmartKeys;
+        private final CatalogIndex<Mfgart> mfgartKeys;
+        private final CatalogIndex<Satuan> satuanKeys;
+        private final CatalogIndex<Customer> customerKeys;
+
+        Snapshot(List<Mrmart> mrmartList, List<Mfgart> mfgartList, List<Satuan> satuanList,
+                 List<Customer> customerList) {
+            this.mrmartList = Collections.unmodifiableList(mrmartList);
+            this.mfgartList = Collections.unmodifiableList(mfgartList);
+            this.satuanList = Collections.unmodifiableList(satuanList);
+            this.customerList = Collections.unmodifiableList(customerList);
+            mrmartIndex = new CatalogSearchIndex<Mrmart>(this.mrmartList, Mrmart.SEARCH_TEXT);
+            mfgartIndex = new CatalogSearchIndex<Mfgart>(this.mfgartList, Mfgart.SEARCH_TEXT);
+            customerIndex = new CatalogSearchIndex<Customer>(this.customerList, Customer.SEARCH_TEXT);
+            mrmartKeys = new CatalogIndex<Mrmart>(this.mrmartList, Mrmart.KEY);
+            mfgartKeys = new CatalogIndex<Mfgart>(this.mfgartList, Mfgart.KEY);
+            satuanKeys = new CatalogIndex<Satuan>(this.satuanList, Satuan.KEY);
+            customerKeys = new CatalogIndex<Customer>(this.customerList, Customer.KEY);
+        }
+
+        void buildIndexes() {
+            mrmartIndex.build();
+            mfgartIndex.build();
+            customerIndex.build();
+        }
+
+        public List<Mrmart> getMrmartList() {
+            return mrmartList;
+        }
+
+        public List<Mfgart> getMfgartList() {
+            return mfgartList;
+        }
+
+        public List<Satuan> getSatuanList() {
+            return satuanList;
+        }
+
+        public List<Customer> getCustomerList() {
+            return customerList;
+        }
+
+        /**
+         * @return position of the unit in {@link #getSatuanList()}, -1 if it is not there
+         */
+        public int indexOfSatuan(String satuanID) {
+            return satuanKeys.indexOf(satuanID);
+        }
+
+        /**
+         * @return mrmart rows by group and article id
+         */
+        public CatalogIndex<Mrmart> getMrmartKeys() {
+            return mrmartKeys;
+        }
+
+        /**
+         * @return mfgart rows by group and article id
+         */
+        public CatalogIndex<Mfgart> getMfgartKeys() {
+            return mfgartKeys;
+        }
+
+        /**
+         * @return satuan rows by satuan id
+         */
+        public CatalogIndex<Satuan> getSatuanKeys() {
+            return satuanKeys;
+        }
+
+        /**
+         * @return customer rows by customer id
+         */
+        public CatalogIndex<Customer> getCustomerKeys() {
+            return customerKeys;
+        }
+
+        public CatalogSearchIndex<Mrmart> getMrmartIndex() {
+            return mrmartIndex;
+        }
+
+        public CatalogSearchIndex<Mfgart> getMfgartIndex() {
+            return mfgartIndex;
+        }
+
+        public CatalogSearchIndex<Customer> getCustomerIndex() {
+            return customerIndex;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.hartz.inventory;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.hartz.inventory.model.CatalogReader;
+import com.hartz.inventory.model.Customer;
+import com.hartz.inventory.model.Mfgart;
+import com.hartz.inventory.model.Mrmart;
+import com.hartz.inventory.model.Satuan;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed access to the catalog tables in {@link InventoryDbHelper}.
+ * Downloads are written row by row inside one transaction together with their
+ * {@link SyncState}, so a half applied sync is never visible.
+ */
+public class CatalogDao {
+
+    private static final Table<Mrmart> MRMART = new Table<Mrmart>(Catalog.MRMART, InventoryDbHelper.TABLE_MRMART,
+            Mrmart.READER, new String[]{InventoryDbHelper.COLUMN_GROUP_ID, InventoryDbHelper.COLUMN_ARTICLE_ID},
+            InventoryDbHelper.COLUMN_ARTICLE_NAME) {
+        @Override
+        String[] values(Mrmart row) {
+            return new String[]{row.getGroupID(), row.getArticleID(), row.getArticleName()};
+        }
+
+        @Override
+        Mrmart fromCursor(Cursor cursor) {
+            return new Mrmart(cursor.getString(0), cursor.getString(1), cursor.getString(2));
+        }
+    };
+
+    private static final Table<Mfgart> MFGART = new Table<Mfgart>(Catalog.MFGART, InventoryDbHelper.TABLE_MFGART,
+            Mfgart.READER, new String[]{InventoryDbHelper.COLUMN_GROUP_ID, InventoryDbHelper.COLUMN_ARTICLE_ID},
+            InventoryDbHelper.COLUMN_ARTICLE_NAME) {
+        @Override
+        String[] values(Mfgart row) {
+            return new String[]{row.getGroupID(), row.getArticleID(), row.getArticleName()};
+        }
+
+        @Override
+        Mfgart fromCursor(Cursor cursor) {
+            return new Mfgart(cursor.getString(0), cursor.getString(1), cursor.getString(2));
+        }
+    };
+
+    private static final Table<Satuan> SATUAN = new Table<Satuan>(Catalog.SATUAN, InventoryDbHelper.TABLE_SATUAN,
+            Satuan.READER, new String[]{InventoryDbHelper.COLUMN_SATUAN_ID},
+            InventoryDbHelper.COLUMN_SATUAN_NAME) {
+        @Override
+        String[] values(Satuan row) {
+            return new String[]{row.getSatuanID(), row.getSatuanName()};
+        }
+
+        @Override
+        Satuan fromCursor(Cursor cursor) {
+            return new Satuan(cursor.getString(0), cursor.getString(1));
+        }
+    };
+
+    private static final Table<Customer> CUSTOMER = new Table<Customer>(Catalog.CUSTOMER,
+            InventoryDbHelper.TABLE_CUSTOMER, Customer.READER, new String[]{InventoryDbHelper.COLUMN_CUST_ID},
+            InventoryDbHelper.COLUMN_CUST_NAME) {
+        @Override
+        String[] values(Customer row) {
+            return new String[]{row.getId(), row.getName()};
+        }
+
+        @Override
+        Customer fromCursor(Cursor cursor) {
+            return new Customer(cursor.getString(0), cursor.getString(1));
+        }
+    };
+
+    private final InventoryDbHelper helper;
+
+    public CatalogDao(Context context) {
+        this(InventoryDbHelper.getInstance(context));
+    }
+
+    CatalogDao(InventoryDbHelper helper) {
+        this.helper = helper;
+    }
+
+    public ArrayList<Mrmart> getMrmartList() {
+        return MRMART.query(helper.getReadableDatabase());
+    }
+
+    public ArrayList<Mfgart> getMfgartList() {
+        return MFGART.query(helper.getReadableDatabase());
+    }
+
+    public ArrayList<Satuan> getSatuanList() {
+        return SATUAN.query(helper.getReadableDatabase());
+    }
+
+    public ArrayList<Customer> getCustomerList() {
+        return CUSTOMER.query(helper.getReadableDatabase());
+    }
+
+    /**
+     * @return number of rows stored for the catalog
+     */
+    public long count(Catalog catalog) {
+        return DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), table(catalog).name);
+    }
+
+    public boolean isEmpty(Catalog catalog) {
+        return count(catalog) == 0;
+    }
+
+    /**
+     * @return the sync state of the stored copy, null if the catalog was never downloaded
+     */
+    public SyncState getSyncState(Catalog catalog) {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        Cursor cursor = db.query(InventoryDbHelper.TABLE_SYNC_STATE,
+                new String[]{InventoryDbHelper.COLUMN_ETAG, InventoryDbHelper.COLUMN_LAST_MODIFIED,
+                        InventoryDbHelper.COLUMN_WATERMARK},
+                InventoryDbHelper.COLUMN_CATALOG + " = ?", new String[]{catalog.name()},
+                null, null, null);
+        try {
+            if (!cursor.moveToFirst()) return null;
+            return new SyncState(cursor.getString(0), cursor.getString(1), cursor.getString(2));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * replace the whole catalog with a full list response
+     * @param catalog catalog to replace
+     * @param json response body, each row is written as soon as it is parsed, no list of the
+     *             whole catalog is built
+     * @param state sync state of the response
+     * @return false if the response reports an error, the stored copy is kept then
+     */
+    public boolean replaceAll(Catalog catalog, Reader json, SyncState state) throws IOException {
+        return table(catalog).replaceAll(helper.getWritableDatabase(), json, state);
+    }
+
+    /**
+     * apply a delta response row by row. A delta is a small share of the catalog, its rows
+     * are read into lists first so the deletes can go before the upserts.
+     * @param catalog catalog the delta belongs to
+     * @param json response body
+     * @param state sync state of the response
+     * @return false if the response reports an error, the stored copy is kept then
+     */
+    public boolean applyDelta(Catalog catalog, Reader json, SyncState state) throws IOException {
+        return table(catalog).applyDelta(helper.getWritableDatabase(), json, state);
+    }
+
+    /**
+     * forget the watermark and validators, the next sync downloads the full list
+     */
+    public void clearSyncState(Catalog catalog) {
+        helper.getWritableDatabase().delete(InventoryDbHelper.TABLE_SYNC_STATE,
+                InventoryDbHelper.COLUMN_CATALOG + " = ?", new String[]{catalog.name()});
+    }
+
+    private static Table<?> table(Catalog catalog) {
+        switch (catalog) {
+            case MRMART:
+                return MRMART;
+            case MFGART:
+                return MFGART;
+            case SATUAN:
+                return SATUAN;
+            default:
+                return CUSTOMER;
+        }
+    }
+
+    private static void saveSyncState(SQLiteDatabase db, Catalog catalog, SyncState state) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryDbHelper.COLUMN_CATALOG, catalog.name());
+        values.put(InventoryDbHelper.COLUMN_ETAG, state.getEtag());
+        values.put(InventoryDbHelper.COLUMN_LAST_MODIFIED, state.getLastModified());
+        values.put(InventoryDbHelper.COLUMN_WATERMARK, state.getWatermark());
+        db.insertWithOnConflict(InventoryDbHelper.TABLE_SYNC_STATE, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private static void bind(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * maps one catalog model to its table, key columns first
+     */
+    private abstract static class Table<T> {
+        final Catalog catalog;
+        final String name;
+        final CatalogReader<T> reader;
+        final String[] keyColumns;
+        final String[] columns;
+
+        Table(Catalog catalog, String name, CatalogReader<T> reader, String[] keyColumns, String... otherColumns) {
+            this.catalog = catalog;
+            this.name = name;
+            this.reader = reader;
+            this.keyColumns = keyColumns;
+            columns = new String[keyColumns.length + otherColumns.length];
+            System.arraycopy(keyColumns, 0, columns, 0, keyColumns.length);
+            System.arraycopy(otherColumns, 0, columns, keyColumns.length, otherColumns.length);
+        }
+
+        /**
+         * @return column values of a row, in the order of {@link #columns}
+         */
+        abstract String[] values(T row);
+
+        abstract T fromCursor(Cursor cursor);
+
+        ArrayList<T> query(SQLiteDatabase db) {
+            Cursor cursor = db.query(name, columns, null, null, null, null, null);
+            try {
+                ArrayList<T> rows = new ArrayList<T>(cursor.getCount());
+                while (cursor.moveToNext()) {
+                    rows.add(fromCursor(cursor));
+                }
+                return rows;
+            } finally {
+                cursor.close();
+            }
+        }
+
+        boolean replaceAll(SQLiteDatabase db, Reader json, SyncState state) throws IOException {
+            db.beginTransaction();
+            try {
+                db.delete(name, null, null);
+                final SQLiteStatement statement = db.compileStatement(upsertSql());
+                boolean ok;
+                try {
+                    ok = reader.read(json, new CatalogReader.RowSink<T>() {
+                        @Override
+                        public void add(T row) {
+                            insert(statement, row);
+                        }
+                    });
+                } finally {
+                    statement.close();
+                }
+                //an error response rolls back the rows written before it was seen
+                if (!ok) return false;
+                saveSyncState(db, catalog, state);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return true;
+        }
+
+        boolean applyDelta(SQLiteDatabase db, Reader json, SyncState state) throws IOException {
+            CatalogReader.Delta<T> delta = reader.readDelta(json);
+            if (delta == null) return false;
+            db.beginTransaction();
+            try {
+                delete(db, delta.getDeleted());
+                upsert(db, delta.getUpserted());
+                saveSyncState(db, catalog, state);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return true;
+        }
+
+        private String upsertSql() {
+            StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ").append(name).append(" (");
+            StringBuilder params = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                    params.append(", ");
+                }
+                sql.append(columns[i]);
+                params.append('?');
+            }
+            return sql.append(") VALUES (").append(params).append(')').toString();
+        }
+
+        private void insert(SQLiteStatement statement, T row) {
+            String[] values = values(row);
+            for (int i = 0; i < values.length; i++) {
+                bind(statement, i + 1, values[i]);
+            }
+            statement.executeInsert();
+        }
+
+        private void upsert(SQLiteDatabase db, List<T> rows) {
+            SQLiteStatement statement = db.compileStatement(upsertSql());
+            try {
+                for (T row : rows) {
+                    insert(statement, row);
+                }
+            } finally {
+                statement.close();
+            }
+        }
+
+        private void delete(SQLiteDatabase db, List<T> rows) {
+            StringBuilder sql = new StringBuilder("DELETE FROM ").append(name).append(" WHERE ");
+            for (int i = 0; i < keyColumns.length; i++) {
+                if (i > 0) sql.append(" AND ");
+                sql.append(keyColumns[i]).append(" = ?");
+            }
+
+            SQLiteStatement statement = db.compileStatement(sql.toString());
+            try {
+                for (T row : rows) {
+                    String[] values = values(row);
+                    for (int i = 0; i < keyColumns.length; i++) {
+                        bind(statement, i + 1, values[i]);
+                    }
+                    statement.executeUpdateDelete();
+                }
+            } finally {
+                statement.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.hartz.inventory;
+
+/**
+ * Delta sync protocol for the master data catalogs.
+ *
+ * The client sends the watermark of its stored copy as ?since=. A server that supports
+ * deltas answers with the {@link #DELTA_HEADER} header and a body of the form
+ * {"error":false,"upserted":[rows],"deleted":[rows with only the key columns]}, see
+ * {@link com.hartz.inventory.model.CatalogReader#readDelta}. Servers without delta support
+ * just answer with the full list and no header. The new watermark comes in
+ * {@link #WATERMARK_HEADER} either way.
+ */
+public class CatalogDelta {
+
+    public static final String DELTA_HEADER = "X-Sync-Delta";
+    public static final String WATERMARK_HEADER = "X-Sync-Watermark";
+    public static final String SINCE_PARAM = "since";
+
+    private CatalogDelta() {
+    }
+
+    /**
+     * @param response response of a catalog GET
+     * @return true if the body is a delta instead of a full list
+     */
+    public static boolean isDelta(HttpTransport.Response response) {
+        return "1".equals(response.getHeader(DELTA_HEADER));
+    }
+}
@@ -0,0 +1,123 @@
+package com.hartz.inventory;
+
+import java.util.List;
+
+/**
+ * Finds a catalog row by its id, or by group and article id, without scanning the list.
+ *
+ * The table is one int array of row positions with open addressing, hashed straight from
+ * the id strings. No entry objects, boxed positions or concatenated keys are made, neither
+ * when building nor when looking up. Rows with the same key keep the first one, like a scan.
+ */
+public class CatalogIndex<T> {
+
+    /**
+     * gives the key of a catalog row, one or two strings
+     */
+    public interface KeyExtractor<T> {
+        /**
+         * @return the id, or the group id of a composite key
+         */
+        String firstOf(T row);
+
+        /**
+         * @return the article id of a composite key, null if the key is one id
+         */
+        String secondOf(T row);
+    }
+
+    private final List<T> rows;
+    private final KeyExtractor<T> extractor;
+    //position + 1 of a row, 0 for a free slot. The length is a power of two.
+    private final int[] slots;
+
+    /**
+     * @param rows catalog rows, must not change while the index is used
+     */
+    public CatalogIndex(List<T> rows, KeyExtractor<T> extractor) {
+        this.rows = rows;
+        this.extractor = extractor;
+        int capacity = 2;
+        while (capacity < rows.size() * 2) capacity <<= 1;
+        slots = new int[capacity];
+        for (int row = 0; row < rows.size(); row++) {
+            T value = rows.get(row);
+            String first = extractor.firstOf(value);
+            String second = extractor.secondOf(value);
+            int slot = find(first, second);
+            if (slots[slot] == 0) slots[slot] = row + 1;
+        }
+    }
+
+    /**
+     * @return position of the row in the catalog list, -1 if there is none
+     */
+    public int indexOf(String id) {
+        return indexOf(id, null);
+    }
+
+    /**
+     * @return position of the row in the catalog list, -1 if there is none
+     */
+    public int indexOf(String groupID, String articleID) {
+        return slots[find(groupID, articleID)] - 1;
+    }
+
+    /**
+     * @return the row, null if there is none
+     */
+    public T get(String id) {
+        return get(id, null);
+    }
+
+    /**
+     * @return the row, null if there is none
+     */
+    public T get(String groupID, String articleID) {
+        int position = indexOf(groupID, articleID);
+        return position >= 0 ? rows.get(position) : null;
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * @return the slot holding the key, or the free slot it would go to
+     */
+    private int find(String first, String second) {
+        int mask = slots.length - 1;
+        int slot = spread(hash(first) * 31 + hash(second)) & mask;
+        while (slots[slot] != 0) {
+            T row = rows.get(slots[slot] - 1);
+            if (equal(first, extractor.firstOf(row)) && equal(second, extractor.secondOf(row))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @return the catalog's instance of the string if both are equal, so a parsed document
+     * does not keep its own copy of every id and name
+     */
+    public static String canonical(String value, String catalogValue) {
+        return catalogValue != null && catalogValue.equals(value) ? catalogValue : value;
+    }
+
+    private static int hash(String s) {
+        return s == null ? 0 : s.hashCode();
+    }
+
+    //ids like A1001, A1002 hash to neighbours, mix the bits before masking, StringPool uses it too
+    static int spread(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,96 @@
+package com.hartz.inventory;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Autocomplete adapter answering from a {@link CatalogSearchIndex} instead of scanning
+ * every row like ArrayAdapter does. An index that is not built yet gets built on the
+ * filter thread the first time the user types, never on the main thread.
+ */
+public class CatalogSearchAdapter<T> extends BaseAdapter implements Filterable {
+
+    /**
+     * the dropdown never shows more than this, no need to collect more
+     */
+    public static final int MAX_SUGGESTIONS = 50;
+
+    private final LayoutInflater inflater;
+    private final int resource;
+    private final CatalogSearchIndex<T> index;
+    private List<T> suggestions = Collections.emptyList();
+    private Filter filter;
+
+    /**
+     * @param context
+     * @param resource layout of a dropdown row, must be a TextView
+     * @param index index over the catalog, built on the filter thread if it is not yet
+     */
+    public CatalogSearchAdapter(Context context, int resource, CatalogSearchIndex<T> index) {
+        this.inflater = LayoutInflater.from(context);
+        this.resource = resource;
+        this.index = index;
+    }
+
+    @Override
+    public int getCount() {
+        return suggestions.size();
+    }
+
+    @Override
+    public T getItem(int position) {
+        return suggestions.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = (TextView) (convertView != null
+                ? convertView : inflater.inflate(resource, parent, false));
+        view.setText(getItem(position).toString());
+        return view;
+    }
+
+    @Override
+    public Filter getFilter() {
+        if (filter == null) {
+            filter = new SearchFilter();
+        }
+        return filter;
+    }
+
+    private class SearchFilter extends Filter {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            List<T> found = index.search(constraint, MAX_SUGGESTIONS);
+            FilterResults results = new FilterResults();
+            results.values = found;
+            results.count = found.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            suggestions = (List<T>) results.values;
+            if (results.count > 0) {
+                notifyDataSetChanged();
+            } else {
+                notifyDataSetInvalidated();
+            }
+        }
+    }
+}
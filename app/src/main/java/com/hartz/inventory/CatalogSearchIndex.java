@@ -0,0 +1,172 @@
+package com.hartz.inventory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Token prefix index over the searchable fields of a catalog.
+ *
+ * Every field is split into lowercase words and all (word, row) pairs are kept in one
+ * sorted array, so the rows matching a prefix are a single range found by binary search.
+ * A query matches a row when every word of the query is a prefix of some word of the row,
+ * "gul g1" finds "Gula (G1)". Results keep the catalog order.
+ */
+public class CatalogSearchIndex<T> {
+
+    /**
+     * gives the texts a catalog row can be found by
+     */
+    public interface TextExtractor<T> {
+        String[] textsOf(T row);
+    }
+
+    private final List<T> rows;
+    private final TextExtractor<T> extractor;
+    private String[] tokens;
+    private int[] postings;
+
+    /**
+     * create the index, the word array is built on the first search or {@link #build()}
+     * @param rows catalog rows, must not change while the index is used
+     * @param extractor searchable texts of a row
+     */
+    public CatalogSearchIndex(List<T> rows, TextExtractor<T> extractor) {
+        this.rows = rows;
+        this.extractor = extractor;
+    }
+
+    /**
+     * build the word array now. Takes a while for big catalogs, keep it off the main thread.
+     */
+    public synchronized void build() {
+        if (tokens != null) return;
+
+        ArrayList<Posting> entries = new ArrayList<Posting>(rows.size() * 4);
+        ArrayList<String> words = new ArrayList<String>();
+        for (int row = 0; row < rows.size(); row++) {
+            for (String text : extractor.textsOf(rows.get(row))) {
+                words.clear();
+                tokenize(text, words);
+                for (String word : words) {
+                    entries.add(new Posting(word, row));
+                }
+            }
+        }
+        Collections.sort(entries, new Comparator<Posting>() {
+            @Override
+            public int compare(Posting a, Posting b) {
+                int c = a.token.compareTo(b.token);
+                return c != 0 ? c : a.row - b.row;
+            }
+        });
+
+        String[] sortedTokens = new String[entries.size()];
+        int[] sortedPostings = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            sortedTokens[i] = entries.get(i).token;
+            sortedPostings[i] = entries.get(i).row;
+        }
+        postings = sortedPostings;
+        tokens = sortedTokens;
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * @param query text typed by the user
+     * @param limit maximum number of rows returned
+     * @return matching rows in catalog order, empty if the query has no words
+     */
+    public List<T> search(CharSequence query, int limit) {
+        ArrayList<String> words = new ArrayList<String>();
+        if (query != null) tokenize(query, words);
+        if (words.isEmpty() || limit <= 0) return Collections.emptyList();
+        build();
+
+        //start with the narrowest word, the other ones only have to confirm its rows
+        int[][] ranges = new int[words.size()][];
+        int narrowest = 0;
+        for (int i = 0; i < words.size(); i++) {
+            ranges[i] = range(words.get(i));
+            if (ranges[i][1] - ranges[i][0] < ranges[narrowest][1] - ranges[narrowest][0]) {
+                narrowest = i;
+            }
+        }
+        BitSet matched = rowsIn(ranges[narrowest]);
+        for (int i = 0; i < ranges.length && !matched.isEmpty(); i++) {
+            if (i != narrowest) matched.and(rowsIn(ranges[i]));
+        }
+
+        ArrayList<T> result = new ArrayList<T>(Math.min(limit, matched.cardinality()));
+        for (int row = matched.nextSetBit(0); row >= 0 && result.size() < limit;
+             row = matched.nextSetBit(row + 1)) {
+            result.add(rows.get(row));
+        }
+        return result;
+    }
+
+    /**
+     * @return start (inclusive) and end (exclusive) of the tokens starting with prefix
+     */
+    private int[] range(String prefix) {
+        int start = lowerBound(prefix);
+        //no token starting with prefix sorts after prefix + the highest char
+        int end = lowerBound(prefix + Character.MAX_VALUE);
+        return new int[]{start, end};
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = tokens.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private BitSet rowsIn(int[] range) {
+        BitSet bits = new BitSet(rows.size());
+        for (int i = range[0]; i < range[1]; i++) {
+            bits.set(postings[i]);
+        }
+        return bits;
+    }
+
+    /**
+     * split text into lowercase runs of letters and digits
+     */
+    static void tokenize(CharSequence text, List<String> out) {
+        if (text == null) return;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                out.add(text.subSequence(start, i).toString().toLowerCase(Locale.US));
+                start = -1;
+            }
+        }
+    }
+
+    private static class Posting {
+        final String token;
+        final int row;
+
+        Posting(String token, int row) {
+            this.token = token;
+            this.row = row;
+        }
+    }
+}
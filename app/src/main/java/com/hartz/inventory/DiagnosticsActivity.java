@@ -0,0 +1,121 @@
+package com.hartz.inventory;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Hidden screen behind the settings menu item, shows catalog sizes, sync, parse, bind,
+ * frame, heap and network numbers and exports them to a file for a support ticket.
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    private final TaskRunner.Scope tasks = TaskRunner.getInstance().newScope();
+    private TextView reportText;
+    private Button exportButton;
+    private String report;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+        reportText = (TextView) findViewById(R.id.diagnostics_text);
+        exportButton = (Button) findViewById(R.id.diagnostics_export);
+        exportButton.setEnabled(false);
+        exportButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                tasks.run(new ExportTask(report));
+            }
+        });
+        findViewById(R.id.diagnostics_refresh).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                tasks.run(new ReportTask());
+            }
+        });
+        tasks.run(new ReportTask());
+    }
+
+    @Override
+    protected void onDestroy() {
+        tasks.cancel();
+        super.onDestroy();
+    }
+
+    /**
+     * builds the report off the main thread, the catalogs may still have to be read from the database
+     */
+    class ReportTask extends TaskRunner.Task<String> {
+        @Override
+        protected String doInBackground() {
+            CatalogCache.Snapshot catalogs = SharedPrefsHelper.isLoggedIn(getApplicationContext())
+                    ? CatalogCache.getInstance(getApplicationContext()).get() : null;
+            return DiagnosticsReport.build(catalogs, PerfStats.getInstance(), HttpTransport.getInstance(),
+                    Runtime.getRuntime(), System.currentTimeMillis());
+        }
+
+        @Override
+        protected void onResult(String result) {
+            report = result;
+            reportText.setText(result);
+            exportButton.setEnabled(true);
+        }
+
+        @Override
+        protected void onError(Exception e) {
+            reportText.setText("Gagal membuat laporan: " + e);
+        }
+    }
+
+    /**
+     * writes the report to the external files dir of the app, readable over usb without root
+     */
+    class ExportTask extends TaskRunner.Task<File> {
+        private final String text;
+
+        ExportTask(String text) {
+            this.text = text;
+        }
+
+        @Override
+        protected File doInBackground() throws IOException {
+            File dir = getExternalFilesDir(null);
+            //no external storage mounted, keep it where at least adb run-as finds it
+            if (dir == null) dir = getFilesDir();
+            String name = "diagnostics-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US)
+                    .format(new Date()) + ".txt";
+            File file = new File(dir, name);
+            OutputStream out = new FileOutputStream(file);
+            try {
+                out.write(text.getBytes(BodyReader.UTF_8));
+            } finally {
+                out.close();
+            }
+            return file;
+        }
+
+        @Override
+        protected void onResult(File file) {
+            Toast.makeText(getApplicationContext(), "Disimpan ke " + file.getAbsolutePath(),
+                    Toast.LENGTH_LONG).show();
+        }
+
+        @Override
+        protected void onError(Exception e) {
+            Toast.makeText(getApplicationContext(), "Gagal menyimpan: " + e.getMessage(),
+                    Toast.LENGTH_LONG).show();
+        }
+    }
+}
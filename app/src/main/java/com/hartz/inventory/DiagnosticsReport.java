@@ -0,0 +1,73 @@
+package com.hartz.inventory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * the text of the diagnostics screen, also what goes into an exported snapshot file
+ */
+public class DiagnosticsReport {
+
+    private DiagnosticsReport() {
+    }
+
+    /**
+     * @param catalogs catalogs the forms use right now, null if they are not loaded
+     * @param now time the report is made at
+     */
+    public static String build(CatalogCache.Snapshot catalogs, PerfStats stats, HttpTransport transport,
+                               Runtime runtime, long now) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        StringBuilder text = new StringBuilder();
+        text.append("diagnostics ").append(format.format(new Date(now))).append("\n\n");
+
+        text.append("catalogs\n");
+        if (catalogs == null) {
+            text.append("  not loaded\n");
+        } else {
+            text.append("  mrmart ").append(catalogs.getMrmartList().size())
+                    .append(", mfgart ").append(catalogs.getMfgartList().size())
+                    .append(", satuan ").append(catalogs.getSatuanList().size())
+                    .append(", customer ").append(catalogs.getCustomerList().size()).append('\n');
+        }
+        if (stats.getLastSyncMillis() < 0) {
+            text.append("  no sync since the app started\n");
+        } else {
+            text.append("  last sync ").append(stats.getLastSyncMillis()).append(" ms, at ")
+                    .append(format.format(new Date(stats.getLastSyncAt()))).append('\n');
+        }
+
+        text.append("\nhistory\n");
+        text.append("  page parse us ").append(stats.getParse()).append('\n');
+        text.append("  row bind us   ").append(stats.getBind()).append('\n');
+
+        text.append("\nframes\n");
+        text.append("  interval us ").append(stats.getFrames()).append('\n');
+        text.append("  jank ").append(stats.getJankFrames()).append(", dropped ")
+                .append(stats.getDroppedFrames()).append('\n');
+
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        text.append("\nheap\n");
+        text.append("  used ").append(used / 1024).append(" KB of ").append(runtime.totalMemory() / 1024)
+                .append(" KB, max ").append(runtime.maxMemory() / 1024).append(" KB\n");
+
+        text.append("\nnetwork\n");
+        StringWriter network = new StringWriter();
+        try {
+            transport.getMetrics().dump(network);
+        } catch (IOException e) {
+            //a StringWriter does not throw
+            throw new AssertionError(e);
+        }
+        text.append(network);
+        text.append("\ntraffic\n");
+        for (Map.Entry<String, TrafficCounter.Counters> route : transport.getTraffic().getAll().entrySet()) {
+            text.append(route.getKey()).append("\n  ").append(route.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+}
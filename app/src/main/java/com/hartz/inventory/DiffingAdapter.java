@@ -0,0 +1,112 @@
+package com.hartz.inventory;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * RecyclerView adapter that moves from one list to the next through a {@link ListDiff}
+ * computed off the main thread, so only the rows that changed are bound again. Item ids
+ * are stable, taken from the document keys.
+ */
+public abstract class DiffingAdapter<T, VH extends RecyclerView.ViewHolder> extends RecyclerView.Adapter<VH>
+        implements ListDiff.ItemCallback<T> {
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    //only touched on the main thread
+    private List<T> items = Collections.emptyList();
+    private int generation;
+    //ids of the documents in the list, keys of removed ones are dropped with each new list
+    private final HashMap<String, Long> ids = new HashMap<String, Long>();
+    private long nextId;
+
+    private final ListDiff.UpdateCallback updateCallback = new ListDiff.UpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            notifyItemRangeChanged(position, count);
+        }
+
+        @Override
+        public void onReload() {
+            notifyDataSetChanged();
+        }
+    };
+
+    protected DiffingAdapter() {
+        setHasStableIds(true);
+    }
+
+    /**
+     * @return what identifies the document, the same before and after an edit
+     */
+    protected abstract String keyOf(T item);
+
+    @Override
+    public boolean areItemsTheSame(T oldItem, T newItem) {
+        return keyOf(oldItem).equals(keyOf(newItem));
+    }
+
+    /**
+     * show a new list once it has been compared with the current one
+     * @param newList not modified afterwards, pass a copy
+     */
+    public void submitList(final List<T> newList) {
+        final List<T> oldList = items;
+        final int submitted = ++generation;
+        TaskRunner.getInstance().getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final ListDiff.Result result = ListDiff.calculate(oldList, newList, DiffingAdapter.this);
+                final HashSet<String> keys = new HashSet<String>();
+                for (T item : newList) {
+                    keys.add(keyOf(item));
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        //a newer list is on its way, it is compared with the one on screen
+                        if (submitted != generation) return;
+                        items = newList;
+                        ids.keySet().retainAll(keys);
+                        result.dispatchTo(updateCallback);
+                    }
+                });
+            }
+        });
+    }
+
+    public T getItem(int position) {
+        return items.get(position);
+    }
+
+    @Override
+    public int getItemCount() {
+        return items.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String key = keyOf(items.get(position));
+        Long id = ids.get(key);
+        if (id == null) {
+            id = nextId++;
+            ids.put(key, id);
+        }
+        return id;
+    }
+}
@@ -6,28 +6,34 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.support.v7.app.AlertDialog;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
-import android.widget.ImageButton;
-import android.widget.ListAdapter;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import com.hartz.inventory.model.PPRE;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Created by Webmaster on 1/5/2017.
@@ -35,12 +41,8 @@ import java.util.LinkedHashMap;
 
 public class Fragment_PPRE extends Fragment {
     private View fragmentPPREView, mProgressView;
-    //generate list
-    ArrayList<PPRE> list;
-    String loginResult = null;
-    LoadPPRETask ppreLoadTask;
-    DeletePPRETask ppreDeleteTask;
-    ListView lView;
+    HistoryPager<PPRE> pager;
+    RecyclerView lView;
     PPREAdapter adapter;
 
 
@@ -55,27 +57,94 @@ public class Fragment_PPRE extends Fragment {
     @Override
     public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
         //handle listview and assign adapter
-        lView = (ListView)view.findViewById(R.id.fragment_ppre_listview);
+        lView = (RecyclerView)view.findViewById(R.id.fragment_ppre_listview);
         fragmentPPREView = (View)view.findViewById(R.id.fragment_ppre_layout);
         mProgressView = (View)view.findViewById(R.id.fragment_ppre_process);
 
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(getActivity());
+        lView.setLayoutManager(layoutManager);
+        adapter = new PPREAdapter();
+        lView.setAdapter(adapter);
+
+        pager = createPager();
+        lView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                pager.onScroll(layoutManager.findLastVisibleItemPosition() + 1, adapter.getItemCount());
+            }
+        });
     }
 
     @Override
     public void onResume() {
-        showProgress(true);
-        ppreLoadTask = new LoadPPRETask(SharedPrefsHelper.readPrefs(SharedPrefsHelper.NAME_PREFS,
-                getActivity().getApplicationContext()));
-        ppreLoadTask.execute((Void)null);
+        //the saved first page shows right away, then the server is asked if it changed
+        if (pager.getItems().isEmpty()) showProgress(true);
+        pager.reset();
 
         super.onResume();
     }
 
-    private void loadPPREList() {
-        list = PPRE.getFromJSON(loginResult);
-        //instantiate custom adapter
-        adapter = new PPREAdapter(list, getActivity().getApplicationContext());
-        lView.setAdapter(adapter);
+    @Override
+    public void onDestroyView() {
+        //a page still loading would otherwise be handed to the views that are gone
+        pager.cancel();
+        super.onDestroyView();
+    }
+
+    private HistoryPager<PPRE> createPager() {
+        Context context = getActivity().getApplicationContext();
+        String username = SharedPrefsHelper.readPrefs(SharedPrefsHelper.NAME_PREFS, context);
+        final CatalogCache catalogCache = CatalogCache.getInstance(context);
+        final Outbox outbox = Outbox.getInstance(context);
+        //shared by all pages, a value repeated across the history is kept once
+        final StringPool pool = new StringPool();
+        HistoryPager.PageLoader<PPRE> loader = new HistoryPager.JsonPageLoader<PPRE>(
+                new HttpHandler(context), new HistoryCache(context),
+                HttpHandler.LINK_PPRE_BY_USER + username) {
+            @Override
+            protected List<PPRE> parse(JSONObject json) throws JSONException {
+                //on the loading thread, the catalogs may still be read from the database
+                ArrayList<PPRE> entries = PPRE.getEntriesFromJSON(json, catalogCache.get(), pool);
+                //deleted here but not on the server yet, the saved page and the server still have them
+                Set<String> deleting = outbox.getPendingDeletes();
+                if (deleting.isEmpty()) return entries;
+                Iterator<PPRE> it = entries.iterator();
+                while (it.hasNext()) {
+                    if (deleting.contains(HttpHandler.LINK_DELETE_PPRE + "/" + it.next().getId())) it.remove();
+                }
+                return entries;
+            }
+        };
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        return new HistoryPager<PPRE>(loader, TaskRunner.getInstance().getExecutor(), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mainHandler.post(command);
+            }
+        }, new HistoryPager.Listener() {
+            @Override
+            public void onPageLoaded(boolean firstPage) {
+                if (getView() == null) return;
+                showProgress(false);
+                adapter.submitList(new ArrayList<PPRE>(pager.getItems()));
+            }
+
+            @Override
+            public void onPageFailed(IOException e, boolean firstPage, boolean showingItems) {
+                Log.e("PPRE", "history page failed", e);
+                if (getView() == null) return;
+                showProgress(false);
+                if (!showingItems) {
+                    //nothing saved and the server does not answer, the login syncs again
+                    Intent i = new Intent(getActivity(), LoginActivity.class);
+                    startActivity(i);
+                    getActivity().finish();
+                    return;
+                }
+                //the saved rows stay, the next refresh or scroll asks again
+                Toast.makeText(getActivity(), "Gagal memuat data terbaru", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
@@ -115,220 +184,99 @@ public class Fragment_PPRE extends Fragment {
     }
 
     /**
-     * Represents an asynchronous login/registration task used to authenticate
-     * the user.
+     * deletes the document after asking, the outbox sends the call
      */
-    public class LoadPPRETask extends AsyncTask<Void, Void, Boolean> {
-
-        private String username;
-        private boolean connectionProblem;
-
-        LoadPPRETask(String username) {
-            this.username = username;
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... params) {
-            // Simulate network access.
-            HttpHandler handler = new HttpHandler(getActivity().getApplicationContext());
+    private void confirmDelete(final PPRE ppre) {
+        /** convert builder to dialog */
+        AlertDialog alert = new AlertDialog.Builder(getActivity()).create();
+
+        /** disable cancel outside touch */
+        alert.setCanceledOnTouchOutside(true);
+        /** disable cancel on press back button */
+        alert.setCancelable(true);
+        alert.setMessage("Yakin mau menghapus?");
+        alert.setButton(AlertDialog.BUTTON_POSITIVE, "Hapus", new DialogInterface.OnClickListener() {
+
+            public void onClick(DialogInterface dialog, int which) {
+                Context context = getActivity().getApplicationContext();
+                //queued, the outbox sends it as soon as the server can be reached
+                LinkedHashMap<String, Object> parameter = new LinkedHashMap<>();
+                parameter.put("token", SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, context));
+                parameter.put("_method", "delete");
+                Outbox.getInstance(context).enqueue("DELETE",
+                        HttpHandler.LINK_DELETE_PPRE + "/" + ppre.getId(), parameter);
+                pager.getItems().remove(ppre);
+                adapter.submitList(new ArrayList<PPRE>(pager.getItems()));
+                Toast.makeText(context, "Data dihapus", Toast.LENGTH_SHORT).show();
+                dialog.dismiss();
 
-            try {
-                loginResult = handler.makeGetCall(handler.LINK_PPRE_BY_USER+username);
-            } catch (IOException e) {
-                connectionProblem = true;
-                return false;
             }
-            Log.v("POST RESULT", loginResult);
-
-            return true;
-        }
+        });
+        alert.setButton(AlertDialog.BUTTON_NEGATIVE, "Batal", new DialogInterface.OnClickListener() {
 
-        @Override
-        protected void onPostExecute(final Boolean success) {
-//
-            showProgress(false);
-//
-            if (success) {
-               loadPPREList();
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.dismiss();
             }
-            //TODO jika gagal
-//            } else {
-//                if(connectionProblem){
-//                    mPasswordView.setError(getString(R.string.error_network_problem));
-//                }else{
-//                    mPasswordView.setError(getString(R.string.error_incorrect_password));
-//                }
-//
-//                mPasswordView.requestFocus();
-//            }
-        }
-
-        @Override
-        protected void onCancelled() {
-            ppreLoadTask = null;
-            showProgress(false);
-        }
+        });
+        alert.show();
     }
 
-
-
-    /**
-     * Represents an asynchronous login/registration task used to authenticate
-     * the user.
-     */
-    public class DeletePPRETask extends AsyncTask<Void, Void, Boolean> {
-
-        private String id;
-        private int position;
-        private boolean connectionProblem;
-
-        DeletePPRETask(String id, int position) {
-            this.id = id;this.position = position;
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... params) {
-            // Simulate network access.
-            //access the network
-            HttpHandler handler = new HttpHandler(getActivity());
-            LinkedHashMap<String, Object> parameter = new LinkedHashMap<>();
-            parameter.put("token", SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, getActivity().getApplicationContext()));
-            parameter.put("_method", "delete");
-            Log.v("token = ", SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, getActivity().getApplicationContext()));
-            String loginResult = null;
-            try {
-                loginResult = handler.makePostCall(parameter, handler.LINK_DELETE_PPRE+"/"+id);
-            } catch (IOException e) {
-                connectionProblem = true;
-                return false;
+    class PPREAdapter extends DiffingAdapter<PPRE, PPREAdapter.ViewHolder> {
+
+        /**
+         * looks the row views up once, the click listeners read the position when clicked
+         */
+        class ViewHolder extends RecyclerView.ViewHolder {
+            private final TextView idText;
+            private final TextView itemsText;
+
+            ViewHolder(View itemView) {
+                super(itemView);
+                idText = (TextView) itemView.findViewById(R.id.list_ppre_item_id);
+                itemsText = (TextView) itemView.findViewById(R.id.list_ppre_item_items);
+                itemView.findViewById(R.id.list_ppre_item_delete).setOnClickListener(new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        int position = getAdapterPosition();
+                        if (position != RecyclerView.NO_POSITION) confirmDelete(getItem(position));
+                    }
+                });
+                itemView.findViewById(R.id.list_ppre_item_edit).setOnClickListener(new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        int position = getAdapterPosition();
+                        if (position == RecyclerView.NO_POSITION) return;
+                        Intent i = new Intent(getActivity(), PPRE_Form_Edit.class);
+                        i.putExtra("ppreObject", getItem(position));
+                        startActivity(i);
+                    }
+                });
             }
-            Log.v("POST RESULT", loginResult);
-
-            return true;
-        }
-
-        @Override
-        protected void onPostExecute(final Boolean success) {
-//
-            showProgress(false);
-//
-            if (success) {
-                Toast.makeText(getActivity(), "Data dihapus", Toast.LENGTH_SHORT).show();
-                list.remove(position);
-                adapter.notifyDataSetChanged();
-            }
-            //TODO jika gagal
-//            } else {
-//                if(connectionProblem){
-//                    mPasswordView.setError(getString(R.string.error_network_problem));
-//                }else{
-//                    mPasswordView.setError(getString(R.string.error_incorrect_password));
-//                }
-//
-//                mPasswordView.requestFocus();
-//            }
-        }
-
-        @Override
-        protected void onCancelled() {
-            ppreLoadTask = null;
-            showProgress(false);
-        }
-    }
-
-    class PPREAdapter extends BaseAdapter implements ListAdapter {
-        private ArrayList<PPRE> list = new ArrayList<PPRE>();
-        private Context context;
-
-
-
-        public PPREAdapter(ArrayList<PPRE> list, Context context) {
-            this.list = list;
-            this.context = context;
         }
 
         @Override
-        public int getCount() {
-            return list.size();
+        protected String keyOf(PPRE ppre) {
+            return ppre.getId();
         }
 
         @Override
-        public Object getItem(int pos) {
-            return list.get(pos);
-        }
-
-        public String getItemIdString(int pos){
-            return list.get(pos).getId();
+        public boolean areContentsTheSame(PPRE oldItem, PPRE newItem) {
+            return oldItem.itemListToString().equals(newItem.itemListToString());
         }
 
         @Override
-        public long getItemId(int pos) {
-            return 0;
-            //just return 0 if your list items do not have an Id variable.
+        public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+            return new ViewHolder(inflater.inflate(R.layout.list_ppre_item, parent, false));
         }
 
         @Override
-        public View getView(final int position, View convertView, ViewGroup parent) {
-            View view = convertView;
-            if (view == null) {
-                LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-                view = inflater.inflate(R.layout.list_ppre_item, null);
-            }
-
-            //Handle TextView and display string from your list
-            TextView listItemText = (TextView)view.findViewById(R.id.list_ppre_item_id);
-            listItemText.setText(list.get(position).getId());
-
-            TextView listItemDesc = (TextView)view.findViewById(R.id.list_ppre_item_items);
-            listItemDesc.setText(list.get(position).itemListToString());
-
-            //Handle buttons and add onClickListeners
-            ImageButton deleteBtn = (ImageButton)view.findViewById(R.id.list_ppre_item_delete);
-            ImageButton editBtn = (ImageButton)view.findViewById(R.id.list_ppre_item_edit);
-
-            deleteBtn.setOnClickListener(new View.OnClickListener(){
-                @Override
-                public void onClick(View v) {
-                    //TODO delete and edit button
-
-                    /** convert builder to dialog */
-                    AlertDialog alert = new AlertDialog.Builder(getActivity()).create();
-
-                    /** disable cancel outside touch */
-                    alert.setCanceledOnTouchOutside(true);
-                    /** disable cancel on press back button */
-                    alert.setCancelable(true);
-                    alert.setMessage("Yakin mau menghapus?");
-                    alert.setButton(AlertDialog.BUTTON_POSITIVE, "Hapus", new DialogInterface.OnClickListener() {
-
-                        public void onClick(DialogInterface dialog, int which) {
-                            showProgress(true);
-                            ppreDeleteTask = new DeletePPRETask(list.get(position).getId(), position);
-                            ppreDeleteTask.execute((Void)null);
-                            dialog.dismiss();
-
-                        }
-                    });
-                    alert.setButton(AlertDialog.BUTTON_NEGATIVE, "Batal", new DialogInterface.OnClickListener() {
-
-                        public void onClick(DialogInterface dialog, int which) {
-                            dialog.dismiss();
-                        }
-                    });
-                    alert.show();
-                }
-            });
-            editBtn.setOnClickListener(new View.OnClickListener(){
-                @Override
-                public void onClick(View v) {
-                    //do something
-                    Intent i = new Intent(getActivity(), PPRE_Form_Edit.class);
-                    i.putExtra("ppreObject", list.get(position));
-                    startActivity(i);
-                }
-            });
-
-            return view;
+        public void onBindViewHolder(ViewHolder holder, int position) {
+            long start = System.nanoTime();
+            PPRE ppre = getItem(position);
+            holder.idText.setText(ppre.getId());
+            holder.itemsText.setText(ppre.itemListToString());
+            PerfStats.getInstance().recordBind((System.nanoTime() - start) / 1000);
         }
     }
-}
\ No newline at end of file
+}
@@ -6,28 +6,34 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.support.v7.app.AlertDialog;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
-import android.widget.ImageButton;
-import android.widget.ListAdapter;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import com.hartz.inventory.model.SSJDE;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Created by Webmaster on 1/9/2017.
@@ -35,13 +41,9 @@ import java.util.LinkedHashMap;
 
 public class Fragment_SSJDE extends Fragment {
     private View fragmentSSJDEView, mProgressView;
-    //generate list
-    ArrayList<SSJDE> list;
-    String loginResult = null;
-    Fragment_SSJDE.LoadSSJDETask ssjdeLoadTask;
-    Fragment_SSJDE.DeleteSSJDETask ssjdeDeleteTask;
-    ListView lView;
-    Fragment_SSJDE.SSJDEAdapter adapter;
+    HistoryPager<SSJDE> pager;
+    RecyclerView lView;
+    SSJDEAdapter adapter;
 
 
     // The onCreateView method is called when Fragment should create its View object hierarchy,
@@ -55,27 +57,94 @@ public class Fragment_SSJDE extends Fragment {
     @Override
     public void onViewCreated(View view, @Nullable Bundle savedInstanceState) {
         //handle listview and assign adapter
-        lView = (ListView)view.findViewById(R.id.fragment_ssjde_listview);
+        lView = (RecyclerView)view.findViewById(R.id.fragment_ssjde_listview);
         fragmentSSJDEView = (View)view.findViewById(R.id.fragment_ssjde_layout);
         mProgressView = (View)view.findViewById(R.id.fragment_ssjde_process);
+
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(getActivity());
+        lView.setLayoutManager(layoutManager);
+        adapter = new SSJDEAdapter();
+        lView.setAdapter(adapter);
+
+        pager = createPager();
+        lView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                pager.onScroll(layoutManager.findLastVisibleItemPosition() + 1, adapter.getItemCount());
+            }
+        });
     }
 
     @Override
     public void onResume() {
-        showProgress(true);
-        ssjdeLoadTask = new Fragment_SSJDE.LoadSSJDETask(
-                SharedPrefsHelper.readPrefs(SharedPrefsHelper.NAME_PREFS,
-                getActivity().getApplicationContext()));
-        ssjdeLoadTask.execute((Void)null);
+        //the saved first page shows right away, then the server is asked if it changed
+        if (pager.getItems().isEmpty()) showProgress(true);
+        pager.reset();
 
         super.onResume();
     }
 
-    private void loadSSJDEList() {
-        list = SSJDE.getFromJSON(loginResult);
-        //instantiate custom adapter
-        adapter = new Fragment_SSJDE.SSJDEAdapter(list, getActivity().getApplicationContext());
-        lView.setAdapter(adapter);
+    @Override
+    public void onDestroyView() {
+        //a page still loading would otherwise be handed to the views that are gone
+        pager.cancel();
+        super.onDestroyView();
+    }
+
+    private HistoryPager<SSJDE> createPager() {
+        Context context = getActivity().getApplicationContext();
+        String username = SharedPrefsHelper.readPrefs(SharedPrefsHelper.NAME_PREFS, context);
+        final CatalogCache catalogCache = CatalogCache.getInstance(context);
+        final Outbox outbox = Outbox.getInstance(context);
+        //shared by all pages, a value repeated across the history is kept once
+        final StringPool pool = new StringPool();
+        HistoryPager.PageLoader<SSJDE> loader = new HistoryPager.JsonPageLoader<SSJDE>(
+                new HttpHandler(context), new HistoryCache(context),
+                HttpHandler.LINK_SSJDE_BY_USER + username) {
+            @Override
+            protected List<SSJDE> parse(JSONObject json) throws JSONException {
+                //on the loading thread, the catalogs may still be read from the database
+                ArrayList<SSJDE> entries = SSJDE.getEntriesFromJSON(json, catalogCache.get(), pool);
+                //deleted here but not on the server yet, the saved page and the server still have them
+                Set<String> deleting = outbox.getPendingDeletes();
+                if (deleting.isEmpty()) return entries;
+                Iterator<SSJDE> it = entries.iterator();
+                while (it.hasNext()) {
+                    if (deleting.contains(HttpHandler.LINK_DELETE_SSJDE + "/" + it.next().getId())) it.remove();
+                }
+                return entries;
+            }
+        };
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        return new HistoryPager<SSJDE>(loader, TaskRunner.getInstance().getExecutor(), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mainHandler.post(command);
+            }
+        }, new HistoryPager.Listener() {
+            @Override
+            public void onPageLoaded(boolean firstPage) {
+                if (getView() == null) return;
+                showProgress(false);
+                adapter.submitList(new ArrayList<SSJDE>(pager.getItems()));
+            }
+
+            @Override
+            public void onPageFailed(IOException e, boolean firstPage, boolean showingItems) {
+                Log.e("SSJDE", "history page failed", e);
+                if (getView() == null) return;
+                showProgress(false);
+                if (!showingItems) {
+                    //nothing saved and the server does not answer, the login syncs again
+                    Intent i = new Intent(getActivity(), LoginActivity.class);
+                    startActivity(i);
+                    getActivity().finish();
+                    return;
+                }
+                //the saved rows stay, the next refresh or scroll asks again
+                Toast.makeText(getActivity(), "Gagal memuat data terbaru", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
@@ -115,217 +184,111 @@ public class Fragment_SSJDE extends Fragment {
     }
 
     /**
-     * Represents an asynchronous login/registration task used to authenticate
-     * the user.
+     * deletes the document after asking, the outbox sends the call
      */
-    public class LoadSSJDETask extends AsyncTask<Void, Void, Boolean> {
+    private void confirmDelete(final SSJDE ssjde) {
+        /** convert builder to dialog */
+        AlertDialog alert = new AlertDialog.Builder(getActivity()).create();
+
+        /** disable cancel outside touch */
+        alert.setCanceledOnTouchOutside(true);
+        /** disable cancel on press back button */
+        alert.setCancelable(true);
+        alert.setMessage("Yakin mau menghapus?");
+        alert.setButton(AlertDialog.BUTTON_POSITIVE, "Hapus", new DialogInterface.OnClickListener() {
+
+            public void onClick(DialogInterface dialog, int which) {
+                Context context = getActivity().getApplicationContext();
+                //queued, the outbox sends it as soon as the server can be reached
+                LinkedHashMap<String, Object> parameter = new LinkedHashMap<>();
+                parameter.put("token", SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, context));
+                parameter.put("_method", "delete");
+                Outbox.getInstance(context).enqueue("DELETE",
+                        HttpHandler.LINK_DELETE_SSJDE + "/" + ssjde.getId(), parameter);
+                pager.getItems().remove(ssjde);
+                adapter.submitList(new ArrayList<SSJDE>(pager.getItems()));
+                Toast.makeText(context, "Data dihapus", Toast.LENGTH_SHORT).show();
+                dialog.dismiss();
 
-        private String username;
-        private boolean connectionProblem;
-
-        LoadSSJDETask(String username) {
-            this.username = username;
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... params) {
-            // Simulate network access.
-            HttpHandler handler = new HttpHandler(getActivity().getApplicationContext());
-
-            try {
-                loginResult = handler.makeGetCall(handler.LINK_SSJDE_BY_USER+username);
-            } catch (IOException e) {
-                connectionProblem = true;
-                return false;
             }
-            Log.v("POST RESULT", loginResult);
+        });
+        alert.setButton(AlertDialog.BUTTON_NEGATIVE, "Batal", new DialogInterface.OnClickListener() {
 
-            return true;
-        }
-
-        @Override
-        protected void onPostExecute(final Boolean success) {
-//
-            showProgress(false);
-//
-            if (success) {
-                loadSSJDEList();
-            } else {
-                Intent i = new Intent(getActivity(), LoginActivity.class);
-                startActivity(i);
-                getActivity().finish();
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.dismiss();
             }
-        }
-
-        @Override
-        protected void onCancelled() {
-            ssjdeLoadTask = null;
-            showProgress(false);
-        }
+        });
+        alert.show();
     }
 
-
-
-    /**
-     * Represents an asynchronous login/registration task used to authenticate
-     * the user.
-     */
-    public class DeleteSSJDETask extends AsyncTask<Void, Void, Boolean> {
-
-        private String id;
-        private int position;
-        private boolean connectionProblem;
-
-        DeleteSSJDETask(String id, int position) {
-            this.id = id;this.position = position;
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... params) {
-            // Simulate network access.
-            //access the network
-            HttpHandler handler = new HttpHandler(getActivity());
-            LinkedHashMap<String, Object> parameter = new LinkedHashMap<>();
-            parameter.put("token", SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, getActivity().getApplicationContext()));
-            parameter.put("_method", "delete");
-            Log.v("token = ", SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, getActivity().getApplicationContext()));
-            String loginResult = null;
-            try {
-                loginResult = handler.makePostCall(parameter, handler.LINK_DELETE_SSJDE+"/"+id);
-            } catch (IOException e) {
-                connectionProblem = true;
-                return false;
-            }
-            Log.v("POST RESULT", loginResult);
-
-            return true;
-        }
-
-        @Override
-        protected void onPostExecute(final Boolean success) {
-//
-            showProgress(false);
-//
-            if (success) {
-                Toast.makeText(getActivity(), "Data dihapus", Toast.LENGTH_SHORT).show();
-                list.remove(position);
-                adapter.notifyDataSetChanged();
+    class SSJDEAdapter extends DiffingAdapter<SSJDE, SSJDEAdapter.ViewHolder> {
+
+        /**
+         * looks the row views up once, the click listeners read the position when clicked
+         */
+        class ViewHolder extends RecyclerView.ViewHolder {
+            private final TextView idText;
+            private final TextView itemsText;
+            private final TextView customerText;
+
+            ViewHolder(View itemView) {
+                super(itemView);
+                idText = (TextView) itemView.findViewById(R.id.list_ssjde_item_id);
+                itemsText = (TextView) itemView.findViewById(R.id.list_ssjde_item_items);
+                customerText = (TextView) itemView.findViewById(R.id.list_ssjde_item_customer);
+                itemView.findViewById(R.id.list_ssjde_item_delete).setOnClickListener(new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        int position = getAdapterPosition();
+                        if (position != RecyclerView.NO_POSITION) confirmDelete(getItem(position));
+                    }
+                });
+                itemView.findViewById(R.id.list_ssjde_item_edit).setOnClickListener(new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        int position = getAdapterPosition();
+                        if (position == RecyclerView.NO_POSITION) return;
+                        Intent i = new Intent(getActivity(), SSJDE_Form_Edit.class);
+                        i.putExtra("ssjdeObject", getItem(position));
+                        startActivity(i);
+                    }
+                });
             }
-            //TODO jika gagal
-//            } else {
-//                if(connectionProblem){
-//                    mPasswordView.setError(getString(R.string.error_network_problem));
-//                }else{
-//                    mPasswordView.setError(getString(R.string.error_incorrect_password));
-//                }
-//
-//                mPasswordView.requestFocus();
-//            }
-        }
-
-        @Override
-        protected void onCancelled() {
-            ssjdeLoadTask = null;
-            showProgress(false);
-        }
-    }
-
-    class SSJDEAdapter extends BaseAdapter implements ListAdapter {
-        private ArrayList<SSJDE> list = new ArrayList<SSJDE>();
-        private Context context;
-
-
-
-        public SSJDEAdapter(ArrayList<SSJDE> list, Context context) {
-            this.list = list;
-            this.context = context;
         }
 
         @Override
-        public int getCount() {
-            return list.size();
+        protected String keyOf(SSJDE ssjde) {
+            return ssjde.getId();
         }
 
         @Override
-        public Object getItem(int pos) {
-            return list.get(pos);
+        public boolean areContentsTheSame(SSJDE oldItem, SSJDE newItem) {
+            String oldName = customerName(oldItem);
+            String newName = customerName(newItem);
+            return oldItem.itemListToString().equals(newItem.itemListToString())
+                    && (oldName == null ? newName == null : oldName.equals(newName));
         }
 
-        public String getItemIdString(int pos){
-            return list.get(pos).getId();
+        //a document without a customer or a customer without a name compares and shows as null
+        private String customerName(SSJDE ssjde) {
+            return ssjde.getCustomer() == null ? null : ssjde.getCustomer().getName();
         }
 
         @Override
-        public long getItemId(int pos) {
-            return 0;
-            //just return 0 if your list items do not have an Id variable.
+        public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+            return new ViewHolder(inflater.inflate(R.layout.list_ssjde_item, parent, false));
         }
 
         @Override
-        public View getView(final int position, View convertView, ViewGroup parent) {
-            View view = convertView;
-            if (view == null) {
-                LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-                view = inflater.inflate(R.layout.list_ssjde_item, null);
-            }
-
-            final SSJDE ssjde = list.get(position);
-            //Handle TextView and display string from your list
-            TextView listItemText = (TextView)view.findViewById(R.id.list_ssjde_item_id);
-            listItemText.setText(ssjde.getId());
-
-            TextView listItemDesc = (TextView)view.findViewById(R.id.list_ssjde_item_items);
-            listItemDesc.setText(ssjde.itemListToString());
-
-            TextView listItemCust = (TextView)view.findViewById(R.id.list_ssjde_item_customer);
-            listItemCust.setText("("+ssjde.getCustomer().getName()+")");
-            //Handle buttons and add onClickListeners
-            ImageButton deleteBtn = (ImageButton)view.findViewById(R.id.list_ssjde_item_delete);
-            ImageButton editBtn = (ImageButton)view.findViewById(R.id.list_ssjde_item_edit);
-
-
-            deleteBtn.setOnClickListener(new View.OnClickListener(){
-                @Override
-                public void onClick(View v) {
-
-                    /** convert builder to dialog */
-                    AlertDialog alert = new AlertDialog.Builder(getActivity()).create();
-
-                    /** disable cancel outside touch */
-                    alert.setCanceledOnTouchOutside(true);
-                    /** disable cancel on press back button */
-                    alert.setCancelable(true);
-                    alert.setMessage("Yakin mau menghapus?");
-                    alert.setButton(AlertDialog.BUTTON_POSITIVE, "Hapus", new DialogInterface.OnClickListener() {
-
-                        public void onClick(DialogInterface dialog, int which) {
-                            showProgress(true);
-                            ssjdeDeleteTask = new Fragment_SSJDE.DeleteSSJDETask(list.get(position).getId(), position);
-                            ssjdeDeleteTask.execute((Void)null);
-                            dialog.dismiss();
-
-                        }
-                    });
-                    alert.setButton(AlertDialog.BUTTON_NEGATIVE, "Batal", new DialogInterface.OnClickListener() {
-
-                        public void onClick(DialogInterface dialog, int which) {
-                            dialog.dismiss();
-                        }
-                    });
-                    alert.show();
-                }
-            });
-            editBtn.setOnClickListener(new View.OnClickListener(){
-                @Override
-                public void onClick(View v) {
-                    //do something
-                    Intent i = new Intent(getActivity(), SSJDE_Form_Edit.class);
-                    i.putExtra("ssjdeObject", ssjde);
-                    startActivity(i);
-                }
-            });
-
-            return view;
+        public void onBindViewHolder(ViewHolder holder, int position) {
+            long start = System.nanoTime();
+            SSJDE ssjde = getItem(position);
+            holder.idText.setText(ssjde.getId());
+            holder.itemsText.setText(ssjde.itemListToString());
+            String name = customerName(ssjde);
+            holder.customerText.setText(name == null ? "" : "(" + name + ")");
+            PerfStats.getInstance().recordBind((System.nanoTime() - start) / 1000);
         }
     }
 }
@@ -0,0 +1,78 @@
+package com.hartz.inventory;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Keeps the first page of every history list in the history_cache table, so a list can
+ * be shown before the server has answered and revalidated with the page's validators.
+ */
+class HistoryCache {
+
+    private static final String[] COLUMNS = {InventoryDbHelper.COLUMN_BODY,
+            InventoryDbHelper.COLUMN_ETAG, InventoryDbHelper.COLUMN_LAST_MODIFIED};
+
+    static class Entry {
+        private final String body;
+        private final String etag;
+        private final String lastModified;
+
+        Entry(String body, String etag, String lastModified) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        String getBody() {
+            return body;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private final InventoryDbHelper helper;
+
+    HistoryCache(Context context) {
+        helper = InventoryDbHelper.getInstance(context);
+    }
+
+    /**
+     * @param link history link with the user, without paging parameters
+     * @return the page saved last, null if there is none
+     */
+    Entry get(String link) {
+        Cursor cursor = helper.getReadableDatabase().query(InventoryDbHelper.TABLE_HISTORY_CACHE, COLUMNS,
+                InventoryDbHelper.COLUMN_LINK + " = ?", new String[]{link}, null, null, null);
+        try {
+            return cursor.moveToFirst()
+                    ? new Entry(cursor.getString(0), cursor.getString(1), cursor.getString(2)) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    void put(String link, String body, String etag, String lastModified) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryDbHelper.COLUMN_LINK, link);
+        values.put(InventoryDbHelper.COLUMN_BODY, body);
+        values.put(InventoryDbHelper.COLUMN_ETAG, etag);
+        values.put(InventoryDbHelper.COLUMN_LAST_MODIFIED, lastModified);
+        helper.getWritableDatabase().insertWithOnConflict(InventoryDbHelper.TABLE_HISTORY_CACHE, null,
+                values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * forget every saved page, on logout
+     */
+    void clear() {
+        helper.getWritableDatabase().delete(InventoryDbHelper.TABLE_HISTORY_CACHE, null, null);
+    }
+}
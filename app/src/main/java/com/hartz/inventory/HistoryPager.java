@@ -0,0 +1,302 @@
+package com.hartz.inventory;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads a PPRE or SSJDE history one page at a time, following the cursor the server
+ * returns, and gets the next page before the list is scrolled to its end.
+ *
+ * An empty list first shows the first page as it was saved last time and then asks the
+ * server again. The answer only touches the list if that page has changed.
+ *
+ * All methods and listener calls are on the callback executor, the main thread in the app.
+ * Servers that ignore the paging parameters return the whole history as one page.
+ */
+public class HistoryPager<T> {
+
+    /**
+     * documents asked for per request
+     */
+    public static final int PAGE_SIZE = 25;
+    /**
+     * rows left below the last visible one when the next page is requested
+     */
+    public static final int PREFETCH_DISTANCE = 10;
+
+    /**
+     * gets pages, called on the background executor
+     */
+    public interface PageLoader<T> {
+        /**
+         * @param cursor cursor of the page, null for the first one
+         * @param limit most documents to return
+         */
+        Page<T> load(String cursor, int limit) throws IOException;
+
+        /**
+         * @return the first page as it was loaded last time, null if there is none
+         */
+        Page<T> loadCached() throws IOException;
+    }
+
+    public interface Listener {
+        /**
+         * the page was added to {@link #getItems()}, notify the adapter
+         * @param firstPage true if the list was replaced rather than extended
+         */
+        void onPageLoaded(boolean firstPage);
+
+        /**
+         * the page could not be loaded, {@link #getItems()} is left as it was
+         * @param showingItems true if the list still has rows to show, the saved first page
+         *                     or the pages loaded before
+         */
+        void onPageFailed(IOException e, boolean firstPage, boolean showingItems);
+    }
+
+    public static class Page<T> {
+        private final List<T> entries;
+        private final String nextCursor;
+        private final boolean unchanged;
+
+        /**
+         * @param nextCursor cursor of the following page, null if this is the last one
+         */
+        public Page(List<T> entries, String nextCursor) {
+            this(entries, nextCursor, false);
+        }
+
+        /**
+         * @param unchanged true if the page is the same as the one returned by loadCached
+         */
+        public Page(List<T> entries, String nextCursor, boolean unchanged) {
+            this.entries = entries;
+            this.nextCursor = nextCursor;
+            this.unchanged = unchanged;
+        }
+
+        public List<T> getEntries() {
+            return entries;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+    }
+
+    /**
+     * gets pages from a history link, adds limit and cursor to the query and reads
+     * next_cursor from the answer next to the entries. The first page is kept in the
+     * {@link HistoryCache} and asked for with its ETag and Last-Modified.
+     */
+    abstract static class JsonPageLoader<T> implements PageLoader<T> {
+        private final HttpHandler handler;
+        private final HistoryCache cache;
+        private final String link;
+
+        /**
+         * @param link history link with the user, also the key in the cache
+         */
+        JsonPageLoader(HttpHandler handler, HistoryCache cache, String link) {
+            this.handler = handler;
+            this.cache = cache;
+            this.link = link;
+        }
+
+        @Override
+        public Page<T> load(String cursor, int limit) throws IOException {
+            String reqUrl = handler.withQuery(link, "limit", String.valueOf(limit));
+            if (cursor != null) {
+                return parsePage(handler.makeGetCall(handler.withQuery(reqUrl, "cursor", cursor)), false);
+            }
+
+            HistoryCache.Entry cached = cache.get(link);
+            HttpTransport.Response response = cached == null ? handler.makeGetCall(reqUrl, null, null)
+                    : handler.makeGetCall(reqUrl, cached.getEtag(), cached.getLastModified());
+            if (response.isNotModified() && cached != null) {
+                return parsePage(cached.getBody(), true);
+            }
+            String body = response.getBody();
+            //servers without validators send the page again, it may still be the same
+            boolean unchanged = cached != null && cached.getBody().equals(body);
+            //parsed before it is saved, so a broken answer does not end up in the cache
+            Page<T> page = parsePage(body, unchanged);
+            cache.put(link, body, response.getHeader("ETag"), response.getHeader("Last-Modified"));
+            return page;
+        }
+
+        @Override
+        public Page<T> loadCached() throws IOException {
+            HistoryCache.Entry cached = cache.get(link);
+            return cached == null ? null : parsePage(cached.getBody(), false);
+        }
+
+        private Page<T> parsePage(String body, boolean unchanged) throws IOException {
+            long start = System.nanoTime();
+            try {
+                JSONObject json = new JSONObject(body);
+                if (json.getBoolean("error")) throw new IOException("error response for " + link);
+                String next = json.isNull("next_cursor") ? null : json.getString("next_cursor");
+                return new Page<T>(parse(json), next, unchanged);
+            } catch (JSONException e) {
+                throw new IOException("malformed history page", e);
+            } finally {
+                PerfStats.getInstance().recordParse((System.nanoTime() - start) / 1000);
+            }
+        }
+
+        /**
+         * read the documents of one page
+         */
+        protected abstract List<T> parse(JSONObject json) throws JSONException;
+    }
+
+    private final PageLoader<T> loader;
+    private final Executor background;
+    private final Executor callback;
+    private final Listener listener;
+
+    private final ArrayList<T> items = new ArrayList<T>();
+    private String nextCursor;
+    private boolean hasMore;
+    private boolean loading;
+    //bumped by reset and cancel, so a page that was still on its way is thrown away
+    private int generation;
+    private boolean cancelled;
+
+    /**
+     * @param background runs the loader
+     * @param callback delivers the pages, the main thread in the app
+     */
+    public HistoryPager(PageLoader<T> loader, Executor background, Executor callback, Listener listener) {
+        this.loader = loader;
+        this.background = background;
+        this.callback = callback;
+        this.listener = listener;
+    }
+
+    /**
+     * load the first page again, the current items stay until it arrives
+     */
+    public void reset() {
+        if (cancelled) return;
+        generation++;
+        loading = false;
+        load(null, true);
+    }
+
+    /**
+     * stop for good, when the view showing the list is gone. Pages still on their way are
+     * dropped without calling the listener and later calls load nothing.
+     */
+    public void cancel() {
+        cancelled = true;
+        generation++;
+        loading = false;
+    }
+
+    /**
+     * call on every scroll, asks for the next page once the end is near
+     * @param visibleEnd position after the last visible row
+     * @param count rows in the list
+     */
+    public void onScroll(int visibleEnd, int count) {
+        if (count - visibleEnd <= PREFETCH_DISTANCE) loadMore();
+    }
+
+    /**
+     * ask for the next page, unless one is on its way or the history is complete
+     */
+    public void loadMore() {
+        if (hasMore) load(nextCursor, false);
+    }
+
+    private void load(final String cursor, final boolean firstPage) {
+        if (loading || cancelled) return;
+        loading = true;
+        final int requested = generation;
+        final boolean showCached = firstPage && items.isEmpty();
+        background.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (showCached) {
+                    try {
+                        Page<T> cached = loader.loadCached();
+                        if (cached != null) deliver(requested, cached, true, true);
+                    } catch (IOException e) {
+                        //nothing to show until the server answers
+                    }
+                }
+
+                Page<T> page = null;
+                IOException error = null;
+                try {
+                    page = loader.load(cursor, PAGE_SIZE);
+                } catch (IOException e) {
+                    error = e;
+                }
+                if (error != null) {
+                    final IOException failure = error;
+                    callback.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (requested != generation) return;
+                            loading = false;
+                            listener.onPageFailed(failure, firstPage, !items.isEmpty());
+                        }
+                    });
+                } else {
+                    deliver(requested, page, firstPage, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * hand a page to the callback executor
+     * @param fromCache the page was saved earlier, the request is still running
+     */
+    private void deliver(final int requested, final Page<T> page, final boolean firstPage,
+                         final boolean fromCache) {
+        callback.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (requested != generation) return;
+                if (!fromCache) loading = false;
+                //same first page as on screen, the pages loaded after it stay too
+                if (firstPage && page.isUnchanged() && !items.isEmpty()) return;
+                if (firstPage) items.clear();
+                items.addAll(page.getEntries());
+                nextCursor = page.getNextCursor();
+                //an empty page ends the history even if the server sent a cursor
+                hasMore = nextCursor != null && !page.getEntries().isEmpty();
+                listener.onPageLoaded(firstPage);
+            }
+        });
+    }
+
+    /**
+     * the documents loaded so far, the adapter shows this list
+     */
+    public ArrayList<T> getItems() {
+        return items;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+}
@@ -11,19 +11,17 @@ import android.util.Log;
 
 import org.json.JSONObject;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.ProtocolException;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * Created by Ravi Tamada on 01/09/16.
@@ -45,83 +43,105 @@ public class HttpHandler {
     public static final String LINK_SSJDE_BY_USER ="/inventaris/public/api/ssjde/user/";
     public static final String LINK_DELETE_SSJDE = "/inventaris/public/api/ssjde";;
     public static final String LINK_SSJDE_EDIT = "/inventaris/public/api/ssjde";
+    public static final String LINK_BATCH = "/inventaris/public/api/batch";
+
+    private static final String[] LINKS = {LINK_PPRE_CREATE, LINK_MRMART_GET, LINK_SATUAN_GET, LINK_LOGIN,
+            LINK_PPRE_BY_USER, LINK_SSJDE_CREATE, LINK_MFGART_GET, LINK_CUSTOMER_GET, LINK_SSJDE_BY_USER,
+            LINK_BATCH};
 
     SharedPreferences preferences;
+    private final HttpTransport transport;
 
 
 
     public HttpHandler(Context context) {
         preferences = PreferenceManager.getDefaultSharedPreferences(context);
-
+        transport = HttpTransport.getInstance();
     }
 
 
     public String makePostCall(LinkedHashMap<String, Object> params, String urlAddress) throws IOException {
+        //laravel style method override, count deletes and edits under their own route
+        String method = params.containsKey("_method")
+                ? String.valueOf(params.get("_method")).toUpperCase(Locale.US) : "POST";
+        HttpTransport.Response response = makeFormCall(method, urlAddress, encodeForm(params), null);
+        return checkResponse(response, buildUrl(urlAddress));
+    }
 
-            String server = preferences.getString("ServerName", "");
-            URL url = new URL("http://"+server+urlAddress);
-            Log.v("connecting to", url.toString());
-            StringBuilder postData = new StringBuilder();
+    /**
+     * post url encoded form parameters
+     * @param method method the call is counted under, the _method override for edits and deletes
+     * @param urlAddress one of the LINK constants, with the id for edits and deletes
+     * @param formBody parameters encoded with {@link #encodeForm}
+     * @param headers extra request headers, may be null
+     * @return the response, also for error status codes
+     */
+    public HttpTransport.Response makeFormCall(String method, String urlAddress, String formBody,
+                                               Map<String, String> headers) throws IOException {
+        URL url = buildUrl(urlAddress);
+        Log.v("connecting to", url.toString());
+        LinkedHashMap<String, String> allHeaders = new LinkedHashMap<>();
+        allHeaders.put("Content-Type", "application/x-www-form-urlencoded");
+        if (headers != null) allHeaders.putAll(headers);
+        return post(routeOf(method, urlAddress), url, allHeaders, formBody.getBytes("UTF-8"));
+    }
+
+    /**
+     * url encode form parameters, in the order of the map
+     */
+    public static String encodeForm(LinkedHashMap<String, Object> params) {
+        StringBuilder postData = new StringBuilder();
+        try {
             for (LinkedHashMap.Entry<String, Object> param : params.entrySet()) {
                 if (postData.length() != 0) postData.append('&');
                 postData.append(URLEncoder.encode(param.getKey(), "UTF-8"));
                 postData.append('=');
                 postData.append(URLEncoder.encode(String.valueOf(param.getValue()), "UTF-8"));
             }
+        } catch (UnsupportedEncodingException e) {
+            //every platform supports UTF-8
+            throw new AssertionError(e);
+        }
+        return postData.toString();
+    }
 
-            byte[] postDataBytes = postData.toString().getBytes("UTF-8");
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setConnectTimeout(8000);
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            conn.setRequestProperty("Content-Length", String.valueOf(postDataBytes.length));
-            conn.setDoOutput(true);
-            conn.getOutputStream().write(postDataBytes);
-            InputStream in = new BufferedInputStream(conn.getInputStream());
-            String response = convertStreamToString(in);
-            return response;
-
+    /**
+     * post a json body
+     * @param urlAddress one of the LINK constants
+     * @param json request body
+     * @return the response, also for error status codes
+     */
+    public HttpTransport.Response makeJSONCall(String urlAddress, String json) throws IOException {
+        URL url = buildUrl(urlAddress);
+        Log.v("connecting to", url.toString());
+        LinkedHashMap<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Accept", "application/json");
+        return post(routeOf("POST", urlAddress), url, headers, json.getBytes("UTF-8"));
     }
 
     public String makePostJSONCall(String reqUrl, JSONObject content) {
 
         try {
-            String server = preferences.getString("ServerName", "");
-            URL url = new URL("http://"+server+reqUrl);
+            URL url = buildUrl(reqUrl);
 
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
+            LinkedHashMap<String, String> headers = new LinkedHashMap<>();
+            headers.put("Content-Type", "application/json");
+            headers.put("Accept", "application/json");
 
-            con.setDoOutput(true);
-            con.setDoInput(true);
-            con.setRequestProperty("Content-Type", "application/json");
-            con.setRequestProperty("Accept", "application/json");
-            con.setRequestMethod("POST");
-
-            OutputStreamWriter wr = new OutputStreamWriter(con.getOutputStream());
             //write json object to string
-            wr.write(content.toString());
-            wr.flush();
+            HttpTransport.Response response = post(routeOf("POST", reqUrl), url, headers,
+                    content.toString().getBytes("UTF-8"));
 
 //display what returns the POST request
 
-            StringBuilder sb = new StringBuilder();
-            int HttpResult = con.getResponseCode();
-            if (HttpResult == HttpURLConnection.HTTP_OK) {
-                BufferedReader br = new BufferedReader(
-                        new InputStreamReader(con.getInputStream(), "utf-8"));
-                String line = null;
-                while ((line = br.readLine()) != null) {
-                    sb.append(line + "\n");
-                }
-                br.close();
-                return sb.toString();
+            if (response.getStatus() == HttpURLConnection.HTTP_OK) {
+                return response.getBody();
             } else {
-                System.out.println(con.getResponseMessage());
+                Log.e(TAG, "HTTP " + response.getStatus() + ": " + response.getBody());
             }
         } catch (MalformedURLException e) {
             Log.e(TAG, "MalformedURLException: " + e.getMessage());
-        } catch (ProtocolException e) {
-            Log.e(TAG, "ProtocolException: " + e.getMessage());
         } catch (IOException e) {
             Log.e(TAG, "IOException: " + e.getMessage());
         } catch (Exception e) {
@@ -131,37 +151,128 @@ public class HttpHandler {
     }
 
     public String makeGetCall(String reqUrl) throws IOException {
-        String response = null;
-        String server = preferences.getString("ServerName", "");
-        URL url = new URL("http://"+server+reqUrl);
+        URL url = buildUrl(reqUrl);
         Log.v("connecting to", url.toString());
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            // read the response
-            InputStream in = new BufferedInputStream(conn.getInputStream());
-            response = convertStreamToString(in);
+        HttpTransport.Response response = get(reqUrl, url, null);
+        return checkResponse(response, url);
+    }
 
+    /**
+     * conditional get, sends the validators of the cached copy so the server can skip the body
+     * @param reqUrl url to get
+     * @param etag ETag of the cached copy, null if unknown
+     * @param lastModified Last-Modified of the cached copy, null if unknown
+     * @return the response, {@link HttpTransport.Response#isNotModified()} when the cached copy is still valid
+     */
+    public HttpTransport.Response makeGetCall(String reqUrl, String etag, String lastModified) throws IOException {
+        URL url = buildUrl(reqUrl);
+        Log.v("connecting to", url.toString());
+        LinkedHashMap<String, String> headers = new LinkedHashMap<>();
+        if (etag != null) headers.put("If-None-Match", etag);
+        if (lastModified != null) headers.put("If-Modified-Since", lastModified);
+        HttpTransport.Response response = get(reqUrl, url, headers);
+        if (!response.isNotModified()) {
+            checkResponse(response, url);
+        }
         return response;
     }
 
-    private String convertStreamToString(InputStream is) {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-        StringBuilder sb = new StringBuilder();
+    /**
+     * conditional get for downloads too big to hold as one string, the handler reads the body
+     * while it arrives. It is not shared with other callers asking for the same url.
+     * @param handler reads the body, also gets a 304 with an empty one
+     * @return what the handler returned
+     * @throws IOException for error status codes too, like {@link #makeGetCall(String)}
+     */
+    public <T> T makeGetCall(String reqUrl, String etag, String lastModified,
+                             final HttpTransport.BodyHandler<T> handler) throws IOException {
+        final URL url = buildUrl(reqUrl);
+        Log.v("connecting to", url.toString());
+        LinkedHashMap<String, String> headers = new LinkedHashMap<>();
+        if (etag != null) headers.put("If-None-Match", etag);
+        if (lastModified != null) headers.put("If-Modified-Since", lastModified);
+        return transport.execute(routeOf("GET", reqUrl), "GET", url, headers, null,
+                new HttpTransport.BodyHandler<T>() {
+                    @Override
+                    public T handle(HttpTransport.Response response, InputStream body) throws IOException {
+                        if (!response.isSuccessful() && !response.isNotModified()) {
+                            throw new IOException("HTTP " + response.getStatus() + " for " + url);
+                        }
+                        return handler.handle(response, body);
+                    }
+                });
+    }
 
-        String line;
+    /**
+     * a write drops the GET responses kept for sharing, before it and again once the server
+     * has it, so a list read after the write shows it
+     */
+    private HttpTransport.Response post(String route, URL url, Map<String, String> headers, byte[] body)
+            throws IOException {
+        transport.getGets().invalidate();
         try {
-            while ((line = reader.readLine()) != null) {
-                sb.append(line).append('\n');
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+            return transport.execute(route, "POST", url, headers, body);
         } finally {
-            try {
-                is.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+            transport.getGets().invalidate();
+        }
+    }
+
+    /**
+     * a GET made at the same time by another screen, or one that just finished, is shared
+     * instead of going to the server again
+     */
+    private HttpTransport.Response get(String reqUrl, final URL url, final Map<String, String> headers)
+            throws IOException {
+        final String route = routeOf("GET", reqUrl);
+        String key = headers == null || headers.isEmpty() ? url.toString() : url + " " + headers;
+        return transport.getGets().execute(key, new Callable<HttpTransport.Response>() {
+            @Override
+            public HttpTransport.Response call() throws IOException {
+                return transport.execute(route, "GET", url, headers, null);
+            }
+        });
+    }
+
+    /**
+     * name a request after the link it was made to, ids and query parameters left out
+     * @param method http method, or the overridden method for form posts
+     * @param reqUrl one of the LINK constants, optionally followed by an id and a query
+     * @return e.g. "GET /inventaris/public/api/ppreh/user/{id}"
+     */
+    public static String routeOf(String method, String reqUrl) {
+        int query = reqUrl.indexOf('?');
+        String path = query < 0 ? reqUrl : reqUrl.substring(0, query);
+        String link = null;
+        for (String candidate : LINKS) {
+            if (path.startsWith(candidate) && (link == null || candidate.length() > link.length())) {
+                link = candidate;
             }
         }
-        return sb.toString();
+        if (link == null) return method + " " + path;
+        return method + " " + link + (path.length() > link.length() ? (link.endsWith("/") ? "{id}" : "/{id}") : "");
+    }
+
+    /**
+     * append a url encoded query parameter to a link
+     */
+    public String withQuery(String reqUrl, String name, String value) throws UnsupportedEncodingException {
+        return reqUrl + (reqUrl.indexOf('?') < 0 ? '?' : '&') + URLEncoder.encode(name, "UTF-8")
+                + '=' + URLEncoder.encode(value, "UTF-8");
+    }
+
+    private URL buildUrl(String reqUrl) throws MalformedURLException {
+        String server = preferences.getString("ServerName", "");
+        return new URL("http://"+server+reqUrl);
+    }
+
+    /**
+     * error status codes are reported the same way HttpURLConnection.getInputStream did
+     * before, so callers keep treating them as a connection problem
+     */
+    private String checkResponse(HttpTransport.Response response, URL url) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("HTTP " + response.getStatus() + " for " + url);
+        }
+        return response.getBody();
     }
 }
\ No newline at end of file
@@ -0,0 +1,364 @@
+package com.hartz.inventory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Process-wide http transport shared by every {@link HttpHandler}.
+ *
+ * HttpURLConnection keeps idle sockets in a pool as long as every response body is
+ * read to the end and closed, so this class always drains the input or error stream
+ * and only calls disconnect() when an exchange failed half way.
+ */
+public class HttpTransport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 8000;
+    public static final int DEFAULT_READ_TIMEOUT = 15000;
+    public static final int MAX_IDLE_CONNECTIONS = 5;
+    /**
+     * request bodies smaller than this are sent as they are, gzip would not pay off
+     */
+    public static final int MIN_COMPRESS_SIZE = 1024;
+
+    private static HttpTransport instance;
+
+    private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+    private volatile boolean compressRequests = false;
+    private final TrafficCounter traffic = new TrafficCounter();
+    private final InFlightGets gets = new InFlightGets();
+    private final RequestMetrics metrics = new RequestMetrics();
+
+    HttpTransport() {
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+    }
+
+    public static synchronized HttpTransport getInstance() {
+        if (instance == null) {
+            instance = new HttpTransport();
+        }
+        return instance;
+    }
+
+    /**
+     * change the timeouts used by every following request
+     * @param connectTimeout timeout to open the socket, in millis
+     * @param readTimeout timeout between two reads of the response, in millis
+     */
+    public void setTimeouts(int connectTimeout, int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * gzip request bodies of {@link #MIN_COMPRESS_SIZE} bytes or more. Off by default, the
+     * server has to decode Content-Encoding: gzip request bodies for this to work.
+     */
+    public void setCompressRequests(boolean compressRequests) {
+        this.compressRequests = compressRequests;
+    }
+
+    public boolean isCompressRequests() {
+        return compressRequests;
+    }
+
+    /**
+     * @return bytes sent and received per route since the process started
+     */
+    public TrafficCounter getTraffic() {
+        return traffic;
+    }
+
+    /**
+     * @return timings, sizes and status codes per route since the process started
+     */
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the GETs running right now and the ones that just finished, shared by every handler
+     */
+    public InFlightGets getGets() {
+        return gets;
+    }
+
+    /**
+     * execute a single request, counting its traffic under the path of the url
+     */
+    public Response execute(String method, URL url, Map<String, String> headers, byte[] body)
+            throws IOException {
+        return execute(url.getPath(), method, url, headers, body);
+    }
+
+    /**
+     * execute a single request
+     * @param route name the traffic of this request is counted under
+     * @param method http method, GET or POST
+     * @param url full url to connect to
+     * @param headers extra request headers, may be null
+     * @param body request body, null for requests without one
+     * @return the response, also for error status codes
+     * @throws IOException when the connection could not be made or was broken
+     */
+    public Response execute(String route, String method, URL url, Map<String, String> headers,
+                            byte[] body) throws IOException {
+        return execute(route, method, url, headers, body, READ_STRING);
+    }
+
+    /**
+     * execute a single request and hand the body to the handler while it arrives, without
+     * keeping it in memory. The download time recorded for the route includes the handler.
+     * @param handler reads the body, on the calling thread, also for error status codes
+     * @return what the handler returned
+     * @throws IOException when the connection could not be made or was broken, or the handler threw
+     */
+    public <T> T execute(String route, String method, URL url, Map<String, String> headers,
+                         byte[] body, BodyHandler<T> handler) throws IOException {
+        RequestMetrics.Route timings = metrics.route(route);
+        long start = System.nanoTime();
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        try {
+            conn.setConnectTimeout(connectTimeout);
+            conn.setReadTimeout(readTimeout);
+            conn.setUseCaches(false);
+            conn.setRequestMethod(method);
+            //asking for gzip ourselves means HttpURLConnection leaves decoding to us
+            conn.setRequestProperty("Accept-Encoding", "gzip, deflate");
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    conn.setRequestProperty(header.getKey(), header.getValue());
+                }
+            }
+
+            byte[] payload = body;
+            if (body != null) {
+                if (compressRequests && body.length >= MIN_COMPRESS_SIZE) {
+                    payload = gzip(body);
+                    conn.setRequestProperty("Content-Encoding", "gzip");
+                }
+                conn.setDoOutput(true);
+                conn.setFixedLengthStreamingMode(payload.length);
+            }
+            conn.connect();
+            long connected = System.nanoTime();
+
+            long requestWireBytes = 0;
+            if (payload != null) {
+                requestWireBytes = payload.length;
+                OutputStream out = conn.getOutputStream();
+                try {
+                    out.write(payload);
+                } finally {
+                    out.close();
+                }
+            }
+
+            int status = conn.getResponseCode();
+            long firstByte = System.nanoTime();
+            Response response = new Response(status, "", conn.getHeaderFields());
+            //the error stream has to be drained too, otherwise the socket can not be reused
+            InputStream in = status >= HttpURLConnection.HTTP_BAD_REQUEST
+                    ? conn.getErrorStream() : conn.getInputStream();
+            CountingInputStream wire = new CountingInputStream(
+                    in != null ? in : new ByteArrayInputStream(new byte[0]));
+            CountingInputStream decoded = new CountingInputStream(
+                    decode(new BufferedInputStream(wire), conn.getContentEncoding()));
+            InputStream responseBody = new DrainingInputStream(decoded);
+            T result = handler.handle(response, responseBody);
+            responseBody.close();
+            traffic.record(route, body == null ? 0 : body.length, requestWireBytes,
+                    decoded.getCount(), wire.getCount());
+            //lookup, socket and handshake in one, the connection does not tell them apart
+            timings.record((connected - start) / 1000, (firstByte - connected) / 1000,
+                    (System.nanoTime() - firstByte) / 1000, wire.getCount(), status);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            timings.recordFailure((System.nanoTime() - start) / 1000);
+            //the socket is in an unknown state, keep it out of the pool
+            conn.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * reads a response body while it arrives
+     */
+    public interface BodyHandler<T> {
+        /**
+         * @param response status and headers, its own body is empty
+         * @param body the decoded body, whatever is left unread is drained afterwards
+         */
+        T handle(Response response, InputStream body) throws IOException;
+    }
+
+    //the whole body as one string, what every call except the catalog downloads wants
+    private static final BodyHandler<Response> READ_STRING = new BodyHandler<Response>() {
+        @Override
+        public Response handle(Response response, InputStream body) throws IOException {
+            return response.withBody(BodyReader.readString(body,
+                    bodyLengthHint(response.getContentLength(), response.getHeader("Content-Encoding"))));
+        }
+    };
+
+    /**
+     * reads the rest of the body on close, a socket is only pooled again once its body was read
+     * to the end
+     */
+    private static class DrainingInputStream extends FilterInputStream {
+        private boolean closed;
+
+        DrainingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                byte[] skip = new byte[4096];
+                while (in.read(skip) != -1) {
+                    //unread rest of the body
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * unwrap a gzip or deflate response body
+     */
+    static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+        if (contentEncoding == null) return in;
+        String encoding = contentEncoding.trim().toLowerCase(Locale.US);
+        if (!encoding.equals("gzip") && !encoding.equals("deflate")) return in;
+
+        //304 and other bodiless responses may still carry the header, with no gzip stream to read
+        PushbackInputStream peek = new PushbackInputStream(in, 1);
+        int first = peek.read();
+        if (first == -1) return peek;
+        peek.unread(first);
+        return encoding.equals("gzip") ? new GZIPInputStream(peek) : new InflaterInputStream(peek);
+    }
+
+    static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 64);
+        GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+        try {
+            gzip.write(body);
+        } finally {
+            gzip.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return expected size of the decoded body, -1 if the headers do not tell
+     */
+    static long bodyLengthHint(int contentLength, String contentEncoding) {
+        if (contentLength < 0) return -1;
+        if (contentEncoding == null || contentEncoding.trim().equalsIgnoreCase("identity")) {
+            return contentLength;
+        }
+        //decoded, the body is at least the wire size and doubling from there would reach
+        //twice it anyway, readString keeps doubling for json that shrank more
+        return contentLength * 2L;
+    }
+
+    /**
+     * status code, headers and body of a finished request
+     */
+    public static class Response {
+        private final int status;
+        private final String body;
+        private final HashMap<String, String> headers;
+
+        public Response(int status, String body, Map<String, List<String>> headerFields) {
+            this(status, body, new HashMap<String, String>());
+            if (headerFields != null) {
+                for (Map.Entry<String, List<String>> field : headerFields.entrySet()) {
+                    //the status line is reported under a null key
+                    if (field.getKey() != null && !field.getValue().isEmpty()) {
+                        headers.put(field.getKey().toLowerCase(Locale.US), field.getValue().get(0));
+                    }
+                }
+            }
+        }
+
+        private Response(int status, String body, HashMap<String, String> headers) {
+            this.status = status;
+            this.body = body;
+            this.headers = headers;
+        }
+
+        /**
+         * @return the same status and headers with the body that was read
+         */
+        Response withBody(String body) {
+            return new Response(status, body, headers);
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * @param name header name, case insensitive
+         * @return the first value of the header, null if it was not sent
+         */
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.US));
+        }
+
+        /**
+         * @return Content-Length of the body as sent, -1 if unknown
+         */
+        int getContentLength() {
+            String length = getHeader("Content-Length");
+            if (length == null) return -1;
+            try {
+                return Integer.parseInt(length.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        public boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+
+        public boolean isNotModified() {
+            return status == HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.hartz.inventory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Shares one GET between every caller asking for the same url at the same time.
+ *
+ * Switching tabs quickly or resuming a screen twice starts the same history request
+ * several times. The first caller makes the request, the others wait for it and get the
+ * same response. A successful response is also kept for a short while, so a caller coming
+ * right after it finished does not go to the server again. Any write clears what is kept,
+ * a list read after a post always comes from the server.
+ *
+ * Only small bodies are kept, a full catalog download is shared while it runs but not held
+ * on to afterwards. Expired responses are dropped whenever any url is asked for.
+ */
+public class InFlightGets {
+
+    /**
+     * how long a finished response is handed out again, in millis
+     */
+    public static final long DEFAULT_TTL = 2000;
+    /**
+     * longest body kept after the call, in chars, a history page is far below it
+     */
+    public static final int MAX_KEPT_CHARS = 32 * 1024;
+
+    private final long ttlMillis;
+    private final Map<String, FutureTask<HttpTransport.Response>> inFlight =
+            new HashMap<String, FutureTask<HttpTransport.Response>>();
+    private final Map<String, Memo> memos = new HashMap<String, Memo>();
+    private int generation;
+
+    public InFlightGets() {
+        this(DEFAULT_TTL);
+    }
+
+    /**
+     * @param ttlMillis how long a finished response is handed out again, 0 to only share in flight
+     */
+    public InFlightGets(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * make the call, or wait for the identical one already running
+     * @param key the url with every header that changes the response
+     * @param call makes the request, run on the thread of the first caller
+     * @return the response, shared by every caller of the same key
+     * @throws IOException the failure of the shared call, also for the callers waiting on it
+     */
+    public HttpTransport.Response execute(String key, Callable<HttpTransport.Response> call)
+            throws IOException {
+        FutureTask<HttpTransport.Response> task;
+        boolean owner = false;
+        int started;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Memo memo = memos.get(key);
+            if (memo != null && now < memo.expires) return memo.response;
+            //a few entries at most, every one of them only lives for the ttl
+            Iterator<Memo> kept = memos.values().iterator();
+            while (kept.hasNext()) {
+                if (now >= kept.next().expires) kept.remove();
+            }
+            task = inFlight.get(key);
+            if (task == null) {
+                task = new FutureTask<HttpTransport.Response>(call);
+                inFlight.put(key, task);
+                owner = true;
+            }
+            started = generation;
+        }
+
+        if (!owner) {
+            try {
+                return unwrap(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for " + key);
+            }
+        }
+
+        task.run();
+        //the task is done, get does not wait, but it would throw on an interrupt of our own
+        boolean interrupted = Thread.interrupted();
+        try {
+            HttpTransport.Response response;
+            try {
+                response = unwrap(task);
+            } finally {
+                synchronized (this) {
+                    inFlight.remove(key);
+                }
+            }
+            synchronized (this) {
+                //a write while the call was running may have changed what it read
+                if (ttlMillis > 0 && started == generation
+                        && (response.isSuccessful() || response.isNotModified())
+                        && (response.getBody() == null || response.getBody().length() <= MAX_KEPT_CHARS)) {
+                    memos.put(key, new Memo(response, System.currentTimeMillis() + ttlMillis));
+                }
+            }
+            return response;
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * forget the kept responses, after anything was written to the server
+     */
+    public synchronized void invalidate() {
+        generation++;
+        memos.clear();
+    }
+
+    /**
+     * @return number of finished responses kept, expired ones included until the next call
+     */
+    public synchronized int keptCount() {
+        return memos.size();
+    }
+
+    /**
+     * @return number of calls running right now
+     */
+    public synchronized int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static HttpTransport.Response unwrap(FutureTask<HttpTransport.Response> task)
+            throws IOException, InterruptedException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static class Memo {
+        final HttpTransport.Response response;
+        final long expires;
+
+        Memo(HttpTransport.Response response, long expires) {
+            this.response = response;
+            this.expires = expires;
+        }
+    }
+}
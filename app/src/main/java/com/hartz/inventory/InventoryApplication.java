@@ -0,0 +1,36 @@
+package com.hartz.inventory;
+
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+
+/**
+ * Starts loading the catalog cache as soon as the process starts, so the forms find it
+ * ready instead of reading the database on the main thread, and keeps the outbox draining.
+ */
+public class InventoryApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        //nothing to load before the first sync, the login triggers it then
+        if (SharedPrefsHelper.isLoggedIn(this)) {
+            CatalogCache.getInstance(this).preload();
+        }
+
+        //calls queued before the app was killed, and retries as soon as the network is back
+        final Outbox outbox = Outbox.getInstance(this);
+        outbox.drain();
+        registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (!intent.getBooleanExtra(ConnectivityManager.EXTRA_NO_CONNECTIVITY, false)) {
+                    outbox.drain();
+                }
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+}
@@ -0,0 +1,124 @@
+package com.hartz.inventory;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * Local database holding the master data catalogs, replacing the json strings that used
+ * to be kept in the default SharedPreferences file.
+ */
+public class InventoryDbHelper extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "inventory.db";
+    private static final int DATABASE_VERSION = 3;
+
+    public static final String TABLE_MRMART = "mrmart";
+    public static final String TABLE_MFGART = "mfgart";
+    public static final String TABLE_SATUAN = "satuan";
+    public static final String TABLE_CUSTOMER = "customer";
+    public static final String TABLE_SYNC_STATE = "sync_state";
+    public static final String TABLE_OUTBOX = "outbox";
+    public static final String TABLE_HISTORY_CACHE = "history_cache";
+
+    public static final String COLUMN_GROUP_ID = "group_id";
+    public static final String COLUMN_ARTICLE_ID = "article_id";
+    public static final String COLUMN_ARTICLE_NAME = "article_name";
+    public static final String COLUMN_SATUAN_ID = "satuan_id";
+    public static final String COLUMN_SATUAN_NAME = "satuan_name";
+    public static final String COLUMN_CUST_ID = "cust_id";
+    public static final String COLUMN_CUST_NAME = "cust_name";
+    public static final String COLUMN_CATALOG = "catalog";
+    public static final String COLUMN_ETAG = "etag";
+    public static final String COLUMN_LAST_MODIFIED = "last_modified";
+    public static final String COLUMN_WATERMARK = "watermark";
+    public static final String COLUMN_ID = "_id";
+    public static final String COLUMN_IDEMPOTENCY_KEY = "idempotency_key";
+    public static final String COLUMN_METHOD = "method";
+    public static final String COLUMN_LINK = "link";
+    public static final String COLUMN_BODY = "body";
+    public static final String COLUMN_CREATED_AT = "created_at";
+    public static final String COLUMN_ATTEMPTS = "attempts";
+    public static final String COLUMN_NEXT_ATTEMPT_AT = "next_attempt_at";
+    public static final String COLUMN_LAST_ERROR = "last_error";
+    public static final String COLUMN_FAILED = "failed";
+
+    private static InventoryDbHelper instance;
+
+    public static synchronized InventoryDbHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new InventoryDbHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private InventoryDbHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * @param name database file, tests use their own so the stored catalogs stay
+     */
+    InventoryDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_MRMART + " ("
+                + COLUMN_GROUP_ID + " TEXT NOT NULL, "
+                + COLUMN_ARTICLE_ID + " TEXT NOT NULL, "
+                + COLUMN_ARTICLE_NAME + " TEXT, "
+                + "PRIMARY KEY (" + COLUMN_GROUP_ID + ", " + COLUMN_ARTICLE_ID + "))");
+        db.execSQL("CREATE TABLE " + TABLE_MFGART + " ("
+                + COLUMN_GROUP_ID + " TEXT NOT NULL, "
+                + COLUMN_ARTICLE_ID + " TEXT NOT NULL, "
+                + COLUMN_ARTICLE_NAME + " TEXT, "
+                + "PRIMARY KEY (" + COLUMN_GROUP_ID + ", " + COLUMN_ARTICLE_ID + "))");
+        db.execSQL("CREATE TABLE " + TABLE_SATUAN + " ("
+                + COLUMN_SATUAN_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_SATUAN_NAME + " TEXT)");
+        db.execSQL("CREATE TABLE " + TABLE_CUSTOMER + " ("
+                + COLUMN_CUST_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_CUST_NAME + " TEXT)");
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " ("
+                + COLUMN_CATALOG + " TEXT PRIMARY KEY, "
+                + COLUMN_ETAG + " TEXT, "
+                + COLUMN_LAST_MODIFIED + " TEXT, "
+                + COLUMN_WATERMARK + " TEXT)");
+        createOutbox(db);
+        createHistoryCache(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createOutbox(db);
+        }
+        if (oldVersion < 3) {
+            createHistoryCache(db);
+        }
+    }
+
+    private void createOutbox(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_IDEMPOTENCY_KEY + " TEXT NOT NULL UNIQUE, "
+                + COLUMN_METHOD + " TEXT NOT NULL, "
+                + COLUMN_LINK + " TEXT NOT NULL, "
+                + COLUMN_BODY + " TEXT NOT NULL, "
+                + COLUMN_CREATED_AT + " INTEGER NOT NULL, "
+                + COLUMN_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_NEXT_ATTEMPT_AT + " INTEGER NOT NULL, "
+                + COLUMN_LAST_ERROR + " TEXT, "
+                + COLUMN_FAILED + " INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    private void createHistoryCache(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_HISTORY_CACHE + " ("
+                + COLUMN_LINK + " TEXT PRIMARY KEY, "
+                + COLUMN_BODY + " TEXT NOT NULL, "
+                + COLUMN_ETAG + " TEXT, "
+                + COLUMN_LAST_MODIFIED + " TEXT)");
+    }
+}
@@ -0,0 +1,105 @@
+package com.hartz.inventory;
+
+import com.hartz.inventory.model.Mfgart;
+import com.hartz.inventory.model.Mrmart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One line of a PPRE or SSJDE form, holding what is typed in its row. The rows are
+ * recycled while scrolling, so the line and not the views is what the form submits.
+ */
+public class LineItem<T> {
+    //picked from the catalog, or the one the line was loaded with
+    T article;
+    String articleText;
+    String quantity;
+    int satuanPosition;
+    String note;
+
+    //shown again when the row is bound, the views may not exist when validating
+    boolean articleError;
+    boolean quantityError;
+
+    /**
+     * an empty line
+     */
+    public LineItem() {
+        this(null, "", "", 0, "");
+    }
+
+    /**
+     * a line of an existing document
+     * @param satuanPosition position of the unit in the satuan spinner
+     */
+    public LineItem(T article, String articleText, String quantity, int satuanPosition, String note) {
+        this.article = article;
+        this.articleText = articleText;
+        this.quantity = quantity;
+        this.satuanPosition = satuanPosition;
+        this.note = note;
+    }
+
+    public T getArticle() {
+        return article;
+    }
+
+    public String getQuantity() {
+        return quantity;
+    }
+
+    public int getSatuanPosition() {
+        return satuanPosition;
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public boolean hasError() {
+        return articleError || quantityError;
+    }
+
+    /**
+     * the lines of a PPRE being edited, each keeps its article until another one is picked
+     * @param catalogs to find the position of every unit, without scanning the satuan list
+     */
+    public static ArrayList<LineItem<Mrmart>> fromMrmart(List<Mrmart> items, CatalogCache.Snapshot catalogs) {
+        ArrayList<LineItem<Mrmart>> lines = new ArrayList<LineItem<Mrmart>>(items.size());
+        for (Mrmart mrmart : items) {
+            int pos = catalogs.indexOfSatuan(mrmart.getSatuan());
+            lines.add(new LineItem<Mrmart>(mrmart, mrmart.toString(), mrmart.getQuantity() + "",
+                    Math.max(pos, 0), mrmart.getNote()));
+        }
+        return lines;
+    }
+
+    /**
+     * the lines of an SSJDE being edited, see {@link #fromMrmart}
+     */
+    public static ArrayList<LineItem<Mfgart>> fromMfgart(List<Mfgart> items, CatalogCache.Snapshot catalogs) {
+        ArrayList<LineItem<Mfgart>> lines = new ArrayList<LineItem<Mfgart>>(items.size());
+        for (Mfgart mfgart : items) {
+            int pos = catalogs.indexOfSatuan(mfgart.getSatuan());
+            lines.add(new LineItem<Mfgart>(mfgart, mfgart.toString(), mfgart.getQuantity() + "",
+                    Math.max(pos, 0), mfgart.getNote()));
+        }
+        return lines;
+    }
+
+    /**
+     * flag every line without an article or a quantity
+     * @return position of the first invalid line, -1 if all are valid
+     */
+    public static <T> int validate(List<LineItem<T>> lines) {
+        int first = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            LineItem<T> line = lines.get(i);
+            line.articleError = line.article == null;
+            line.quantityError = line.quantity == null || line.quantity.length() == 0;
+            if (first == -1 && line.hasError()) first = i;
+        }
+        return first;
+    }
+}
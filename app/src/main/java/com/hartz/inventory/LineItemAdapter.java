@@ -0,0 +1,199 @@
+package com.hartz.inventory;
+
+import android.content.Context;
+import android.os.Build;
+import android.support.v7.widget.RecyclerView;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
+import android.widget.EditText;
+import android.widget.Spinner;
+
+import com.hartz.inventory.model.Satuan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line editor of the PPRE and SSJDE forms. Only the rows on screen are inflated, a long
+ * document costs as many views as a short one. Every edit is written back to its
+ * {@link LineItem} right away, a recycled row is bound to another line afterwards.
+ *
+ * The row layout has to use the form_item ids.
+ */
+public class LineItemAdapter<T> extends RecyclerView.Adapter<LineItemAdapter<T>.ViewHolder> {
+
+    private final LayoutInflater inflater;
+    private final int resource;
+    private final int threshold;
+    private final CatalogSearchAdapter<T> articleAdapter;
+    private final ArrayAdapter<Satuan> satuanAdapter;
+    private final String articleError;
+    private final String quantityError;
+    private final List<LineItem<T>> lines;
+
+    /**
+     * @param resource layout of a line
+     * @param threshold characters typed before articles are suggested
+     * @param lines lines of the document, the adapter edits this list
+     */
+    public LineItemAdapter(Context context, int resource, int threshold, CatalogSearchAdapter<T> articleAdapter,
+                           ArrayAdapter<Satuan> satuanAdapter, List<LineItem<T>> lines) {
+        this.inflater = LayoutInflater.from(context);
+        this.resource = resource;
+        this.threshold = threshold;
+        this.articleAdapter = articleAdapter;
+        this.satuanAdapter = satuanAdapter;
+        this.articleError = context.getString(R.string.error_ppre_invalid_item);
+        this.quantityError = context.getString(R.string.error_invalid_quantity);
+        this.lines = lines;
+    }
+
+    public LineItemAdapter(Context context, int resource, int threshold, CatalogSearchAdapter<T> articleAdapter,
+                           ArrayAdapter<Satuan> satuanAdapter) {
+        this(context, resource, threshold, articleAdapter, satuanAdapter, new ArrayList<LineItem<T>>());
+    }
+
+    public List<LineItem<T>> getLines() {
+        return lines;
+    }
+
+    /**
+     * @return position of the new line
+     */
+    public int addLine(LineItem<T> line) {
+        lines.add(line);
+        notifyItemInserted(lines.size() - 1);
+        return lines.size() - 1;
+    }
+
+    public void removeLine(int position) {
+        lines.remove(position);
+        notifyItemRemoved(position);
+    }
+
+    /**
+     * flag the invalid lines, the rows on screen show their errors at once
+     * @return position of the first invalid line, -1 if all are valid
+     */
+    public int validate() {
+        int first = LineItem.validate(lines);
+        if (first != -1) notifyDataSetChanged();
+        return first;
+    }
+
+    /**
+     * looks the row views up once, the listeners write into the line bound at the moment
+     */
+    class ViewHolder extends RecyclerView.ViewHolder {
+        private final AutoCompleteTextView articleText;
+        private final EditText quantityText;
+        private final Spinner satuanSpinner;
+        private final EditText noteText;
+        //null while binding, setting the texts must not write into the previous line
+        private LineItem<T> line;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            articleText = (AutoCompleteTextView) itemView.findViewById(R.id.form_item_article);
+            quantityText = (EditText) itemView.findViewById(R.id.form_item_quantity);
+            satuanSpinner = (Spinner) itemView.findViewById(R.id.form_item_satuan);
+            noteText = (EditText) itemView.findViewById(R.id.form_item_note);
+
+            articleText.setThreshold(threshold);
+            articleText.setAdapter(articleAdapter);
+            satuanSpinner.setAdapter(satuanAdapter);
+
+            articleText.addTextChangedListener(new AfterTextChanged() {
+                @Override
+                public void afterTextChanged(Editable s) {
+                    if (line != null) line.articleText = s.toString();
+                }
+            });
+            articleText.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                    if (line == null) return;
+                    line.article = (T) parent.getItemAtPosition(position);
+                    line.articleError = false;
+                    articleText.setError(null);
+                }
+            });
+            quantityText.addTextChangedListener(new AfterTextChanged() {
+                @Override
+                public void afterTextChanged(Editable s) {
+                    if (line == null) return;
+                    line.quantity = s.toString();
+                    if (s.length() > 0) line.quantityError = false;
+                }
+            });
+            satuanSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+                @Override
+                public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                    if (line != null) line.satuanPosition = position;
+                }
+
+                @Override
+                public void onNothingSelected(AdapterView<?> parent) {
+                }
+            });
+            noteText.addTextChangedListener(new AfterTextChanged() {
+                @Override
+                public void afterTextChanged(Editable s) {
+                    if (line != null) line.note = s.toString();
+                }
+            });
+            itemView.findViewById(R.id.form_item_delete).setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) removeLine(position);
+                }
+            });
+        }
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new ViewHolder(inflater.inflate(resource, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        LineItem<T> line = lines.get(position);
+        holder.line = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            //no need to search the catalog for a text that was not typed
+            holder.articleText.setText(line.articleText, false);
+        } else {
+            holder.articleText.setText(line.articleText);
+        }
+        holder.articleText.setError(line.articleError ? articleError : null);
+        holder.quantityText.setText(line.quantity);
+        holder.quantityText.setError(line.quantityError ? quantityError : null);
+        holder.satuanSpinner.setSelection(line.satuanPosition);
+        holder.noteText.setText(line.note);
+        holder.line = line;
+    }
+
+    @Override
+    public int getItemCount() {
+        return lines.size();
+    }
+
+    private static abstract class AfterTextChanged implements TextWatcher {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.hartz.inventory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the inserts, removals and changes that turn one list into another, so a
+ * RecyclerView adapter can notify item by item instead of rebinding everything.
+ *
+ * Uses Myers' O(ND) diff on the item identities, then compares the contents of the
+ * items that stayed. Safe to run off the main thread as long as the lists are not
+ * modified meanwhile.
+ */
+public class ListDiff {
+
+    /**
+     * lists further apart than this are reported as one reload, the trace would get too big
+     */
+    static final int MAX_EDITS = 1000;
+
+    public interface ItemCallback<T> {
+        /**
+         * @return true if both are the same document, e.g. the same id
+         */
+        boolean areItemsTheSame(T oldItem, T newItem);
+
+        /**
+         * @return true if the row of the old item does not need to be bound again
+         */
+        boolean areContentsTheSame(T oldItem, T newItem);
+    }
+
+    /**
+     * same calls as the notifyItemRange methods of RecyclerView.Adapter
+     */
+    public interface UpdateCallback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onChanged(int position, int count);
+
+        /**
+         * the lists were too far apart to compare, everything has to be bound again
+         */
+        void onReload();
+    }
+
+    private static final int INSERT = 0;
+    private static final int REMOVE = 1;
+    private static final int CHANGE = 2;
+
+    /**
+     * the operations, in the order they have to be dispatched
+     */
+    public static class Result {
+        //{type, position, count} each
+        private final List<int[]> operations;
+
+        private Result(List<int[]> operations) {
+            this.operations = operations;
+        }
+
+        /**
+         * @return true if the old list can be shown for the new one without any change
+         */
+        public boolean isEmpty() {
+            return operations != null && operations.isEmpty();
+        }
+
+        public void dispatchTo(UpdateCallback callback) {
+            if (operations == null) {
+                callback.onReload();
+                return;
+            }
+            for (int[] operation : operations) {
+                switch (operation[0]) {
+                    case INSERT:
+                        callback.onInserted(operation[1], operation[2]);
+                        break;
+                    case REMOVE:
+                        callback.onRemoved(operation[1], operation[2]);
+                        break;
+                    default:
+                        callback.onChanged(operation[1], operation[2]);
+                        break;
+                }
+            }
+        }
+    }
+
+    private ListDiff() {
+    }
+
+    public static <T> Result calculate(List<T> oldList, List<T> newList, ItemCallback<T> callback) {
+        int n = oldList.size();
+        int m = newList.size();
+        int max = n + m;
+        //v[k + max] is the furthest x reached on diagonal k
+        int[] v = new int[2 * max + 2];
+        //trace.get(d) holds diagonals -d..d of v before step d
+        List<int[]> trace = new ArrayList<int[]>();
+        search:
+        for (int d = 0; d <= max; d++) {
+            if (d > MAX_EDITS) return new Result(null);
+            trace.add(Arrays.copyOfRange(v, max - d, max + d + 1));
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[max + k - 1] < v[max + k + 1])) {
+                    x = v[max + k + 1];
+                } else {
+                    x = v[max + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && callback.areItemsTheSame(oldList.get(x), newList.get(y))) {
+                    x++;
+                    y++;
+                }
+                v[max + k] = x;
+                if (x >= n && y >= m) break search;
+            }
+        }
+
+        //walk back from the end, so every position is still valid when it is dispatched
+        List<int[]> operations = new ArrayList<int[]>();
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d >= 0; d--) {
+            int prevX = 0;
+            int prevY = 0;
+            if (d > 0) {
+                int[] snapshot = trace.get(d);
+                int k = x - y;
+                int prevK;
+                if (k == -d || (k != d && snapshot[d + k - 1] < snapshot[d + k + 1])) {
+                    prevK = k + 1;
+                } else {
+                    prevK = k - 1;
+                }
+                prevX = snapshot[d + prevK];
+                prevY = prevX - prevK;
+            }
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+                if (!callback.areContentsTheSame(oldList.get(x), newList.get(y))) {
+                    add(operations, CHANGE, x);
+                }
+            }
+            if (d > 0) {
+                if (x == prevX) {
+                    add(operations, INSERT, x);
+                } else {
+                    add(operations, REMOVE, prevX);
+                }
+            }
+            x = prevX;
+            y = prevY;
+        }
+        return new Result(operations);
+    }
+
+    /**
+     * append an operation, merged into the previous one if they touch
+     */
+    private static void add(List<int[]> operations, int type, int position) {
+        if (!operations.isEmpty()) {
+            int[] last = operations.get(operations.size() - 1);
+            if (last[0] == type && type == INSERT && last[1] == position) {
+                last[2]++;
+                return;
+            }
+            if (last[0] == type && type != INSERT && last[1] == position + 1) {
+                last[1] = position;
+                last[2]++;
+                return;
+            }
+        }
+        operations.add(new int[]{type, position, 1});
+    }
+}
@@ -4,10 +4,7 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.annotation.TargetApi;
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.text.TextUtils;
@@ -24,9 +21,16 @@ import android.widget.Toast;
 import com.hartz.inventory.model.User;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 
 /**
@@ -34,11 +38,18 @@ import java.util.LinkedHashMap;
  */
 public class LoginActivity extends AppCompatActivity {
 
+    /**
+     * one thread per catalog, so the master data download takes as long as the slowest list
+     */
+    private static final ExecutorService DOWNLOAD_EXECUTOR =
+            ParallelCalls.newBoundedExecutor(Catalog.values().length, "catalog-download");
 
     /**
      * Keep track of the login task to ensure we can cancel it if requested.
      */
     private UserLoginTask mAuthTask = null;
+    //login and download, cancelled when the screen goes away
+    private final TaskRunner.Scope tasks = TaskRunner.getInstance().newScope();
     private User user;
     // UI references.
     private EditText mUserView, mServerView, mPasswordView;
@@ -100,7 +111,7 @@ public class LoginActivity extends AppCompatActivity {
                     SharedPrefsHelper.readPrefs(SharedPrefsHelper.SERVER_PREFS, getApplicationContext()),
                     SharedPrefsHelper.readPrefs(SharedPrefsHelper.NAME_PREFS, getApplicationContext()),
                     SharedPrefsHelper.readPrefs(SharedPrefsHelper.PASSWORD_PREFS, getApplicationContext()));
-            mAuthTask.execute((Void) null);
+            tasks.run(mAuthTask);
         }
 
         debugBox = (EditText)findViewById(R.id.debug_box);
@@ -109,6 +120,12 @@ public class LoginActivity extends AppCompatActivity {
 
 
 
+    @Override
+    protected void onDestroy() {
+        tasks.cancel();
+        super.onDestroy();
+    }
+
     /**
      * Attempts to sign in or register the account specified by the login form.
      * If there are form errors (invalid email, missing fields, etc.), the
@@ -161,7 +178,7 @@ public class LoginActivity extends AppCompatActivity {
             // perform the user login attempt.
             showProgress(true);
             mAuthTask = new UserLoginTask(server, email, password);
-            mAuthTask.execute((Void) null);
+            tasks.run(mAuthTask);
         }
     }
 
@@ -207,7 +224,7 @@ public class LoginActivity extends AppCompatActivity {
      * Represents an asynchronous login/registration task used to authenticate
      * the user.
      */
-    public class UserLoginTask extends AsyncTask<Void, Void, Boolean> {
+    public class UserLoginTask extends TaskRunner.Task<Boolean> {
 
         private final String mServer;
         private final String mEmail;
@@ -222,7 +239,7 @@ public class LoginActivity extends AppCompatActivity {
         }
 
         @Override
-        protected Boolean doInBackground(Void... params) {
+        protected Boolean doInBackground() {
 
             SharedPrefsHelper.saveToPrefs(SharedPrefsHelper.SERVER_PREFS, mServer, getApplicationContext());
             SharedPrefsHelper.saveToPrefs(SharedPrefsHelper.LAST_SERVER_PREFS, mServer, getApplicationContext());
@@ -254,14 +271,16 @@ public class LoginActivity extends AppCompatActivity {
         }
 
         @Override
-        protected void onPostExecute(final Boolean success) {
+        protected void onResult(final Boolean success) {
             DownloadMrmartTask  mrmartTask = null;
             showProgress(false);
 
             if (success) {
+                //calls that were turned away with the old token go out with the new one
+                Outbox.getInstance(getApplicationContext()).resumeAfterLogin();
                 showProgress(true);
                 mrmartTask = new DownloadMrmartTask();
-                mrmartTask.execute((Void) null);
+                tasks.run(mrmartTask);
             } else {
                 if(connectionProblem){
                     mPasswordView.setError(getString(R.string.error_network_problem));
@@ -276,9 +295,9 @@ public class LoginActivity extends AppCompatActivity {
         }
 
         @Override
-        protected void onCancelled() {
+        protected void onError(Exception e) {
             mAuthTask = null;
-            showProgress(false);
+            showError(e);
         }
     }
 
@@ -287,29 +306,48 @@ public class LoginActivity extends AppCompatActivity {
      * Represents an asynchronous login/registration task used to authenticate
      * the user.
      */
-    public class DownloadMrmartTask extends AsyncTask<Void, Void, Boolean> {
+    public class DownloadMrmartTask extends TaskRunner.Task<Boolean> {
 
         private String connectionText;
         private boolean connectionProblem;
 
         @Override
-        protected Boolean doInBackground(Void... params) {
-            SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
-            String mServer = preferences.getString("ServerName", "");
-
-
+        protected Boolean doInBackground() {
             // Simulate network access.
-            HttpHandler handler = new HttpHandler(getApplicationContext());
+            final HttpHandler handler = new HttpHandler(getApplicationContext());
+            long start = System.currentTimeMillis();
+
+            //fetch every catalog at the same time, the first failure cancels the rest
+            final Catalog[] catalogs = Catalog.values();
+            final CatalogDao dao = new CatalogDao(getApplicationContext());
+            ArrayList<Callable<Boolean>> calls = new ArrayList<Callable<Boolean>>();
+            for (final Catalog catalog : catalogs) {
+                //only ask for a 304 or a delta when there is a stored copy to apply it to
+                SyncState state = dao.isEmpty(catalog) ? null : dao.getSyncState(catalog);
+                final String since = state == null ? null : state.getWatermark();
+                final String ifNoneMatch = state == null ? null : state.getEtag();
+                final String ifModifiedSince = state == null ? null : state.getLastModified();
+                calls.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws IOException {
+                        String link = since == null ? catalog.getLink()
+                                : handler.withQuery(catalog.getLink(), CatalogDelta.SINCE_PARAM, since);
+                        //parsed straight from the connection, the body never sits in memory as a whole
+                        return handler.makeGetCall(link, ifNoneMatch, ifModifiedSince,
+                                new HttpTransport.BodyHandler<Boolean>() {
+                                    @Override
+                                    public Boolean handle(HttpTransport.Response response, InputStream body)
+                                            throws IOException {
+                                        return store(dao, catalog, response, body);
+                                    }
+                                });
+                    }
+                });
+            }
 
-            String mrmartResult = null;
-            String satuanResult = null;
-            String mfgartResult = null;
-            String clientResult = null;
+            List<Boolean> stored;
             try {
-                mrmartResult = handler.makeGetCall(handler.LINK_MRMART_GET);
-                mfgartResult = handler.makeGetCall(handler.LINK_MFGART_GET);
-                satuanResult = handler.makeGetCall(handler.LINK_SATUAN_GET);
-                clientResult = handler.makeGetCall(handler.LINK_CUSTOMER_GET);
+                stored = ParallelCalls.invokeAll(DOWNLOAD_EXECUTOR, calls);
             } catch (IOException e) {
                 connectionProblem = true;
                 StringWriter sw = new StringWriter();
@@ -317,21 +355,64 @@ public class LoginActivity extends AppCompatActivity {
                 e.printStackTrace(pw);
                 connectionText = sw.toString();
                 return false;
+            } catch (InterruptedException e) {
+                return false;
+            } finally {
+                //forms opened from now on see the new data, the load runs in the background.
+                //Catalogs written before another one failed are new too
+                CatalogCache.getInstance(getApplicationContext()).invalidate();
             }
-            SharedPrefsHelper.saveToPrefs(SharedPrefsHelper.MFGART_PREFS,
-                    mfgartResult, getApplicationContext());
-            SharedPrefsHelper.saveToPrefs(SharedPrefsHelper.MRMART_PREFS,
-                    mrmartResult, getApplicationContext());
-            SharedPrefsHelper.saveToPrefs(SharedPrefsHelper.SATUAN_PREFS,
-                    satuanResult, getApplicationContext());
-            SharedPrefsHelper.saveToPrefs(SharedPrefsHelper.CUSTOMER_PREFS,
-                    clientResult, getApplicationContext());
+
+            StringBuilder failed = new StringBuilder();
+            for (int i = 0; i < catalogs.length; i++) {
+                if (!stored.get(i)) failed.append(' ').append(catalogs[i]);
+            }
+            if (failed.length() > 0) {
+                //the server answered with an error or the database refused the rows, not updated
+                connectionProblem = true;
+                connectionText = "catalogs not updated:" + failed;
+                return false;
+            }
+            SharedPrefsHelper.removeLegacyCatalogs(getApplicationContext());
+            PerfStats.getInstance().recordSync(System.currentTimeMillis() - start);
 
             return true;
         }
 
+        /**
+         * write one catalog while it downloads, on its download thread. The database takes
+         * the catalogs one transaction after the other.
+         * @return false if the catalog was not stored, the stored copy is kept then
+         */
+        private boolean store(CatalogDao dao, Catalog catalog, HttpTransport.Response response,
+                              InputStream body) throws IOException {
+            //unchanged since the last login, keep the stored copy as it is
+            if (response.isNotModified()) return true;
+
+            SyncState state = SyncState.fromResponse(response);
+            Reader json = new InputStreamReader(body, BodyReader.UTF_8);
+            try {
+                boolean stored = CatalogDelta.isDelta(response) ? dao.applyDelta(catalog, json, state)
+                        : dao.replaceAll(catalog, json, state);
+                //"error":true in the body, the stored copy stays but its watermark goes like below
+                if (!stored) dao.clearSyncState(catalog);
+                return stored;
+            } catch (IOException e) {
+                //a broken connection or malformed json. Keep the stored copy and drop the watermark,
+                //the next login does a full download
+                Log.e("catalog sync", catalog + ": " + e.getMessage());
+                dao.clearSyncState(catalog);
+                throw e;
+            } catch (RuntimeException e) {
+                //SQLiteException from a full disk or a locked database, the same as above
+                Log.e("catalog sync", catalog + ": " + e.getMessage());
+                dao.clearSyncState(catalog);
+                return false;
+            }
+        }
+
         @Override
-        protected void onPostExecute(final Boolean success) {
+        protected void onResult(final Boolean success) {
             mAuthTask = null;
             showProgress(false);
 
@@ -354,10 +435,24 @@ public class LoginActivity extends AppCompatActivity {
         }
 
         @Override
-        protected void onCancelled() {
+        protected void onError(Exception e) {
             mAuthTask = null;
-            showProgress(false);
+            showError(e);
         }
     }
+
+    /**
+     * back to the form after a task failed in a way it did not handle itself
+     */
+    private void showError(Exception e) {
+        Log.e("login", "task failed", e);
+        showProgress(false);
+        StringWriter sw = new StringWriter();
+        e.printStackTrace(new PrintWriter(sw));
+        mPasswordView.setError(getString(R.string.error_network_problem));
+        debugBox.setVisibility(View.VISIBLE);
+        debugBox.setText(sw.toString());
+        mPasswordView.requestFocus();
+    }
 }
 
@@ -1,5 +1,6 @@
 package com.hartz.inventory;
 
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.design.widget.FloatingActionButton;
@@ -10,16 +11,25 @@ import android.support.design.widget.NavigationView;
 import android.support.v4.view.GravityCompat;
 import android.support.v4.widget.DrawerLayout;
 import android.support.v7.app.ActionBarDrawerToggle;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 
 import com.hartz.inventory.model.SSJDE;
 
+import java.util.List;
+
 public class MainActivity extends AppCompatActivity
         implements NavigationView.OnNavigationItemSelectedListener, View.OnClickListener {
 
+    //jank of the history lists, for the diagnostics screen
+    private final PerfStats.FrameMonitor frameMonitor = PerfStats.getInstance().newFrameMonitor();
+    //cancelled when the screen goes away
+    private final TaskRunner.Scope tasks = TaskRunner.getInstance().newScope();
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -52,6 +62,24 @@ public class MainActivity extends AppCompatActivity
         }
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        frameMonitor.start();
+        tasks.run(new FailedCallsTask());
+    }
+
+    @Override
+    protected void onDestroy() {
+        tasks.cancel();
+        super.onDestroy();
+    }
+
+    @Override
+    protected void onPause() {
+        frameMonitor.stop();
+        super.onPause();
+    }
 
     @Override
     public void onBackPressed() {
@@ -81,6 +109,7 @@ public class MainActivity extends AppCompatActivity
 
         //noinspection SimplifiableIfStatement
         if (id == R.id.action_settings) {
+            startActivity(new Intent(this, DiagnosticsActivity.class));
             return true;
         }
 
@@ -101,6 +130,13 @@ public class MainActivity extends AppCompatActivity
             ft.replace(R.id.fragment_placeholder, new Fragment_SSJDE());
         }  else if (id == R.id.nav_logout) {
             SharedPrefsHelper.logout(getApplicationContext());
+            final HistoryCache historyCache = new HistoryCache(getApplicationContext());
+            TaskRunner.getInstance().getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    historyCache.clear();
+                }
+            });
             Intent intent = new Intent(this, LoginActivity.class);
             startActivity(intent);
             finish();
@@ -127,4 +163,54 @@ public class MainActivity extends AppCompatActivity
         }
 
     }
+
+    /**
+     * looks for queued calls the server rejected, the form that made them is long closed
+     */
+    class FailedCallsTask extends TaskRunner.Task<List<OutboxEntry>> {
+        @Override
+        protected List<OutboxEntry> doInBackground() {
+            return Outbox.getInstance(getApplicationContext()).getFailed();
+        }
+
+        @Override
+        protected void onResult(List<OutboxEntry> failed) {
+            if (!failed.isEmpty()) showFailedCalls(failed);
+        }
+
+        @Override
+        protected void onError(Exception e) {
+            Log.e("outbox", "reading failed calls", e);
+        }
+    }
+
+    /**
+     * asks whether rejected calls are sent again or dropped, until then they are asked about
+     * every time the list comes back
+     */
+    private void showFailedCalls(List<OutboxEntry> failed) {
+        final Outbox outbox = Outbox.getInstance(getApplicationContext());
+        StringBuilder message = new StringBuilder();
+        message.append(failed.size()).append(" permintaan ditolak server:");
+        for (OutboxEntry entry : failed) {
+            message.append("\n").append(entry.getMethod()).append(' ').append(entry.getLink())
+                    .append(" (").append(entry.getLastError()).append(')');
+        }
+        AlertDialog alert = new AlertDialog.Builder(this).create();
+        alert.setCanceledOnTouchOutside(false);
+        alert.setMessage(message);
+        alert.setButton(AlertDialog.BUTTON_POSITIVE, "Kirim ulang", new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int which) {
+                outbox.retryFailed();
+                dialog.dismiss();
+            }
+        });
+        alert.setButton(AlertDialog.BUTTON_NEGATIVE, "Buang", new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int which) {
+                outbox.discardFailed();
+                dialog.dismiss();
+            }
+        });
+        alert.show();
+    }
 }
@@ -0,0 +1,368 @@
+package com.hartz.inventory;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline first queue for PPRE and SSJDE creates, edits and deletes.
+ *
+ * The forms hand their call to {@link #enqueue} and go on right away. One background thread
+ * stores the call and sends the queue in order. A broken connection, a timeout or a 5xx
+ * answer keeps the call at the head of the queue and retries it with exponential backoff,
+ * so an edit never overtakes the create it belongs to. A 401 or 403 means the session is
+ * gone, the queue stops until {@link #resumeAfterLogin} and the sender puts the new token
+ * in. Other 4xx answers mean the server will never take the call, it is marked failed and
+ * the queue moves on. Failed calls are kept until the user retries or discards them, see
+ * {@link #getFailed}.
+ *
+ * When several calls are due they go out together through the batch route, see
+ * {@link OutboxBatch}, with one status per call. Servers without that route get the
+ * calls one by one.
+ */
+public class Outbox {
+
+    public static final long DEFAULT_BASE_DELAY = 2000;
+    public static final long DEFAULT_MAX_DELAY = 5 * 60 * 1000;
+
+    /**
+     * durable storage of the queue
+     */
+    public interface Store {
+        /**
+         * store a new entry and set its id
+         */
+        void add(OutboxEntry entry);
+
+        /**
+         * @param limit most entries returned
+         * @return the oldest entries that have not failed, oldest first
+         */
+        List<OutboxEntry> peek(int limit);
+
+        /**
+         * save the attempts, retry time and failure of an entry
+         */
+        void update(OutboxEntry entry);
+
+        void remove(long id);
+
+        /**
+         * @return every stored entry, failed ones included, oldest first
+         */
+        List<OutboxEntry> list();
+    }
+
+    /**
+     * sends entries to the server
+     */
+    public interface Sender {
+        HttpTransport.Response send(OutboxEntry entry) throws IOException;
+
+        /**
+         * post several entries to the batch route, see {@link OutboxBatch#encode}
+         */
+        HttpTransport.Response sendBatch(List<OutboxEntry> entries) throws IOException;
+    }
+
+    private static Outbox instance;
+
+    private final Store store;
+    private final Sender sender;
+    private final ScheduledExecutorService executor;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final Random random = new Random();
+    //only touched on the executor thread
+    private ScheduledFuture<?> scheduledDrain;
+    //cleared once the server shows it has no batch route, for the rest of the process
+    private boolean batchSupported = true;
+    //set by a 401 or 403, nothing is sent until the user has logged in again
+    private boolean waitingForLogin;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drainNow(false);
+        }
+    };
+
+    public static synchronized Outbox getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            instance = new Outbox(new OutboxDbStore(app), new OutboxHttpSender(app),
+                    newExecutor(), DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+        }
+        return instance;
+    }
+
+    /**
+     * @param store where the queue is kept
+     * @param sender how an entry reaches the server
+     * @param executor single threaded executor the queue is worked on
+     * @param baseDelay delay before the first retry, in millis, doubled for every further one
+     * @param maxDelay longest delay between two retries, in millis
+     */
+    public Outbox(Store store, Sender sender, ScheduledExecutorService executor, long baseDelay,
+                  long maxDelay) {
+        this.store = store;
+        this.sender = sender;
+        this.executor = executor;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    static ScheduledExecutorService newExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "outbox");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * queue a call and start sending, returns without waiting for the disk or the network
+     */
+    public void enqueue(final OutboxEntry entry) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                store.add(entry);
+                drainNow(false);
+            }
+        });
+    }
+
+    /**
+     * queue a form post
+     * @param method POST, PATCH or DELETE, the last two are sent as a laravel _method override
+     * @param link one of the HttpHandler LINK constants, with the id for edits and deletes
+     * @param params form parameters, including _method for edits and deletes
+     */
+    public void enqueue(String method, String link, LinkedHashMap<String, Object> params) {
+        enqueue(OutboxEntry.create(method, link, HttpHandler.encodeForm(params)));
+    }
+
+    /**
+     * send whatever is due now, e.g. at startup or when the network comes back. Waiting
+     * retries are sent right away too.
+     */
+    public void drain() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                drainNow(true);
+            }
+        });
+    }
+
+    /**
+     * the user logged in again, send what waited for a valid token
+     */
+    public void resumeAfterLogin() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                waitingForLogin = false;
+                drainNow(true);
+            }
+        });
+    }
+
+    /**
+     * reads the store, call it off the main thread
+     * @return calls the server rejected, oldest first
+     */
+    public List<OutboxEntry> getFailed() {
+        List<OutboxEntry> failed = new ArrayList<OutboxEntry>();
+        for (OutboxEntry entry : store.list()) {
+            if (entry.isFailed()) failed.add(entry);
+        }
+        return failed;
+    }
+
+    /**
+     * reads the store, call it off the main thread
+     * @return links of the deletes that have not reached the server yet, rejected ones left out
+     */
+    public Set<String> getPendingDeletes() {
+        HashSet<String> links = new HashSet<String>();
+        for (OutboxEntry entry : store.list()) {
+            if (!entry.isFailed() && entry.getMethod().equals("DELETE")) links.add(entry.getLink());
+        }
+        return links;
+    }
+
+    /**
+     * queue the rejected calls again, in their old place, and start sending
+     */
+    public void retryFailed() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                for (OutboxEntry entry : store.list()) {
+                    if (!entry.isFailed()) continue;
+                    entry.retryNow(now);
+                    store.update(entry);
+                }
+                drainNow(true);
+            }
+        });
+    }
+
+    /**
+     * drop the rejected calls, what they would have changed is lost
+     */
+    public void discardFailed() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (OutboxEntry entry : store.list()) {
+                    if (entry.isFailed()) store.remove(entry.getId());
+                }
+            }
+        });
+    }
+
+    /**
+     * send due entries in order until the queue is empty or the head has to wait
+     * @param skipWait send the head even if its retry time has not come yet
+     */
+    private void drainNow(boolean skipWait) {
+        if (scheduledDrain != null) {
+            scheduledDrain.cancel(false);
+            scheduledDrain = null;
+        }
+        List<OutboxEntry> due;
+        while (!waitingForLogin
+                && !(due = store.peek(batchSupported ? OutboxBatch.MAX_SIZE : 1)).isEmpty()) {
+            long now = System.currentTimeMillis();
+            long wait = due.get(0).getNextAttemptAt() - now;
+            if (wait > 0 && !skipWait) {
+                scheduledDrain = executor.schedule(drainTask, wait, TimeUnit.MILLISECONDS);
+                return;
+            }
+            skipWait = false;
+
+            //entries waiting for their own retry stay behind, so the order is kept
+            int batchSize = 1;
+            while (batchSize < due.size() && due.get(batchSize).getNextAttemptAt() <= now) {
+                batchSize++;
+            }
+            if (batchSize > 1 && sendBatch(due.subList(0, batchSize))) continue;
+            sendOne(due.get(0));
+        }
+    }
+
+    private void sendOne(OutboxEntry entry) {
+        try {
+            record(entry, sender.send(entry).getStatus());
+        } catch (IOException e) {
+            retryLater(entry, e.toString());
+        }
+    }
+
+    /**
+     * send several entries in one request
+     * @return false if the server has no batch route, nothing was sent then
+     */
+    private boolean sendBatch(List<OutboxEntry> entries) {
+        OutboxEntry head = entries.get(0);
+        HttpTransport.Response response;
+        try {
+            response = sender.sendBatch(entries);
+        } catch (IOException e) {
+            retryLater(head, e.toString());
+            return true;
+        }
+
+        if (!response.isSuccessful()) {
+            if (isRetryable(response.getStatus())) {
+                retryLater(head, "batch HTTP " + response.getStatus());
+                return true;
+            }
+            //404 or 405 from servers without the route, anything else means it can not be used either
+            batchSupported = false;
+            return false;
+        }
+        Map<String, Integer> results = OutboxBatch.parseResults(response.getBody());
+        if (results == null) {
+            //the calls may have run, their idempotency keys make sending them again safe
+            batchSupported = false;
+            return false;
+        }
+        for (OutboxEntry entry : entries) {
+            Integer status = results.get(entry.getIdempotencyKey());
+            if (status != null) {
+                record(entry, status);
+            } else {
+                retryLater(entry, "missing from batch result");
+            }
+        }
+        return true;
+    }
+
+    private void record(OutboxEntry entry, int status) {
+        if (status >= 200 && status < 300) {
+            store.remove(entry.getId());
+        } else if (isRetryable(status)) {
+            retryLater(entry, "HTTP " + status);
+        } else if (isAuthFailure(status)) {
+            //stays at the head, due right away once the user has logged in again
+            entry.retryAt(System.currentTimeMillis(), "HTTP " + status);
+            store.update(entry);
+            waitingForLogin = true;
+        } else {
+            entry.markFailed("HTTP " + status);
+            store.update(entry);
+        }
+    }
+
+    private void retryLater(OutboxEntry entry, String error) {
+        HttpTransport.getInstance().getMetrics().route(HttpHandler.routeOf(entry.getMethod(), entry.getLink()))
+                .recordRetry();
+        entry.retryAt(System.currentTimeMillis() + backoff(entry.getAttempts() + 1), error);
+        store.update(entry);
+    }
+
+    /**
+     * @return true for answers that may go away by themselves
+     */
+    static boolean isRetryable(int status) {
+        return status >= 500 || status == HttpURLConnection.HTTP_CLIENT_TIMEOUT || status == 429;
+    }
+
+    /**
+     * @return true for answers to a token the server no longer takes
+     */
+    static boolean isAuthFailure(int status) {
+        return status == HttpURLConnection.HTTP_UNAUTHORIZED || status == HttpURLConnection.HTTP_FORBIDDEN;
+    }
+
+    /**
+     * @param attempt number of the failed attempt, starting at 1
+     * @return delay before the next attempt, between half and all of the exponential delay
+     */
+    long backoff(int attempt) {
+        long delay = baseDelay << Math.min(attempt - 1, 20);
+        if (delay <= 0 || delay > maxDelay) delay = maxDelay;
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+}
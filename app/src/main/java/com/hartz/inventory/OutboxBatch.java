@@ -0,0 +1,102 @@
+package com.hartz.inventory;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wire format of the batch route, {@link HttpHandler#LINK_BATCH}.
+ *
+ * request: {"operations":[{"key":"idempotency key","method":"PATCH","path":"/inventaris/public/api/ppre/12","form":"_method=patch&json=..."}]}
+ * response: {"error":false,"results":[{"key":"idempotency key","status":200}]}
+ *
+ * Every operation is the form post the entry would have made on its own, the server runs
+ * them in order and reports the http status each one would have had.
+ */
+class OutboxBatch {
+
+    /**
+     * most entries sent in one request
+     */
+    static final int MAX_SIZE = 20;
+
+    private OutboxBatch() {
+    }
+
+    static String encode(List<OutboxEntry> entries) {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        try {
+            writer.beginObject();
+            writer.name("operations").beginArray();
+            for (OutboxEntry entry : entries) {
+                writer.beginObject();
+                writer.name("key").value(entry.getIdempotencyKey());
+                writer.name("method").value(entry.getMethod());
+                writer.name("path").value(entry.getLink());
+                writer.name("form").value(entry.getBody());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            //a StringWriter does not throw
+            throw new AssertionError(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * @param body response body of the batch route
+     * @return http status per idempotency key, null if the body is not a batch result
+     */
+    static Map<String, Integer> parseResults(String body) {
+        JsonReader reader = new JsonReader(new StringReader(body));
+        try {
+            Map<String, Integer> results = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("results") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    results = new HashMap<String, Integer>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readResult(reader, results);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return results;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void readResult(JsonReader reader, Map<String, Integer> results) throws IOException {
+        String key = null;
+        int status = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("key")) {
+                key = reader.nextString();
+            } else if (name.equals("status")) {
+                status = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (key != null && status > 0) results.put(key, status);
+    }
+}
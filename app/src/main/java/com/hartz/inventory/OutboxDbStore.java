@@ -0,0 +1,99 @@
+package com.hartz.inventory;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the {@link Outbox} queue in the outbox table, so queued calls survive the app
+ * being killed.
+ */
+class OutboxDbStore implements Outbox.Store {
+
+    private static final String[] COLUMNS = {InventoryDbHelper.COLUMN_ID,
+            InventoryDbHelper.COLUMN_IDEMPOTENCY_KEY, InventoryDbHelper.COLUMN_METHOD,
+            InventoryDbHelper.COLUMN_LINK, InventoryDbHelper.COLUMN_BODY,
+            InventoryDbHelper.COLUMN_CREATED_AT, InventoryDbHelper.COLUMN_ATTEMPTS,
+            InventoryDbHelper.COLUMN_NEXT_ATTEMPT_AT, InventoryDbHelper.COLUMN_LAST_ERROR,
+            InventoryDbHelper.COLUMN_FAILED};
+
+    private final InventoryDbHelper helper;
+
+    OutboxDbStore(Context context) {
+        helper = InventoryDbHelper.getInstance(context);
+    }
+
+    @Override
+    public void add(OutboxEntry entry) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryDbHelper.COLUMN_IDEMPOTENCY_KEY, entry.getIdempotencyKey());
+        values.put(InventoryDbHelper.COLUMN_METHOD, entry.getMethod());
+        values.put(InventoryDbHelper.COLUMN_LINK, entry.getLink());
+        values.put(InventoryDbHelper.COLUMN_BODY, entry.getBody());
+        values.put(InventoryDbHelper.COLUMN_CREATED_AT, entry.getCreatedAt());
+        putState(values, entry);
+        entry.setId(helper.getWritableDatabase().insertOrThrow(InventoryDbHelper.TABLE_OUTBOX,
+                null, values));
+    }
+
+    @Override
+    public List<OutboxEntry> peek(int limit) {
+        Cursor cursor = helper.getReadableDatabase().query(InventoryDbHelper.TABLE_OUTBOX, COLUMNS,
+                InventoryDbHelper.COLUMN_FAILED + " = 0", null, null, null,
+                InventoryDbHelper.COLUMN_ID, String.valueOf(limit));
+        try {
+            return readAll(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void update(OutboxEntry entry) {
+        ContentValues values = new ContentValues();
+        putState(values, entry);
+        helper.getWritableDatabase().update(InventoryDbHelper.TABLE_OUTBOX, values,
+                InventoryDbHelper.COLUMN_ID + " = ?", new String[]{String.valueOf(entry.getId())});
+    }
+
+    @Override
+    public void remove(long id) {
+        helper.getWritableDatabase().delete(InventoryDbHelper.TABLE_OUTBOX,
+                InventoryDbHelper.COLUMN_ID + " = ?", new String[]{String.valueOf(id)});
+    }
+
+    @Override
+    public List<OutboxEntry> list() {
+        Cursor cursor = helper.getReadableDatabase().query(InventoryDbHelper.TABLE_OUTBOX, COLUMNS,
+                null, null, null, null, InventoryDbHelper.COLUMN_ID);
+        try {
+            return readAll(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<OutboxEntry> readAll(Cursor cursor) {
+        ArrayList<OutboxEntry> entries = new ArrayList<OutboxEntry>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            entries.add(fromCursor(cursor));
+        }
+        return entries;
+    }
+
+    private static void putState(ContentValues values, OutboxEntry entry) {
+        values.put(InventoryDbHelper.COLUMN_ATTEMPTS, entry.getAttempts());
+        values.put(InventoryDbHelper.COLUMN_NEXT_ATTEMPT_AT, entry.getNextAttemptAt());
+        values.put(InventoryDbHelper.COLUMN_LAST_ERROR, entry.getLastError());
+        values.put(InventoryDbHelper.COLUMN_FAILED, entry.isFailed() ? 1 : 0);
+    }
+
+    private static OutboxEntry fromCursor(Cursor cursor) {
+        return new OutboxEntry(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                cursor.getString(3), cursor.getString(4), cursor.getLong(5), cursor.getInt(6),
+                cursor.getLong(7), cursor.getString(8), cursor.getInt(9) != 0);
+    }
+}
@@ -0,0 +1,122 @@
+package com.hartz.inventory;
+
+import java.util.UUID;
+
+/**
+ * One queued create, edit or delete call, stored until the server has accepted it.
+ * The idempotency key stays the same across retries, so a call that reached the server
+ * but whose response got lost is not applied twice.
+ */
+public class OutboxEntry {
+    private long id;
+    private final String idempotencyKey;
+    private final String method;
+    private final String link;
+    private final String body;
+    private final long createdAt;
+    private int attempts;
+    private long nextAttemptAt;
+    private String lastError;
+    private boolean failed;
+
+    public OutboxEntry(long id, String idempotencyKey, String method, String link, String body,
+                       long createdAt, int attempts, long nextAttemptAt, String lastError, boolean failed) {
+        this.id = id;
+        this.idempotencyKey = idempotencyKey;
+        this.method = method;
+        this.link = link;
+        this.body = body;
+        this.createdAt = createdAt;
+        this.attempts = attempts;
+        this.nextAttemptAt = nextAttemptAt;
+        this.lastError = lastError;
+        this.failed = failed;
+    }
+
+    /**
+     * create a new entry with a fresh idempotency key
+     * @param method POST, PATCH or DELETE, the last two are sent as a laravel _method override
+     * @param link one of the HttpHandler LINK constants, with the id for edits and deletes
+     * @param body url encoded form parameters
+     */
+    public static OutboxEntry create(String method, String link, String body) {
+        long now = System.currentTimeMillis();
+        return new OutboxEntry(0, UUID.randomUUID().toString(), method, link, body, now, 0, now,
+                null, false);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    void setId(long id) {
+        this.id = id;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getLink() {
+        return link;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return true if the server rejected the call, it is kept for inspection but not retried
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    void retryAt(long nextAttemptAt, String error) {
+        attempts++;
+        this.nextAttemptAt = nextAttemptAt;
+        this.lastError = error;
+    }
+
+    /**
+     * @return a copy sent with another body, e.g. with the current token
+     */
+    OutboxEntry withBody(String body) {
+        return new OutboxEntry(id, idempotencyKey, method, link, body, createdAt, attempts, nextAttemptAt,
+                lastError, failed);
+    }
+
+    /**
+     * back in the queue after the user asked to send a failed call again
+     */
+    void retryNow(long now) {
+        failed = false;
+        nextAttemptAt = now;
+    }
+
+    void markFailed(String error) {
+        attempts++;
+        this.lastError = error;
+        this.failed = true;
+    }
+}
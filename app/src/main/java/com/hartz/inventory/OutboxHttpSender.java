@@ -0,0 +1,93 @@
+package com.hartz.inventory;
+
+import android.content.Context;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Sends {@link Outbox} entries as form posts through {@link HttpHandler}, with the
+ * entry's idempotency key in the Idempotency-Key header, or several at once as a json
+ * post to the batch route.
+ *
+ * The token the form put in the call is swapped for the one saved at the last login, so a
+ * call queued before the session expired goes through once the user has logged in again.
+ */
+class OutboxHttpSender implements Outbox.Sender {
+
+    static final String IDEMPOTENCY_HEADER = "Idempotency-Key";
+
+    private final Context context;
+    private final HttpHandler handler;
+
+    OutboxHttpSender(Context context) {
+        this.context = context;
+        handler = new HttpHandler(context);
+    }
+
+    @Override
+    public HttpTransport.Response send(OutboxEntry entry) throws IOException {
+        return handler.makeFormCall(entry.getMethod(), entry.getLink(), withToken(entry.getBody(), token()),
+                Collections.singletonMap(IDEMPOTENCY_HEADER, entry.getIdempotencyKey()));
+    }
+
+    @Override
+    public HttpTransport.Response sendBatch(List<OutboxEntry> entries) throws IOException {
+        String token = token();
+        List<OutboxEntry> current = new ArrayList<OutboxEntry>(entries.size());
+        for (OutboxEntry entry : entries) {
+            current.add(entry.withBody(withToken(entry.getBody(), token)));
+        }
+        return handler.makeJSONCall(HttpHandler.LINK_BATCH, OutboxBatch.encode(current));
+    }
+
+    private String token() {
+        return SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, context);
+    }
+
+    /**
+     * put the token into a form body, as the token parameter of deletes and as the token
+     * field of the json parameter of creates and edits
+     * @param token current token, null after a logout, the body is left as it is then
+     */
+    static String withToken(String body, String token) {
+        if (token == null || body.isEmpty()) return body;
+        LinkedHashMap<String, Object> params = new LinkedHashMap<String, Object>();
+        try {
+            for (String pair : body.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+                if (name.equals("token")) {
+                    value = token;
+                } else if (name.equals("json")) {
+                    value = tokenInJson(value, token);
+                }
+                params.put(name, value);
+            }
+        } catch (UnsupportedEncodingException e) {
+            //every platform supports UTF-8
+            throw new AssertionError(e);
+        }
+        return HttpHandler.encodeForm(params);
+    }
+
+    private static String tokenInJson(String json, String token) {
+        try {
+            JSONObject object = new JSONObject(json);
+            if (!object.has("token")) return json;
+            return object.put("token", token).toString();
+        } catch (JSONException e) {
+            //not a form of ours, send it the way it was queued
+            return json;
+        }
+    }
+}
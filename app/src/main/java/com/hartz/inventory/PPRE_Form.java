@@ -3,23 +3,15 @@ package com.hartz.inventory;
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.annotation.TargetApi;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
-import android.text.TextUtils;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.util.Log;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
-import android.widget.AutoCompleteTextView;
-import android.widget.EditText;
-import android.widget.ImageButton;
-import android.widget.LinearLayout;
 import android.widget.ProgressBar;
-import android.widget.RelativeLayout;
-import android.widget.Spinner;
 import android.widget.Toast;
 
 import com.hartz.inventory.model.Mrmart;
@@ -29,26 +21,20 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 public class PPRE_Form extends AppCompatActivity {
-    ArrayList<Mrmart> mrmartArray;
-    ArrayList<Satuan> satuanArray;
-    ArrayAdapter<Mrmart> adapterMrmart;
+    List<Satuan> satuanArray;
+    CatalogSearchAdapter<Mrmart> adapterMrmart;
     ArrayAdapter<Satuan> adapterSatuan;
-    ArrayList<Mrmart> mrMartList;
-    ArrayList<AutoCompleteTextView> autoCompleteTextViewList;
-    ArrayList<Spinner> spinnerList;
-    ArrayList<EditText> editTextList;
-    ArrayList<EditText> editTextNoteList;
-    ArrayList<RelativeLayout> relativeLayoutList;
-    LinearLayout linearLayout;
+    LineItemAdapter<Mrmart> lineAdapter;
+    RecyclerView lineView;
 
-    private AddPPRETask addPPRETask = null;
     private View mProgressView;
     private View mLoginFormView;
+    //cancelled when the screen goes away
+    private final TaskRunner.Scope tasks = TaskRunner.getInstance().newScope();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -58,143 +44,113 @@ public class PPRE_Form extends AppCompatActivity {
 
         mProgressView = (ProgressBar)findViewById(R.id.ppre_progress);
         mLoginFormView = (View)findViewById(R.id.ppre_form_view);
+        lineView = (RecyclerView)findViewById(R.id.content_ppre__form);
+        lineView.setLayoutManager(new LinearLayoutManager(this));
 
-        //get the list of mrmart and satuan from preferences
-        mrmartArray = Mrmart.getListFromPrefs(getApplicationContext());
-        satuanArray = Satuan.getListFromPrefs(getApplicationContext());
-
-        //Initialize our list for the views
-        autoCompleteTextViewList = new ArrayList<AutoCompleteTextView>();
-        spinnerList = new ArrayList<Spinner>();
-        relativeLayoutList = new ArrayList<RelativeLayout>();
-        editTextList = new ArrayList<EditText>();
-        editTextNoteList = new ArrayList<EditText>();
-        mrMartList = new ArrayList<Mrmart>();
-
-
-        //the main linear layout inside scrollview
-        linearLayout = (LinearLayout)findViewById(R.id.content_ppre__form);
-
-        //initialize our adapoters
-        adapterMrmart = new ArrayAdapter<Mrmart>
-                (this, R.layout.autocomplete_dropdown, mrmartArray);
-        adapterSatuan = new ArrayAdapter<Satuan>
-                (this, android.R.layout.simple_spinner_item, satuanArray);
-
-        //change the looks of our adapter satuan
-        adapterSatuan.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-
-        //add inital item
-        addItem();
+        //the catalogs may still be read from the database, the form shows up when they are there
+        showProgress(true);
+        tasks.run(new LoadFormTask());
     }
 
-    protected void addItem(){
-        View itemLayout = LayoutInflater.from(this).inflate(R.layout.content_ppre_form_item,null);
-
-        AutoCompleteTextView autoCompleteTextView =
-                (AutoCompleteTextView)itemLayout.findViewById(R.id.ppre_form_autocomplete1);
-        autoCompleteTextView.setThreshold(2);
-        autoCompleteTextView.setAdapter(adapterMrmart);
-
-        autoCompleteTextViewList.add(autoCompleteTextView);
+    @Override
+    protected void onDestroy() {
+        tasks.cancel();
+        super.onDestroy();
+    }
 
-        //to get selected index of autotextview, add it to the mrmart list
-        autoCompleteTextView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                int index = autoCompleteTextViewList.size()-1;
-                mrMartList.set(index, (Mrmart) parent.getItemAtPosition(position));
-            }
-        });
+    /**
+     * gets the catalogs off the main thread and builds the adapters and the first line
+     */
+    class LoadFormTask extends TaskRunner.Task<CatalogCache.Snapshot> {
+        @Override
+        protected CatalogCache.Snapshot doInBackground() {
+            //get the catalogs from the shared cache, waits for them if they are still loading
+            return CatalogCache.getInstance(getApplicationContext()).get();
+        }
 
-        //add null list for future reference
-        mrMartList.add(null);
+        @Override
+        protected void onResult(CatalogCache.Snapshot catalogs) {
+            satuanArray = catalogs.getSatuanList();
 
-        Spinner spinner = (Spinner) itemLayout.findViewById(R.id.ppre_form_spinner1);
-        spinner.setAdapter(adapterSatuan);
-        spinnerList.add(spinner);
+            //initialize our adapters, the autocomplete ones search a prebuilt index
+            adapterMrmart = new CatalogSearchAdapter<Mrmart>
+                    (PPRE_Form.this, R.layout.autocomplete_dropdown, catalogs.getMrmartIndex());
+            adapterSatuan = new ArrayAdapter<Satuan>
+                    (PPRE_Form.this, android.R.layout.simple_spinner_item, satuanArray);
 
-        relativeLayoutList.add((RelativeLayout)itemLayout.findViewById(R.id.ppre_form_relativelayout));
+            //change the looks of our adapter satuan
+            adapterSatuan.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
 
-        ImageButton button = (ImageButton) itemLayout.findViewById(R.id.ppre_form_imagebutton);
-        button.setTag(spinnerList.size()-1);
+            //the lines, recycled while scrolling
+            lineAdapter = new LineItemAdapter<Mrmart>(PPRE_Form.this, R.layout.content_ppre_form_item, 2,
+                    adapterMrmart, adapterSatuan);
+            lineView.setAdapter(lineAdapter);
 
-        EditText editText = (EditText) itemLayout.findViewById(R.id.ppre_form_edittext1);
-        editTextList.add(editText);
+            //add inital item
+            addItem();
+            showProgress(false);
+        }
 
-        EditText editText1 = (EditText) itemLayout.findViewById(R.id.ppre_form_note);
-        editTextNoteList.add(editText1);
+        @Override
+        protected void onError(Exception e) {
+            Log.e("PPRE_Form", "loading the catalogs failed", e);
+            Toast.makeText(getApplicationContext(), "Gagal memuat katalog", Toast.LENGTH_SHORT).show();
+            finish();
+        }
+    }
 
-        linearLayout.addView(itemLayout);
+    protected void addItem(){
+        int position = lineAdapter.addLine(new LineItem<Mrmart>());
+        lineView.scrollToPosition(position);
     }
 
     public void addRecord(View v){
         addItem();
     }
 
-    public void deleteRecord(View v){
-        int index = (int)v.getTag();
-        relativeLayoutList.get(index).setVisibility(RelativeLayout.GONE);
-
-    }
-
     public void submitRecord(View v){
         //validation of each entries
-        boolean cancel = false;
-        for(int i = 0; i < relativeLayoutList.size(); i++){
-            if(relativeLayoutList.get(i).getVisibility() == AutoCompleteTextView.VISIBLE) {
-                if (mrMartList.get(i) == null) {
-                    autoCompleteTextViewList.get(i).setError(getString(R.string.error_ppre_invalid_item));
-                    autoCompleteTextViewList.get(i).requestFocus();
-                    cancel = true;
-                }
-
-                if (TextUtils.isEmpty(editTextList.get(i).getText())) {
-                    editTextList.get(i).setError(getString(R.string.error_invalid_quantity));
-                    editTextList.get(i).requestFocus();
-                    cancel = true;
-                }
-            }
+        int invalid = lineAdapter.validate();
+        if(invalid != -1){
+            lineView.scrollToPosition(invalid);
+            return;
         }
 
-        if(cancel == false) {
-            JSONObject object = new JSONObject();
-            try {
-                object.put("token", SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, getApplicationContext()));
-
-                JSONArray array = new JSONArray();
-                //for every item entry
-                for (int i = 0; i < relativeLayoutList.size(); i++) {
-                    //if the component is visible (not deleted)
-                    if (relativeLayoutList.get(i).getVisibility() == View.GONE) {
-                        //jika sudah ada item yang dipilih
-                        if (mrMartList.get(i) != null) {
-                            JSONObject entry = new JSONObject();
-                            entry.put(Mrmart.MRMART_ARTICLEID, mrMartList.get(i).getArticleID());
-                            entry.put(Mrmart.MRMART_GROUPID, mrMartList.get(i).getGroupID());
-                            entry.put(Mrmart.MRMART_QUANTITY, editTextList.get(i).getText());
-                            entry.put(Mrmart.MRMART_NOTE, editTextNoteList.get(i).getText());
-                            Satuan s = (Satuan) spinnerList.get(i).getSelectedItem();
-                            entry.put(Mrmart.MRMART_SATUAN, s.getSatuanID());
-                            array.put(entry);
-                        }
-                    }
-                }
-                object.put("entries", array);
-            } catch (JSONException e) {
-                e.printStackTrace();
+        JSONObject object = new JSONObject();
+        try {
+            object.put("token", SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, getApplicationContext()));
+
+            JSONArray array = new JSONArray();
+            //for every item entry, deleted ones are not in the list anymore
+            for (LineItem<Mrmart> line : lineAdapter.getLines()) {
+                Mrmart mrmart = line.getArticle();
+                JSONObject entry = new JSONObject();
+                entry.put(Mrmart.MRMART_ARTICLEID, mrmart.getArticleID());
+                entry.put(Mrmart.MRMART_GROUPID, mrmart.getGroupID());
+                entry.put(Mrmart.MRMART_QUANTITY, line.getQuantity());
+                entry.put(Mrmart.MRMART_NOTE, line.getNote());
+                Satuan s = adapterSatuan.getItem(line.getSatuanPosition());
+                entry.put(Mrmart.MRMART_SATUAN, s.getSatuanID());
+                array.put(entry);
             }
-
-            Log.v("message", object.toString());
-            showProgress(true);
-            addPPRETask = new AddPPRETask(object.toString());
-            addPPRETask.execute((Void) null);
+            object.put("entries", array);
+        } catch (JSONException e) {
+            e.printStackTrace();
         }
+
+        Log.v("message", object.toString());
+        //queued, the outbox sends it as soon as the server can be reached
+        LinkedHashMap<String, Object> parameter = new LinkedHashMap<>();
+        parameter.put("json", object.toString());
+        Outbox.getInstance(getApplicationContext()).enqueue("POST", HttpHandler.LINK_PPRE_CREATE, parameter);
+        Toast.makeText(getApplicationContext(), "Permintaan Pembelian Ditambahkan", Toast.LENGTH_SHORT).show();
+        finish();
     }
 
 
     /**
-     * Shows the progress UI and hides the login form.
+     * Shows the progress UI and hides the form while the catalogs load, submitting
+     * goes through the outbox and has nothing to wait for.
      */
     @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR2)
     private void showProgress(final boolean show) {
@@ -229,61 +185,4 @@ public class PPRE_Form extends AppCompatActivity {
         }
     }
 
-
-    /**
-     * Represents an asynchronous login/registration task used to authenticate
-     * the user.
-     */
-    public class AddPPRETask extends AsyncTask<Void, Void, Boolean> {
-
-        private final String jsonRequest;
-        private boolean connectionProblem;
-
-        AddPPRETask(String jsonRequest) {
-            this.jsonRequest = jsonRequest;
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... params) {
-
-
-            // Simulate network access.
-            HttpHandler handler = new HttpHandler(getApplicationContext());
-            LinkedHashMap<String, Object> parameter = new LinkedHashMap<>();
-            parameter.put("json", jsonRequest);
-
-
-            String loginResult = null;
-            try {
-                loginResult = handler.makePostCall(parameter, handler.LINK_PPRE_CREATE);
-            } catch (IOException e) {
-                connectionProblem = true;
-                return false;
-            }
-            Log.v("POST RESULT", loginResult);
-
-            return true;
-        }
-
-        @Override
-        protected void onPostExecute(final Boolean success) {
-//
-            showProgress(false);
-//
-            if (success) {
-                Toast.makeText(getApplicationContext(), "Permintaan Pembelian Ditambahkan",Toast.LENGTH_SHORT).show();
-                finish();
-            } else {
-                Toast.makeText(getApplicationContext(), "Gagal menambahkan data",Toast.LENGTH_SHORT).show();
-            }
-        }
-
-        @Override
-        protected void onCancelled() {
-            addPPRETask = null;
-            showProgress(false);
-        }
-    }
-
-
 }
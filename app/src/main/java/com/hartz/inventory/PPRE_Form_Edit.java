@@ -4,23 +4,15 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.annotation.TargetApi;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
-import android.text.TextUtils;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.util.Log;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
-import android.widget.AutoCompleteTextView;
-import android.widget.EditText;
-import android.widget.ImageButton;
-import android.widget.LinearLayout;
 import android.widget.ProgressBar;
-import android.widget.RelativeLayout;
-import android.widget.Spinner;
 import android.widget.Toast;
 
 import com.hartz.inventory.model.Mrmart;
@@ -31,237 +23,136 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 public class PPRE_Form_Edit extends AppCompatActivity {
-    ArrayList<Mrmart> mrmartArray;
-    ArrayList<Satuan> satuanArray;
-    ArrayAdapter<Mrmart> adapterMrmart;
+    List<Satuan> satuanArray;
+    CatalogSearchAdapter<Mrmart> adapterMrmart;
     ArrayAdapter<Satuan> adapterSatuan;
-    ArrayList<Mrmart> mrMartList;
-    ArrayList<AutoCompleteTextView> autoCompleteTextViewList;
-    ArrayList<Spinner> spinnerList;
-    ArrayList<EditText> editTextList;
-    ArrayList<EditText> editTextNoteList;
-    ArrayList<RelativeLayout> relativeLayoutList;
-    LinearLayout linearLayout;
+    LineItemAdapter<Mrmart> lineAdapter;
+    RecyclerView lineView;
     PPRE ppre;
 
-    private EditPPRETask editPPRETask = null;
     private View mProgressView;
     private View mLoginFormView;
+    //cancelled when the screen goes away
+    private final TaskRunner.Scope tasks = TaskRunner.getInstance().newScope();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.content_ppre__form);
 
-        //receive ppre object to be edited
-        Intent i = getIntent();
-        ppre = (PPRE) i.getSerializableExtra("ppreObject");
-
         mProgressView = (ProgressBar)findViewById(R.id.ppre_progress);
         mLoginFormView = (View)findViewById(R.id.ppre_form_view);
+        lineView = (RecyclerView)findViewById(R.id.content_ppre__form);
+        lineView.setLayoutManager(new LinearLayoutManager(this));
 
-        //get the list of mrmart and satuan from preferences
-        mrmartArray = Mrmart.getListFromPrefs(getApplicationContext());
-        satuanArray = Satuan.getListFromPrefs(getApplicationContext());
-
-        //Initialize our list for the views
-        autoCompleteTextViewList = new ArrayList<AutoCompleteTextView>();
-        spinnerList = new ArrayList<Spinner>();
-        relativeLayoutList = new ArrayList<RelativeLayout>();
-        editTextList = new ArrayList<EditText>();
-        editTextNoteList = new ArrayList<EditText>();
-        mrMartList = new ArrayList<Mrmart>();
-
-
-        //the main linear layout inside scrollview
-        linearLayout = (LinearLayout)findViewById(R.id.content_ppre__form);
-
-        //initialize our adapoters
-        adapterMrmart = new ArrayAdapter<Mrmart>
-                (this, R.layout.autocomplete_dropdown, mrmartArray);
-        adapterSatuan = new ArrayAdapter<Satuan>
-                (this, android.R.layout.simple_spinner_item, satuanArray);
-
-        //change the looks of our adapter satuan
-        adapterSatuan.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-
-
-        //add existing items
-        addItem(ppre.getItemList());
+        //the document and the catalogs are read in the background, the form shows up when both are there
+        showProgress(true);
+        tasks.run(new LoadFormTask());
     }
 
+    @Override
+    protected void onDestroy() {
+        tasks.cancel();
+        super.onDestroy();
+    }
 
-    protected void addItem(ArrayList<Mrmart> listMart){
-        for(int i = 0; i <listMart.size(); i++){
-            Mrmart mrmart = listMart.get(i);
-            View itemLayout = LayoutInflater.from(this).inflate(R.layout.content_ppre_form_item,null);
-
-            AutoCompleteTextView autoCompleteTextView =
-                    (AutoCompleteTextView)itemLayout.findViewById(R.id.ppre_form_autocomplete1);
-            autoCompleteTextView.setThreshold(2);
-            autoCompleteTextView.setAdapter(adapterMrmart);
-            int pos = adapterMrmart.getPosition(mrmart);
-            autoCompleteTextView.setText(mrmart.toString());
-
-            autoCompleteTextViewList.add(autoCompleteTextView);
-
-            //to get selected index of autotextview, add it to the mrmart list
-            autoCompleteTextView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-                @Override
-                public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                    int index = autoCompleteTextViewList.size()-1;
-                    mrMartList.set(index, (Mrmart) parent.getItemAtPosition(position));
-                }
-            });
-
-            //add null list for future reference
-            mrMartList.add(null);
-
-            Spinner spinner = (Spinner) itemLayout.findViewById(R.id.ppre_form_spinner1);
-            spinner.setAdapter(adapterSatuan);
-
-            pos = adapterSatuan.getPosition(new Satuan(mrmart.getSatuan()));
-            Log.v("adapter satuan pos", pos+"");
-            spinner.setSelection(pos);
-
-
-            spinnerList.add(spinner);
-
-            relativeLayoutList.add((RelativeLayout)itemLayout.findViewById(R.id.ppre_form_relativelayout));
-
-            ImageButton button = (ImageButton) itemLayout.findViewById(R.id.ppre_form_imagebutton);
-            button.setTag(spinnerList.size()-1);
+    /**
+     * reads the ppre to be edited and the catalogs, and builds its lines off the main thread
+     */
+    class LoadFormTask extends TaskRunner.Task<ArrayList<LineItem<Mrmart>>> {
+        private CatalogCache.Snapshot catalogs;
 
-            EditText editText = (EditText) itemLayout.findViewById(R.id.ppre_form_edittext1);
-            editText.setText(mrmart.getQuantity()+"");
-            editTextList.add(editText);
+        @Override
+        protected ArrayList<LineItem<Mrmart>> doInBackground() {
+            //receive ppre object to be edited
+            Intent i = getIntent();
+            ppre = i.getParcelableExtra("ppreObject");
+
+            //get the catalogs from the shared cache, waits for them if they are still loading
+            catalogs = CatalogCache.getInstance(getApplicationContext()).get();
+            return LineItem.fromMrmart(ppre.getItemList(), catalogs);
+        }
 
-            EditText editText1 = (EditText) itemLayout.findViewById(R.id.ppre_form_note);
-            editText1.setText(mrmart.getNote());
-            editTextNoteList.add(editText1);
+        @Override
+        protected void onResult(ArrayList<LineItem<Mrmart>> lines) {
+            satuanArray = catalogs.getSatuanList();
+
+            //initialize our adapters, the autocomplete ones search a prebuilt index
+            adapterMrmart = new CatalogSearchAdapter<Mrmart>
+                    (PPRE_Form_Edit.this, R.layout.autocomplete_dropdown, catalogs.getMrmartIndex());
+            adapterSatuan = new ArrayAdapter<Satuan>
+                    (PPRE_Form_Edit.this, android.R.layout.simple_spinner_item, satuanArray);
+
+            //change the looks of our adapter satuan
+            adapterSatuan.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+
+            //add existing items, only the rows on screen get views
+            lineAdapter = new LineItemAdapter<Mrmart>(PPRE_Form_Edit.this, R.layout.content_ppre_form_item, 2,
+                    adapterMrmart, adapterSatuan, lines);
+            lineView.setAdapter(lineAdapter);
+            showProgress(false);
+        }
 
-            linearLayout.addView(itemLayout);
+        @Override
+        protected void onError(Exception e) {
+            Log.e("PPRE_Form_Edit", "loading the form failed", e);
+            Toast.makeText(getApplicationContext(), "Gagal memuat data", Toast.LENGTH_SHORT).show();
+            finish();
         }
     }
 
     protected void addItem(){
-        View itemLayout = LayoutInflater.from(this).inflate(R.layout.content_ppre_form_item,null);
-
-        AutoCompleteTextView autoCompleteTextView =
-                (AutoCompleteTextView)itemLayout.findViewById(R.id.ppre_form_autocomplete1);
-        autoCompleteTextView.setThreshold(2);
-        autoCompleteTextView.setAdapter(adapterMrmart);
-
-        autoCompleteTextViewList.add(autoCompleteTextView);
-
-        //to get selected index of autotextview, add it to the mrmart list
-        autoCompleteTextView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                int index = autoCompleteTextViewList.size()-1;
-                mrMartList.set(index, (Mrmart) parent.getItemAtPosition(position));
-            }
-        });
-
-        //add null list for future reference
-        mrMartList.add(null);
-
-        Spinner spinner = (Spinner) itemLayout.findViewById(R.id.ppre_form_spinner1);
-        spinner.setAdapter(adapterSatuan);
-
-        spinnerList.add(spinner);
-
-        relativeLayoutList.add((RelativeLayout)itemLayout.findViewById(R.id.ppre_form_relativelayout));
-
-        ImageButton button = (ImageButton) itemLayout.findViewById(R.id.ppre_form_imagebutton);
-        button.setTag(spinnerList.size()-1);
-
-        EditText editText = (EditText) itemLayout.findViewById(R.id.ppre_form_edittext1);
-        editTextList.add(editText);
-
-        EditText editText1 = (EditText) itemLayout.findViewById(R.id.ppre_form_note);
-        editTextNoteList.add(editText1);
-
-        linearLayout.addView(itemLayout);
+        int position = lineAdapter.addLine(new LineItem<Mrmart>());
+        lineView.scrollToPosition(position);
     }
 
     public void addRecord(View v){
         addItem();
     }
 
-    public void deleteRecord(View v){
-        int index = (int)v.getTag();
-        relativeLayoutList.get(index).setVisibility(RelativeLayout.GONE);
-    }
-
     public void submitRecord(View v){
         //validation of each entries
-        boolean cancel = false;
-        for(int i = 0; i < relativeLayoutList.size(); i++){
-            if(relativeLayoutList.get(i).getVisibility() == AutoCompleteTextView.VISIBLE) {
-                if (mrMartList.get(i) == null) {
-                    try {
-                        ppre.getItemList().get(i);
-                    }catch (IndexOutOfBoundsException e){
-                        autoCompleteTextViewList.get(i).setError(getString(R.string.error_ppre_invalid_item));
-                        autoCompleteTextViewList.get(i).requestFocus();
-                        cancel = true;
-                    }
-                }
-
-                if (TextUtils.isEmpty(editTextList.get(i).getText())) {
-                    editTextList.get(i).setError(getString(R.string.error_invalid_quantity));
-                    editTextList.get(i).requestFocus();
-                    cancel = true;
-                }
-            }
+        int invalid = lineAdapter.validate();
+        if(invalid != -1){
+            lineView.scrollToPosition(invalid);
+            return;
         }
 
-        //if valiidated
-        if(cancel == false) {
-            JSONObject object = new JSONObject();
-            try {
-                object.put("token", SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, getApplicationContext()));
-
-                JSONArray array = new JSONArray();
-                //for every item entry
-                for (int i = 0; i < mrMartList.size(); i++) {
-                    //if the component is visible (not deleted)
-                    if (relativeLayoutList.get(i).getVisibility() == View.VISIBLE) {
-                        //jika sudah ada item yang dipilih
-                        if (!autoCompleteTextViewList.get(i).getText().equals("")) {
-                            JSONObject entry = new JSONObject();
-                            Mrmart mrmart = mrMartList.get(i);
-
-                            //jika belum ada objek terpilih
-                            if (mrmart == null) {
-                                mrmart = ppre.getItemList().get(i);
-                            }
-                            entry.put(Mrmart.MRMART_ARTICLEID, mrmart.getArticleID());
-                            entry.put(Mrmart.MRMART_GROUPID, mrmart.getGroupID());
-                            entry.put(Mrmart.MRMART_QUANTITY, editTextList.get(i).getText());
-                            Satuan s = (Satuan) spinnerList.get(i).getSelectedItem();
-                            entry.put(Mrmart.MRMART_SATUAN, s.getSatuanID());
-                            entry.put(Mrmart.MRMART_NOTE, editTextNoteList.get(i).getText());
-                            array.put(entry);
-                        }
-                    }
-                }
-                object.put("entries", array);
-            } catch (JSONException e) {
-                e.printStackTrace();
+        JSONObject object = new JSONObject();
+        try {
+            object.put("token", SharedPrefsHelper.readPrefs(SharedPrefsHelper.TOKEN_PREFS, getApplicationContext()));
+
+            JSONArray array = new JSONArray();
+            //for every item entry, deleted ones are not in the list anymore
+            for (LineItem<Mrmart> line : lineAdapter.getLines()) {
+                Mrmart mrmart = line.getArticle();
+                JSONObject entry = new JSONObject();
+                entry.put(Mrmart.MRMART_ARTICLEID, mrmart.getArticleID());
+                entry.put(Mrmart.MRMART_GROUPID, mrmart.getGroupID());
+                entry.put(Mrmart.MRMART_QUANTITY, line.getQuantity());
+                Satuan s = adapterSatuan.getItem(line.getSatuanPosition());
+                entry.put(Mrmart.MRMART_SATUAN, s.getSatuanID());
+                entry.put(Mrmart.MRMART_NOTE, line.getNote());
+                array.put(entry);
             }
-
-            Log.v("message", object.toString());
-            showProgress(true);
-            editPPRETask = new EditPPRETask(object.toString(), ppre.getId());
-            editPPRETask.execute((Void) null);
+            object.put("entries", array);
+        } catch (JSONException e) {
+            e.printStackTrace();
         }
+
+        Log.v("message", object.toString());
+        //queued, the outbox sends it as soon as the server can be reached
+        LinkedHashMap<String, Object> parameter = new LinkedHashMap<>();
+        parameter.put("_method", "patch");
+        parameter.put("json", object.toString());
+        Outbox.getInstance(getApplicationContext()).enqueue("PATCH", HttpHandler.LINK_PPRE_EDIT + "/" + ppre.getId(), parameter);
+        Toast.makeText(getApplicationContext(), "Permintaan Pembelian Dirubah", Toast.LENGTH_SHORT).show();
+        finish();
     }
 
 
@@ -301,70 +192,4 @@ public class PPRE_Form_Edit extends AppCompatActivity {
         }
     }
 
-    /**
-     * Represents an asynchronous login/registration task used to authenticate
-     * the user.
-     */
-    public class EditPPRETask extends AsyncTask<Void, Void, Boolean> {
-
-        private final String jsonRequest;
-        private final String ppreId;
-        private boolean connectionProblem;
-
-        EditPPRETask(String jsonRequest, String ppreId) {
-            this.jsonRequest = jsonRequest;this.ppreId = ppreId;
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... params) {
-
-
-            // Simulate network access.
-            HttpHandler handler = new HttpHandler(getApplicationContext());
-            LinkedHashMap<String, Object> parameter = new LinkedHashMap<>();
-            parameter.put("json", jsonRequest);
-            parameter.put("_method", "patch");
-
-
-            String loginResult = null;
-            try {
-                loginResult = handler.makePostCall(parameter, handler.LINK_PPRE_EDIT+"/"+ppreId);
-            } catch (IOException e) {
-                connectionProblem = true;
-                return false;
-            }
-            Log.v("POST RESULT", loginResult);
-
-            return true;
-        }
-
-        @Override
-        protected void onPostExecute(final Boolean success) {
-//
-            showProgress(false);
-//
-            if (success) {
-                Toast.makeText(getApplicationContext(), "Permintaan Pembelian Dirubah",Toast.LENGTH_SHORT).show();
-                finish();
-            }
-            //TODO jika gagal
-//            } else {
-//                if(connectionProblem){
-//                    mPasswordView.setError(getString(R.string.error_network_problem));
-//                }else{
-//                    mPasswordView.setError(getString(R.string.error_incorrect_password));
-//                }
-//
-//                mPasswordView.requestFocus();
-//            }
-        }
-
-        @Override
-        protected void onCancelled() {
-            editPPRETask = null;
-            showProgress(false);
-        }
-    }
-
-
 }
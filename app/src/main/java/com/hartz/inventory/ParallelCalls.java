@@ -0,0 +1,95 @@
+package com.hartz.inventory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a group of blocking calls at the same time and waits for all of them.
+ * The first failure cancels the calls that are still running.
+ */
+public class ParallelCalls {
+
+    private ParallelCalls() {
+    }
+
+    /**
+     * create a bounded pool whose threads die when idle, so it costs nothing between logins
+     * @param threads maximum number of calls running at once
+     * @param name prefix for the thread names
+     */
+    public static ExecutorService newBoundedExecutor(int threads, final String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * run every call on the executor
+     * @param executor executor to run the calls on
+     * @param calls calls to run
+     * @return the results, in the same order as the calls
+     * @throws IOException the first failure, after the other calls have been cancelled
+     * @throws InterruptedException if the waiting thread was interrupted, the calls are cancelled too
+     */
+    public static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> calls)
+            throws IOException, InterruptedException {
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<T>(executor);
+        List<Future<T>> futures = new ArrayList<Future<T>>(calls.size());
+        try {
+            for (Callable<T> call : calls) {
+                futures.add(completion.submit(call));
+            }
+            for (int i = 0; i < calls.size(); i++) {
+                //wait in completion order so a failure is seen as soon as it happens
+                Future<T> done = completion.take();
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    throw asIOException(e.getCause());
+                }
+            }
+
+            List<T> results = new ArrayList<T>(futures.size());
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw asIOException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static IOException asIOException(Throwable cause) {
+        if (cause instanceof IOException) return (IOException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        return new IOException(cause);
+    }
+}
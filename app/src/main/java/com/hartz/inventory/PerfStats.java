@@ -0,0 +1,165 @@
+package com.hartz.inventory;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Numbers of the app's own work for the diagnostics screen: history parse and list bind
+ * times, the last catalog sync and frames that missed their vsync.
+ *
+ * Recording goes into the same lock free histograms as {@link RequestMetrics}.
+ */
+public class PerfStats {
+
+    /**
+     * one frame at 60 fps, in nanos
+     */
+    static final long FRAME_NANOS = 16666667;
+
+    //made up front, bind and parse ask for it on every call
+    private static final PerfStats INSTANCE = new PerfStats();
+
+    private final RequestMetrics.Histogram parse = new RequestMetrics.Histogram();
+    private final RequestMetrics.Histogram bind = new RequestMetrics.Histogram();
+    private final RequestMetrics.Histogram frames = new RequestMetrics.Histogram();
+    private final AtomicLong jankFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private volatile long lastSyncMillis = -1;
+    private volatile long lastSyncAt;
+
+    public static PerfStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param micros time to parse one page of a history response
+     */
+    public void recordParse(long micros) {
+        parse.record(micros);
+    }
+
+    /**
+     * @param micros time of one onBindViewHolder of a history list
+     */
+    public void recordBind(long micros) {
+        bind.record(micros);
+    }
+
+    /**
+     * @param millis time the catalog download and store took
+     */
+    public void recordSync(long millis) {
+        lastSyncMillis = millis;
+        lastSyncAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @param intervalNanos time between the vsyncs of two frames in a row
+     */
+    void recordFrame(long intervalNanos) {
+        frames.record(intervalNanos / 1000);
+        //half a frame of slack for vsync jitter
+        if (intervalNanos > FRAME_NANOS * 3 / 2) {
+            jankFrames.incrementAndGet();
+            droppedFrames.addAndGet((intervalNanos + FRAME_NANOS / 2) / FRAME_NANOS - 1);
+        }
+    }
+
+    public RequestMetrics.Histogram getParse() {
+        return parse;
+    }
+
+    public RequestMetrics.Histogram getBind() {
+        return bind;
+    }
+
+    /**
+     * @return intervals between frames, in micros
+     */
+    public RequestMetrics.Histogram getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return frames that came late
+     */
+    public long getJankFrames() {
+        return jankFrames.get();
+    }
+
+    /**
+     * @return vsyncs skipped by the late frames
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * @return duration of the last catalog sync in millis, -1 if there was none since the process started
+     */
+    public long getLastSyncMillis() {
+        return lastSyncMillis;
+    }
+
+    /**
+     * @return when the last catalog sync finished, 0 if there was none
+     */
+    public long getLastSyncAt() {
+        return lastSyncAt;
+    }
+
+    /**
+     * @return a monitor counting the frames of the screen it runs for, does nothing before
+     * Jelly Bean, which has no Choreographer
+     */
+    public FrameMonitor newFrameMonitor() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? new ChoreographerMonitor() : new FrameMonitor();
+    }
+
+    /**
+     * watches the frames between start and stop. Both are called on the main thread.
+     */
+    public static class FrameMonitor {
+        public void start() {
+        }
+
+        public void stop() {
+        }
+    }
+
+    /**
+     * asks for every vsync while it runs and records the time between them. That keeps the
+     * vsync on, so it only runs while a list screen is in front.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class ChoreographerMonitor extends FrameMonitor implements Choreographer.FrameCallback {
+        private boolean running;
+        private long lastFrameNanos;
+
+        @Override
+        public void start() {
+            if (running) return;
+            running = true;
+            lastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!running) return;
+            if (lastFrameNanos != 0) recordFrame(frameTimeNanos - lastFrameNanos);
+            lastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.hartz.inventory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings, sizes, status codes and retries per endpoint, to see in the field which
+ * route is slow and in which phase.
+ *
+ * Every value goes into a histogram of power of two buckets held in atomic arrays, so
+ * recording takes no lock and, once a route has been seen, allocates nothing.
+ */
+public class RequestMetrics {
+
+    /**
+     * buckets of a histogram, the last one takes everything from 2^(BUCKETS - 2) up
+     */
+    static final int BUCKETS = 40;
+    /**
+     * status classes 1xx to 5xx, 0 for requests that got no answer
+     */
+    private static final int STATUS_CLASSES = 6;
+
+    private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<String, Route>();
+
+    /**
+     * @return the metrics of a route, created the first time it is asked for
+     */
+    public Route route(String name) {
+        Route route = routes.get(name);
+        if (route == null) {
+            Route created = new Route();
+            route = routes.putIfAbsent(name, created);
+            if (route == null) route = created;
+        }
+        return route;
+    }
+
+    /**
+     * @return metrics of one route, null if it was never called
+     */
+    public Route get(String name) {
+        return routes.get(name);
+    }
+
+    /**
+     * @return every route, sorted by name
+     */
+    public Map<String, Route> getAll() {
+        return new TreeMap<String, Route>(routes);
+    }
+
+    public void reset() {
+        routes.clear();
+    }
+
+    /**
+     * write every route as text, one block a route
+     */
+    public void dump(Writer out) throws IOException {
+        for (Map.Entry<String, Route> route : getAll().entrySet()) {
+            out.write(route.getKey());
+            out.write('\n');
+            out.write(route.getValue().toString());
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * write {@link #dump} to a file, replacing what it held
+     */
+    public void dumpTo(File file) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), BodyReader.UTF_8);
+        try {
+            dump(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * what was measured for one endpoint. Timings are in microseconds.
+     */
+    public static class Route {
+        private final Histogram connect = new Histogram();
+        private final Histogram firstByte = new Histogram();
+        private final Histogram download = new Histogram();
+        private final Histogram total = new Histogram();
+        private final Histogram responseBytes = new Histogram();
+        private final AtomicLongArray statuses = new AtomicLongArray(STATUS_CLASSES);
+        private final AtomicLong retries = new AtomicLong();
+
+        /**
+         * a request that got an answer
+         * @param connectMicros resolving the host, opening the socket and the tls handshake, close
+         *                      to 0 when a pooled one was reused
+         * @param firstByteMicros from the open socket to the status line, sending the body included
+         * @param downloadMicros reading the response body
+         * @param bytes response body as received
+         */
+        public void record(long connectMicros, long firstByteMicros, long downloadMicros,
+                           long bytes, int status) {
+            connect.record(connectMicros);
+            firstByte.record(firstByteMicros);
+            download.record(downloadMicros);
+            total.record(connectMicros + firstByteMicros + downloadMicros);
+            responseBytes.record(bytes);
+            statuses.incrementAndGet(statusClass(status));
+        }
+
+        /**
+         * a request that broke before the response was read
+         */
+        public void recordFailure(long totalMicros) {
+            total.record(totalMicros);
+            statuses.incrementAndGet(0);
+        }
+
+        /**
+         * a request sent again after an earlier attempt failed
+         */
+        public void recordRetry() {
+            retries.incrementAndGet();
+        }
+
+        public Histogram getConnect() {
+            return connect;
+        }
+
+        public Histogram getFirstByte() {
+            return firstByte;
+        }
+
+        public Histogram getDownload() {
+            return download;
+        }
+
+        /**
+         * @return every request, failed ones included
+         */
+        public Histogram getTotal() {
+            return total;
+        }
+
+        public Histogram getResponseBytes() {
+            return responseBytes;
+        }
+
+        /**
+         * @param statusClass 2 for 2xx and so on, 0 for requests that got no answer
+         */
+        public long getStatusCount(int statusClass) {
+            return statuses.get(statusClass);
+        }
+
+        public long getRetries() {
+            return retries.get();
+        }
+
+        private static int statusClass(int status) {
+            int statusClass = status / 100;
+            return statusClass > 0 && statusClass < STATUS_CLASSES ? statusClass : 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append("  requests ").append(total.getCount()).append(", retries ").append(retries.get())
+                    .append(", status");
+            for (int i = 1; i < STATUS_CLASSES; i++) {
+                if (statuses.get(i) > 0) text.append(' ').append(i).append("xx=").append(statuses.get(i));
+            }
+            text.append(" failed=").append(statuses.get(0)).append('\n');
+            text.append("  connect us    ").append(connect).append('\n');
+            text.append("  first byte us ").append(firstByte).append('\n');
+            text.append("  download us   ").append(download).append('\n');
+            text.append("  total us      ").append(total).append('\n');
+            text.append("  body bytes    ").append(responseBytes);
+            return text.toString();
+        }
+    }
+
+    /**
+     * counts of values in power of two buckets. Percentiles are the upper bound of the
+     * bucket they fall in, so they are at most twice the real value.
+     */
+    public static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(bucketOf(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                //another thread raised it, look again
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public long getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : sum.get() / n;
+        }
+
+        /**
+         * @param percent between 0 and 100
+         * @return a value at least as large as that share of the recorded values, 0 if there are none
+         */
+        public long getPercentile(double percent) {
+            long n = count.get();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(n * percent / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        /**
+         * bucket 0 holds 0, bucket i holds values from 2^(i-1) to 2^i - 1
+         */
+        static int bucketOf(long value) {
+            return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+        }
+
+        private static long upperBound(int bucket) {
+            return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        @Override
+        public String toString() {
+            return "n=" + count.get() + " mean=" + getMean() + " p50=" + getPercentile(50)
+                    + " p90=" + getPercentile(90) + " p99=" + getPercentile(99) + " max=" + max.get();
+        }
+    }
+}
@@ -20,6 +20,9 @@ public class SharedPrefsHelper{
     public static final String CUSTOMER_PREFS = "ClientJson";
     public static final String LAST_SERVER_PREFS = "LastServerName";
     public static final String LAST_NAME_PREFS = "LastUserName";
+    private static final String ETAG_SUFFIX = "_ETag";
+    private static final String LAST_MODIFIED_SUFFIX = "_LastModified";
+    private static final String WATERMARK_SUFFIX = "_Watermark";
 
 
     public static void saveToPrefs(String key, String value, Context context){
@@ -30,6 +33,25 @@ public class SharedPrefsHelper{
         prefs = null;
     }
 
+    /**
+     * drop the catalog json strings older versions kept in the prefs, the catalogs live in
+     * {@link InventoryDbHelper} now
+     * @param context
+     */
+    public static void removeLegacyCatalogs(Context context){
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = prefs.edit();
+        for (Catalog catalog : Catalog.values()) {
+            String key = catalog.getPrefsKey();
+            if (!prefs.contains(key)) continue;
+            editor.remove(key);
+            editor.remove(key + ETAG_SUFFIX);
+            editor.remove(key + LAST_MODIFIED_SUFFIX);
+            editor.remove(key + WATERMARK_SUFFIX);
+        }
+        editor.apply();
+    }
+
     /**
      * read existing prefs
      * @param key key for preferences, use static from this class
@@ -0,0 +1,54 @@
+package com.hartz.inventory;
+
+/**
+ * Dictionary of the strings read while parsing, so every repeated value is kept once.
+ *
+ * Group ids, units, article names and empty notes come back on thousands of lines of a
+ * history, each parsed into a string of its own. Passing them through one pool keeps the
+ * first instance and lets the copies be collected. Unlike String.intern the pool goes
+ * away with its owner, the history list.
+ */
+public class StringPool {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    //open addressing, the length is a power of two and kept at most half full
+    private String[] table = new String[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @return the pooled instance equal to value, value itself the first time it is seen
+     */
+    public synchronized String get(String value) {
+        if (value == null) return null;
+        int mask = table.length - 1;
+        int slot = CatalogIndex.spread(value.hashCode()) & mask;
+        String pooled;
+        while ((pooled = table[slot]) != null) {
+            if (pooled.equals(value)) return pooled;
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        if (++size * 2 > table.length) grow();
+        return value;
+    }
+
+    /**
+     * @return number of distinct strings in the pool
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void grow() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String value : old) {
+            if (value == null) continue;
+            int slot = CatalogIndex.spread(value.hashCode()) & mask;
+            while (table[slot] != null) slot = (slot + 1) & mask;
+            table[slot] = value;
+        }
+    }
+}
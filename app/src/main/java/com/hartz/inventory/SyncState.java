@@ -0,0 +1,37 @@
+package com.hartz.inventory;
+
+/**
+ * what the client knows about the copy of a catalog it has stored: the http cache
+ * validators and the delta sync watermark
+ */
+public class SyncState {
+    private final String etag;
+    private final String lastModified;
+    private final String watermark;
+
+    public SyncState(String etag, String lastModified, String watermark) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.watermark = watermark;
+    }
+
+    /**
+     * read the state from the response that produced the stored copy
+     */
+    public static SyncState fromResponse(HttpTransport.Response response) {
+        return new SyncState(response.getHeader("ETag"), response.getHeader("Last-Modified"),
+                response.getHeader(CatalogDelta.WATERMARK_HEADER));
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public String getWatermark() {
+        return watermark;
+    }
+}
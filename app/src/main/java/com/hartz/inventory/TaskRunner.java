@@ -0,0 +1,165 @@
+package com.hartz.inventory;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Background work of the screens, on one shared thread pool instead of AsyncTask's serial
+ * executor, so a slow list load does not hold up the tasks queued behind it.
+ *
+ * Every screen runs its tasks in a {@link Scope} and cancels it when it goes away. A
+ * cancelled task is interrupted and its result is dropped, it never reaches a dead screen.
+ */
+public class TaskRunner {
+
+    /**
+     * threads of the shared pool, idle ones die after a while
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    private static TaskRunner instance;
+
+    private final Executor background;
+    private final Executor callback;
+
+    public static synchronized TaskRunner getInstance() {
+        if (instance == null) {
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            instance = new TaskRunner(ParallelCalls.newBoundedExecutor(DEFAULT_THREADS, "task"), new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    mainHandler.post(command);
+                }
+            });
+        }
+        return instance;
+    }
+
+    /**
+     * @param background runs the tasks
+     * @param callback delivers the results, the main thread in the app
+     */
+    public TaskRunner(Executor background, Executor callback) {
+        this.background = background;
+        this.callback = callback;
+    }
+
+    /**
+     * @return the shared pool, for work that is not bound to a screen
+     */
+    public Executor getExecutor() {
+        return background;
+    }
+
+    /**
+     * @return a scope for the tasks of one screen
+     */
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    /**
+     * work done in the background with its result handled on the callback thread
+     */
+    public static abstract class Task<T> {
+        private volatile boolean cancelled;
+
+        /**
+         * runs on the pool. Long work should check {@link #isCancelled()} now and then.
+         */
+        protected abstract T doInBackground() throws Exception;
+
+        /**
+         * runs on the callback thread, unless the task was cancelled
+         */
+        protected void onResult(T result) {
+        }
+
+        /**
+         * runs on the callback thread instead of onResult when doInBackground threw. Put the
+         * screen back the way onResult would, a progress view left up never goes away.
+         */
+        protected abstract void onError(Exception e);
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * The tasks of one screen. Call run and cancel on the callback thread.
+     */
+    public class Scope {
+        private final Map<Task<?>, Future<?>> running = new HashMap<Task<?>, Future<?>>();
+        private boolean cancelled;
+
+        /**
+         * start the task, does nothing once the scope is cancelled
+         */
+        public <T> void run(final Task<T> task) {
+            if (cancelled) return;
+            FutureTask<Void> future = new FutureTask<Void>(new Runnable() {
+                @Override
+                public void run() {
+                    T result = null;
+                    Exception error = null;
+                    try {
+                        result = task.doInBackground();
+                    } catch (Exception e) {
+                        error = e;
+                    }
+                    deliver(task, result, error);
+                }
+            }, null);
+            //kept before it starts, a quick task may be delivered before execute returns
+            synchronized (this) {
+                running.put(task, future);
+            }
+            background.execute(future);
+        }
+
+        private <T> void deliver(final Task<T> task, final T result, final Exception error) {
+            callback.execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (Scope.this) {
+                        running.remove(task);
+                    }
+                    if (task.isCancelled()) return;
+                    if (error != null) {
+                        task.onError(error);
+                    } else {
+                        task.onResult(result);
+                    }
+                }
+            });
+        }
+
+        /**
+         * interrupt the running tasks and drop every result still to come
+         */
+        public void cancel() {
+            cancelled = true;
+            synchronized (this) {
+                for (Map.Entry<Task<?>, Future<?>> entry : running.entrySet()) {
+                    entry.getKey().cancelled = true;
+                    entry.getValue().cancel(true);
+                }
+                running.clear();
+            }
+        }
+
+        /**
+         * @return number of tasks whose result has not been delivered yet
+         */
+        public synchronized int size() {
+            return running.size();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.hartz.inventory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte counters per endpoint, comparing what went over the wire with the size before
+ * compression, so the saving of gzip can be measured per route.
+ */
+public class TrafficCounter {
+
+    private final ConcurrentMap<String, Counters> routes = new ConcurrentHashMap<String, Counters>();
+
+    public void record(String route, long requestBytes, long requestWireBytes,
+                       long responseBytes, long responseWireBytes) {
+        Counters counters = routes.get(route);
+        if (counters == null) {
+            Counters created = new Counters();
+            counters = routes.putIfAbsent(route, created);
+            if (counters == null) counters = created;
+        }
+        counters.requests.incrementAndGet();
+        counters.requestBytes.addAndGet(requestBytes);
+        counters.requestWireBytes.addAndGet(requestWireBytes);
+        counters.responseBytes.addAndGet(responseBytes);
+        counters.responseWireBytes.addAndGet(responseWireBytes);
+    }
+
+    /**
+     * @return counters of one route, null if it was never called
+     */
+    public Counters get(String route) {
+        return routes.get(route);
+    }
+
+    /**
+     * @return every route, sorted by name
+     */
+    public Map<String, Counters> getAll() {
+        return new TreeMap<String, Counters>(routes);
+    }
+
+    public void reset() {
+        routes.clear();
+    }
+
+    public static class Counters {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong requestBytes = new AtomicLong();
+        private final AtomicLong requestWireBytes = new AtomicLong();
+        private final AtomicLong responseBytes = new AtomicLong();
+        private final AtomicLong responseWireBytes = new AtomicLong();
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        /**
+         * @return request body bytes before compression
+         */
+        public long getRequestBytes() {
+            return requestBytes.get();
+        }
+
+        /**
+         * @return request body bytes as sent
+         */
+        public long getRequestWireBytes() {
+            return requestWireBytes.get();
+        }
+
+        /**
+         * @return response body bytes after decompression
+         */
+        public long getResponseBytes() {
+            return responseBytes.get();
+        }
+
+        /**
+         * @return response body bytes as received
+         */
+        public long getResponseWireBytes() {
+            return responseWireBytes.get();
+        }
+
+        @Override
+        public String toString() {
+            return requests.get() + " requests, sent " + requestWireBytes.get() + "/" + requestBytes.get()
+                    + " B, received " + responseWireBytes.get() + "/" + responseBytes.get() + " B";
+        }
+    }
+}
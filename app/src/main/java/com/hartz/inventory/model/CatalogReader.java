@@ -0,0 +1,152 @@
+package com.hartz.inventory.model;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/**
+ * Pull parser for catalog responses of the form {"error":false,"name":[{...},{...}]}.
+ * Rows go straight from the character stream into model objects, no json tree is built.
+ */
+public abstract class CatalogReader<T> {
+
+    public static final String DELTA_UPSERTED = "upserted";
+    public static final String DELTA_DELETED = "deleted";
+
+    private final String arrayName;
+
+    CatalogReader(String arrayName) {
+        this.arrayName = arrayName;
+    }
+
+    /**
+     * read one row, the reader is positioned on the first name inside the row object
+     * @param reader reader to pull the row fields from
+     * @return the model object for the row
+     */
+    protected abstract T readRow(JsonReader reader) throws IOException;
+
+    /**
+     * takes the rows one by one as they are parsed
+     */
+    public interface RowSink<T> {
+        void add(T row) throws IOException;
+    }
+
+    /**
+     * parse a whole response
+     * @param in json text, closed when done
+     * @return the rows, null if the response reports an error
+     */
+    public ArrayList<T> read(Reader in) throws IOException {
+        ListSink<T> rows = new ListSink<T>();
+        return readArrays(in, arrayName, rows, null, null) ? rows.rows : null;
+    }
+
+    /**
+     * parse a whole response, handing every row over as soon as it is read, so no list
+     * of the whole catalog is built
+     * @param in json text, closed when done
+     * @param sink takes the rows
+     * @return false if the response reports an error, the rows before it were handed over already
+     */
+    public boolean read(Reader in, RowSink<T> sink) throws IOException {
+        return readArrays(in, arrayName, sink, null, null);
+    }
+
+    /**
+     * parse a delta response, {"error":false,"upserted":[rows],"deleted":[rows with only key columns]}
+     * @param in json text, closed when done
+     * @return the delta, null if the response reports an error
+     */
+    public Delta<T> readDelta(Reader in) throws IOException {
+        ListSink<T> upserted = new ListSink<T>();
+        ListSink<T> deleted = new ListSink<T>();
+        return readArrays(in, DELTA_UPSERTED, upserted, DELTA_DELETED, deleted)
+                ? new Delta<T>(upserted.rows, deleted.rows) : null;
+    }
+
+    /**
+     * @param second name of a second array to read, null for none
+     * @return false if the response reports an error
+     */
+    private boolean readArrays(Reader in, String first, RowSink<T> firstSink, String second,
+                               RowSink<T> secondSink) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        try {
+            boolean error = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                RowSink<T> sink = name.equals(first) ? firstSink : name.equals(second) ? secondSink : null;
+                if (name.equals("error")) {
+                    error = reader.nextBoolean();
+                } else if (sink != null && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        reader.beginObject();
+                        sink.add(readRow(reader));
+                        reader.endObject();
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return !error;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * read a string field, numbers are returned as their text and json null as null
+     */
+    static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static class ListSink<T> implements RowSink<T> {
+        final ArrayList<T> rows = new ArrayList<T>();
+
+        @Override
+        public void add(T row) {
+            rows.add(row);
+        }
+    }
+
+    /**
+     * rows changed since the watermark sent with the request
+     */
+    public static class Delta<T> {
+        private final ArrayList<T> upserted;
+        private final ArrayList<T> deleted;
+
+        Delta(ArrayList<T> upserted, ArrayList<T> deleted) {
+            this.upserted = upserted;
+            this.deleted = deleted;
+        }
+
+        /**
+         * @return inserted or updated rows
+         */
+        public ArrayList<T> getUpserted() {
+            return upserted;
+        }
+
+        /**
+         * @return deleted rows, only the key fields are set
+         */
+        public ArrayList<T> getDeleted() {
+            return deleted;
+        }
+    }
+}
@@ -1,22 +1,22 @@
 package com.hartz.inventory.model;
 
-import android.content.Context;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.util.Log;
 
-import com.hartz.inventory.SharedPrefsHelper;
+import com.google.gson.stream.JsonReader;
+import com.hartz.inventory.CatalogIndex;
+import com.hartz.inventory.CatalogSearchIndex;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.Serializable;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 
 /**
  * Created by Webmaster on 1/9/2017.
  */
 
-public class Customer implements Serializable{
+public class Customer implements Parcelable {
     private String id;
     private String name;
 
@@ -49,25 +49,64 @@ public class Customer implements Serializable{
         return getName()+" - "+getId();
     }
 
-    public static ArrayList<Customer> getListFromPrefs(Context applicationContext) {
-        try {
-            String custJson = SharedPrefsHelper.readPrefs(SharedPrefsHelper.CUSTOMER_PREFS, applicationContext);
-            JSONObject userObject = new JSONObject(custJson);
-            if(userObject.getBoolean("error")) return null;
-            JSONArray custJSONArray = userObject.getJSONArray("customers");
-            ArrayList<Customer> custArray = new ArrayList<Customer>();
-            for(int i = 0; i < custJSONArray.length(); i++){
-                JSONObject martObject = custJSONArray.getJSONObject(i);
-                custArray.add(new Customer(martObject.getString("MCUSTOMER_CUSTID"),
-                        martObject.getString("MCUSTOMER_CUSTNAME")));
+    /**
+     * streaming reader for customer list and delta responses
+     */
+    public static final CatalogReader<Customer> READER = new CatalogReader<Customer>("customers") {
+        @Override
+        protected Customer readRow(JsonReader reader) throws IOException {
+            String id = null;
+            String name = null;
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (field.equals("MCUSTOMER_CUSTID")) {
+                    id = nextString(reader);
+                } else if (field.equals("MCUSTOMER_CUSTNAME")) {
+                    name = nextString(reader);
+                } else {
+                    reader.skipValue();
+                }
             }
-            return custArray;
-        } catch (JSONException e) {
-            e.printStackTrace();
+            return new Customer(id, name);
         }
-        return null;
+    };
+
+    /**
+     * parse a customer list response without building a json tree
+     * @param json json text, closed when done
+     * @return the list, null if the response reports an error
+     */
+    public static ArrayList<Customer> parseList(Reader json) throws IOException {
+        return READER.read(json);
     }
 
+    /**
+     * texts the autocomplete finds a customer by: customer name and id
+     */
+    public static final CatalogSearchIndex.TextExtractor<Customer> SEARCH_TEXT =
+            new CatalogSearchIndex.TextExtractor<Customer>() {
+                @Override
+                public String[] textsOf(Customer row) {
+                    return new String[]{row.getName(), row.getId()};
+                }
+            };
+
+    /**
+     * key a customer is found by: customer id
+     */
+    public static final CatalogIndex.KeyExtractor<Customer> KEY =
+            new CatalogIndex.KeyExtractor<Customer>() {
+                @Override
+                public String firstOf(Customer row) {
+                    return row.getId();
+                }
+
+                @Override
+                public String secondOf(Customer row) {
+                    return null;
+                }
+            };
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -83,4 +122,32 @@ public class Customer implements Serializable{
     public int hashCode() {
         return id != null ? id.hashCode() : 0;
     }
+
+    protected Customer(Parcel in) {
+        id = in.readString();
+        name = in.readString();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(id);
+        dest.writeString(name);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<Customer> CREATOR = new Creator<Customer>() {
+        @Override
+        public Customer createFromParcel(Parcel in) {
+            return new Customer(in);
+        }
+
+        @Override
+        public Customer[] newArray(int size) {
+            return new Customer[size];
+        }
+    };
 }
@@ -1,21 +1,20 @@
 package com.hartz.inventory.model;
 
-import android.content.Context;
-
-import com.hartz.inventory.SharedPrefsHelper;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.Serializable;
+import android.os.Parcel;
+import android.os.Parcelable;
+import com.google.gson.stream.JsonReader;
+import com.hartz.inventory.CatalogIndex;
+import com.hartz.inventory.CatalogSearchIndex;
+
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 
 /**
  * Created by Webmaster on 1/9/2017.
  */
 
-public class Mfgart implements Serializable{
+public class Mfgart implements Parcelable {
     private String groupID;
     private String articleID;
     private String articleName;
@@ -91,32 +90,66 @@ public class Mfgart implements Serializable{
     }
 
     /**
-     * create new mrmart array from json response
-     * @param context json text to be made into object
-     * @return true if success, false if not
+     * streaming reader for mfgart list and delta responses
      */
-    public static ArrayList<Mfgart> getListFromPrefs(Context context){
-        try {
-            String mfgartJson = SharedPrefsHelper.readPrefs(
-                    SharedPrefsHelper.MFGART_PREFS, context);
-            JSONObject userObject = new JSONObject(mfgartJson);
-            if(userObject.getBoolean("error")) return null;
-            JSONArray martJSONArray = userObject.getJSONArray("products");
-            ArrayList<Mfgart> martArray = new ArrayList<Mfgart>();
-            for(int i = 0; i < martJSONArray.length(); i++){
-                JSONObject martObject = martJSONArray.getJSONObject(i);
-                martArray.add(new Mfgart(martObject.getString("MFGART_GROUPID"),
-                        martObject.getString("MFGART_ARTICLEID"),
-                        martObject.getString("MFGART_ARTICLENAME")));
+    public static final CatalogReader<Mfgart> READER = new CatalogReader<Mfgart>("products") {
+        @Override
+        protected Mfgart readRow(JsonReader reader) throws IOException {
+            String groupID = null;
+            String articleID = null;
+            String articleName = null;
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (field.equals("MFGART_GROUPID")) {
+                    groupID = nextString(reader);
+                } else if (field.equals("MFGART_ARTICLEID")) {
+                    articleID = nextString(reader);
+                } else if (field.equals("MFGART_ARTICLENAME")) {
+                    articleName = nextString(reader);
+                } else {
+                    reader.skipValue();
+                }
             }
-
-            return martArray;
-        } catch (JSONException e) {
-            e.printStackTrace();
+            return new Mfgart(groupID, articleID, articleName);
         }
-        return null;
+    };
+
+    /**
+     * parse a mfgart list response without building a json tree
+     * @param json json text, closed when done
+     * @return the list, null if the response reports an error
+     */
+    public static ArrayList<Mfgart> parseList(Reader json) throws IOException {
+        return READER.read(json);
     }
 
+    /**
+     * texts the autocomplete finds a mfgart by: article name, group id and article id
+     */
+    public static final CatalogSearchIndex.TextExtractor<Mfgart> SEARCH_TEXT =
+            new CatalogSearchIndex.TextExtractor<Mfgart>() {
+                @Override
+                public String[] textsOf(Mfgart row) {
+                    return new String[]{row.getArticleName(), row.getGroupID(), row.getArticleID()};
+                }
+            };
+
+    /**
+     * key a mfgart is found by: group id and article id
+     */
+    public static final CatalogIndex.KeyExtractor<Mfgart> KEY =
+            new CatalogIndex.KeyExtractor<Mfgart>() {
+                @Override
+                public String firstOf(Mfgart row) {
+                    return row.getGroupID();
+                }
+
+                @Override
+                public String secondOf(Mfgart row) {
+                    return row.getArticleID();
+                }
+            };
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -144,4 +177,40 @@ public class Mfgart implements Serializable{
     public void setNote(String note) {
         this.note = note;
     }
+
+    protected Mfgart(Parcel in) {
+        groupID = in.readString();
+        articleID = in.readString();
+        articleName = in.readString();
+        quantity = in.readInt();
+        satuan = in.readString();
+        note = in.readString();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(groupID);
+        dest.writeString(articleID);
+        dest.writeString(articleName);
+        dest.writeInt(quantity);
+        dest.writeString(satuan);
+        dest.writeString(note);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<Mfgart> CREATOR = new Creator<Mfgart>() {
+        @Override
+        public Mfgart createFromParcel(Parcel in) {
+            return new Mfgart(in);
+        }
+
+        @Override
+        public Mfgart[] newArray(int size) {
+            return new Mfgart[size];
+        }
+    };
 }
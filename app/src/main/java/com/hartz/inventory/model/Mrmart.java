@@ -1,25 +1,23 @@
 package com.hartz.inventory.model;
 
-import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.preference.PreferenceManager;
 
-import com.hartz.inventory.SharedPrefsHelper;
+import com.google.gson.stream.JsonReader;
+import com.hartz.inventory.CatalogIndex;
+import com.hartz.inventory.CatalogSearchIndex;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.Serializable;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 
 /**
  * Created by hrtz on 12/29/2016.
  */
 
-public class Mrmart implements Serializable{
+public class Mrmart implements Parcelable {
     private String groupID;
     private String articleID;
     private String articleName;
@@ -88,31 +86,66 @@ public class Mrmart implements Serializable{
     }
 
     /**
-     * create new mrmart array from json response
-     * @param context json text to be made into object
-     * @return true if success, false if not
+     * streaming reader for mrmart list and delta responses
      */
-    public static ArrayList<Mrmart> getListFromPrefs(Context context){
-        try {
-            String mrMartJson = SharedPrefsHelper.readPrefs(SharedPrefsHelper.MRMART_PREFS, context);
-            JSONObject userObject = new JSONObject(mrMartJson);
-            if(userObject.getBoolean("error")) return null;
-            JSONArray martJSONArray = userObject.getJSONArray("mart");
-            ArrayList<Mrmart> martArray = new ArrayList<Mrmart>();
-            for(int i = 0; i < martJSONArray.length(); i++){
-                JSONObject martObject = martJSONArray.getJSONObject(i);
-                martArray.add(new Mrmart(martObject.getString("MRMART_GROUPID"),
-                        martObject.getString("MRMART_ARTICLEID"),
-                        martObject.getString("MRMART_ARTICLENAME")));
+    public static final CatalogReader<Mrmart> READER = new CatalogReader<Mrmart>("mart") {
+        @Override
+        protected Mrmart readRow(JsonReader reader) throws IOException {
+            String groupID = null;
+            String articleID = null;
+            String articleName = null;
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (field.equals("MRMART_GROUPID")) {
+                    groupID = nextString(reader);
+                } else if (field.equals("MRMART_ARTICLEID")) {
+                    articleID = nextString(reader);
+                } else if (field.equals("MRMART_ARTICLENAME")) {
+                    articleName = nextString(reader);
+                } else {
+                    reader.skipValue();
+                }
             }
-
-            return martArray;
-        } catch (JSONException e) {
-            e.printStackTrace();
+            return new Mrmart(groupID, articleID, articleName);
         }
-        return null;
+    };
+
+    /**
+     * parse a mrmart list response without building a json tree
+     * @param json json text, closed when done
+     * @return the list, null if the response reports an error
+     */
+    public static ArrayList<Mrmart> parseList(Reader json) throws IOException {
+        return READER.read(json);
     }
 
+    /**
+     * texts the autocomplete finds a mrmart by: article name, group id and article id
+     */
+    public static final CatalogSearchIndex.TextExtractor<Mrmart> SEARCH_TEXT =
+            new CatalogSearchIndex.TextExtractor<Mrmart>() {
+                @Override
+                public String[] textsOf(Mrmart row) {
+                    return new String[]{row.getArticleName(), row.getGroupID(), row.getArticleID()};
+                }
+            };
+
+    /**
+     * key a mrmart is found by: group id and article id
+     */
+    public static final CatalogIndex.KeyExtractor<Mrmart> KEY =
+            new CatalogIndex.KeyExtractor<Mrmart>() {
+                @Override
+                public String firstOf(Mrmart row) {
+                    return row.getGroupID();
+                }
+
+                @Override
+                public String secondOf(Mrmart row) {
+                    return row.getArticleID();
+                }
+            };
+
 
     public String getGroupID() {
         return groupID;
@@ -162,4 +195,40 @@ public class Mrmart implements Serializable{
         result = 31 * result + (articleID != null ? articleID.hashCode() : 0);
         return result;
     }
+
+    protected Mrmart(Parcel in) {
+        groupID = in.readString();
+        articleID = in.readString();
+        articleName = in.readString();
+        quantity = in.readInt();
+        satuan = in.readString();
+        note = in.readString();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(groupID);
+        dest.writeString(articleID);
+        dest.writeString(articleName);
+        dest.writeInt(quantity);
+        dest.writeString(satuan);
+        dest.writeString(note);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<Mrmart> CREATOR = new Creator<Mrmart>() {
+        @Override
+        public Mrmart createFromParcel(Parcel in) {
+            return new Mrmart(in);
+        }
+
+        @Override
+        public Mrmart[] newArray(int size) {
+            return new Mrmart[size];
+        }
+    };
 }
@@ -1,20 +1,28 @@
 package com.hartz.inventory.model;
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.hartz.inventory.CatalogCache;
+import com.hartz.inventory.CatalogIndex;
+import com.hartz.inventory.StringPool;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 
 /**
  * Created by Webmaster on 1/5/2017.
  */
 
-public class PPRE implements Serializable{
+public class PPRE implements Parcelable {
     private String id;
     private String user;
     private ArrayList<Mrmart> itemList;
+    //built once per document for the list rows
+    private String itemListText;
 
     public PPRE(){}
 
@@ -44,50 +52,136 @@ public class PPRE implements Serializable{
 
     public void setItemList(ArrayList<Mrmart> itemList) {
         this.itemList = itemList;
+        itemListText = null;
     }
 
     public static ArrayList<PPRE> getFromJSON(String jsonResponse) {
         try {
             JSONObject jsonObject = new JSONObject(jsonResponse);
             if(jsonObject.getBoolean("error")) return null;
-            ArrayList<PPRE> list = new ArrayList<PPRE>();
-            JSONArray arr = jsonObject.getJSONArray("entries");
-            for(int i = 0; i < arr.length(); i++){
-                JSONObject jsonObj = arr.getJSONObject(i);
-                JSONArray arr2 = jsonObj.getJSONArray("ppred");
-                ArrayList<Mrmart> listMart = new ArrayList<Mrmart>();
-                for(int j = 0; j < arr2.length(); j++){
-                    JSONObject mrmartobj = arr2.getJSONObject(j);
-                    listMart.add(new Mrmart(mrmartobj.getString("PPRED_GROUP"), mrmartobj.getString("PPRED_ART"),
-                            mrmartobj.getString("PPRED_ARTICLENAME"), mrmartobj.getInt("PPRED_QTY"),
-                            mrmartobj.getString("PPRED_SATUAN"), mrmartobj.getString("PPRED_NOTE")
-                            ));
-                }
-                PPRE ppre = new PPRE(jsonObj.getString("PPRE_DateTime"));
-                ppre.setItemList(listMart);
-                list.add(ppre);
-            }
-
-            return list;
+            return getEntriesFromJSON(jsonObject);
         } catch (JSONException e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * read the documents of a response, also of one history page
+     */
+    public static ArrayList<PPRE> getEntriesFromJSON(JSONObject jsonObject) throws JSONException {
+        return getEntriesFromJSON(jsonObject, null);
+    }
+
+    /**
+     * read the documents of a response, repeated strings are kept once within it
+     */
+    public static ArrayList<PPRE> getEntriesFromJSON(JSONObject jsonObject, CatalogCache.Snapshot catalogs)
+            throws JSONException {
+        return getEntriesFromJSON(jsonObject, catalogs, new StringPool());
+    }
+
+    /**
+     * read the documents of a response, the lines share the id and name strings of the
+     * catalog rows they refer to instead of keeping a copy per document
+     * @param catalogs looked up by group and article id and by satuan id, may be null
+     * @param pool every other repeated string is kept once, share it between the pages of a list
+     */
+    public static ArrayList<PPRE> getEntriesFromJSON(JSONObject jsonObject, CatalogCache.Snapshot catalogs,
+                                                   StringPool pool) throws JSONException {
+        ArrayList<PPRE> list = new ArrayList<PPRE>();
+        JSONArray arr = jsonObject.getJSONArray("entries");
+        for(int i = 0; i < arr.length(); i++){
+            JSONObject jsonObj = arr.getJSONObject(i);
+            JSONArray arr2 = jsonObj.getJSONArray("ppred");
+            ArrayList<Mrmart> listMart = new ArrayList<Mrmart>();
+            for(int j = 0; j < arr2.length(); j++){
+                JSONObject mrmartobj = arr2.getJSONObject(j);
+                String groupID = mrmartobj.getString("PPRED_GROUP");
+                String articleID = mrmartobj.getString("PPRED_ART");
+                String articleName = mrmartobj.getString("PPRED_ARTICLENAME");
+                String satuan = mrmartobj.getString("PPRED_SATUAN");
+                if (catalogs != null) {
+                    Mrmart row = catalogs.getMrmartKeys().get(groupID, articleID);
+                    if (row != null) {
+                        groupID = row.getGroupID();
+                        articleID = row.getArticleID();
+                        articleName = CatalogIndex.canonical(articleName, row.getArticleName());
+                    }
+                    Satuan unit = catalogs.getSatuanKeys().get(satuan);
+                    if (unit != null) satuan = unit.getSatuanID();
+                }
+                //the values missing from the catalogs, and the notes, are kept once per list
+                groupID = pool.get(groupID);
+                articleID = pool.get(articleID);
+                articleName = pool.get(articleName);
+                satuan = pool.get(satuan);
+                listMart.add(new Mrmart(groupID, articleID, articleName, mrmartobj.getInt("PPRED_QTY"),
+                        satuan, pool.get(mrmartobj.getString("PPRED_NOTE"))
+                        ));
+            }
+            PPRE ppre = new PPRE(jsonObj.getString("PPRE_DateTime"));
+            ppre.setItemList(listMart);
+            //while still on the loading thread, binding the row then only reads it
+            ppre.itemListToString();
+            list.add(ppre);
+        }
+
+        return list;
+    }
+
     public String itemListToString(){
+        if (itemListText == null) itemListText = buildItemListText();
+        return itemListText;
+    }
+
+    /**
+     * forget the text of {@link #itemListToString()}, after the items were changed in place
+     */
+    public void itemListChanged(){
+        itemListText = null;
+    }
+
+    private String buildItemListText(){
         StringBuilder sb = new StringBuilder();
         for(int i = 0; i < itemList.size(); i++){
             Mrmart mrmart = itemList.get(i);
             sb.append(mrmart.getArticleName());
-            sb.append(" ("+mrmart.getGroupID()+")");
-            sb.append(" "+mrmart.getQuantity());
-
-            sb.append("\nCatatan: "+mrmart.getNote());
+            sb.append(" (").append(mrmart.getGroupID()).append(')');
+            sb.append(' ').append(mrmart.getQuantity());
+            sb.append("\nCatatan: ").append(mrmart.getNote());
             if(i != itemList.size()-1)sb.append("\r\n\r\n");
-
-
         }
         return sb.toString();
     }
+
+    protected PPRE(Parcel in) {
+        id = in.readString();
+        user = in.readString();
+        itemList = in.createTypedArrayList(Mrmart.CREATOR);
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(id);
+        dest.writeString(user);
+        dest.writeTypedList(itemList);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<PPRE> CREATOR = new Creator<PPRE>() {
+        @Override
+        public PPRE createFromParcel(Parcel in) {
+            return new PPRE(in);
+        }
+
+        @Override
+        public PPRE[] newArray(int size) {
+            return new PPRE[size];
+        }
+    };
 }
@@ -1,21 +1,29 @@
 package com.hartz.inventory.model;
 
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.hartz.inventory.CatalogCache;
+import com.hartz.inventory.CatalogIndex;
+import com.hartz.inventory.StringPool;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 
 /**
  * Created by Webmaster on 1/9/2017.
  */
 
-public class SSJDE implements Serializable{
+public class SSJDE implements Parcelable {
     private String id;
     private String user;
     private Customer customer;
     private ArrayList<Mfgart> itemList;
+    //built once per document for the list rows
+    private String itemListText;
 
     public SSJDE() {
     }
@@ -55,56 +63,159 @@ public class SSJDE implements Serializable{
 
     public void setItemList(ArrayList<Mfgart> itemList) {
         this.itemList = itemList;
+        itemListText = null;
     }
 
     public static ArrayList<SSJDE> getFromJSON(String jsonResponse) {
         try {
             JSONObject jsonObject = new JSONObject(jsonResponse);
             if(jsonObject.getBoolean("error")) return null;
-            ArrayList<SSJDE> list = new ArrayList<SSJDE>();
-            JSONArray arr = jsonObject.getJSONArray("entries");
-            for(int i = 0; i < arr.length(); i++){
-                JSONObject jsonObj = arr.getJSONObject(i);
-                //get item list
-                JSONArray arr2 = jsonObj.getJSONArray("ssjded");
-                ArrayList<Mfgart> listMfgart = new ArrayList<Mfgart>();
-                for(int j = 0; j < arr2.length(); j++){
-                    JSONObject mfgartobj = arr2.getJSONObject(j);
-                    listMfgart.add(
-                            new Mfgart(mfgartobj.getString("SSJDE_GROUP"),
-                                    mfgartobj.getString("SSJDE_ART"),
-                                    mfgartobj.getString("SSJDE_ARTICLENAME"),
-                                    mfgartobj.getInt("SSJDE_QTY"),
-                                    mfgartobj.getString("SSJDE_SATUAN"),
-                                    mfgartobj.getString("SSJDE_NOTE")
-                    ));
-                }
-
-                SSJDE ssjde = new SSJDE(jsonObj.getString("SSJDE_DateTime"),
-                        new Customer(jsonObj.getString("SSJDE_CUSTID"),
-                                jsonObj.getString("SSJDE_CUSTNAME")));
-                ssjde.setItemList(listMfgart);
-                list.add(ssjde);
-            }
-
-            return list;
+            return getEntriesFromJSON(jsonObject);
         } catch (JSONException e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * read the documents of a response, also of one history page
+     */
+    public static ArrayList<SSJDE> getEntriesFromJSON(JSONObject jsonObject) throws JSONException {
+        return getEntriesFromJSON(jsonObject, null);
+    }
+
+    /**
+     * read the documents of a response, repeated strings are kept once within it
+     */
+    public static ArrayList<SSJDE> getEntriesFromJSON(JSONObject jsonObject, CatalogCache.Snapshot catalogs)
+            throws JSONException {
+        return getEntriesFromJSON(jsonObject, catalogs, new StringPool());
+    }
+
+    /**
+     * read the documents of a response, lines and customers share the id and name strings
+     * of the catalog rows they refer to instead of keeping a copy per document
+     * @param catalogs looked up by group and article id, satuan id and customer id, may be null
+     * @param pool every other repeated string is kept once, share it between the pages of a list
+     */
+    public static ArrayList<SSJDE> getEntriesFromJSON(JSONObject jsonObject, CatalogCache.Snapshot catalogs,
+                                                   StringPool pool) throws JSONException {
+        ArrayList<SSJDE> list = new ArrayList<SSJDE>();
+        JSONArray arr = jsonObject.getJSONArray("entries");
+        for(int i = 0; i < arr.length(); i++){
+            JSONObject jsonObj = arr.getJSONObject(i);
+            //get item list
+            JSONArray arr2 = jsonObj.getJSONArray("ssjded");
+            ArrayList<Mfgart> listMfgart = new ArrayList<Mfgart>();
+            for(int j = 0; j < arr2.length(); j++){
+                JSONObject mfgartobj = arr2.getJSONObject(j);
+                String groupID = mfgartobj.getString("SSJDE_GROUP");
+                String articleID = mfgartobj.getString("SSJDE_ART");
+                String articleName = mfgartobj.getString("SSJDE_ARTICLENAME");
+                String satuan = mfgartobj.getString("SSJDE_SATUAN");
+                if (catalogs != null) {
+                    Mfgart row = catalogs.getMfgartKeys().get(groupID, articleID);
+                    if (row != null) {
+                        groupID = row.getGroupID();
+                        articleID = row.getArticleID();
+                        articleName = CatalogIndex.canonical(articleName, row.getArticleName());
+                    }
+                    Satuan unit = catalogs.getSatuanKeys().get(satuan);
+                    if (unit != null) satuan = unit.getSatuanID();
+                }
+                //the values missing from the catalogs, and the notes, are kept once per list
+                groupID = pool.get(groupID);
+                articleID = pool.get(articleID);
+                articleName = pool.get(articleName);
+                satuan = pool.get(satuan);
+                listMfgart.add(
+                        new Mfgart(groupID,
+                                articleID,
+                                articleName,
+                                mfgartobj.getInt("SSJDE_QTY"),
+                                satuan,
+                                pool.get(mfgartobj.getString("SSJDE_NOTE"))
+                ));
+            }
+
+            String custID = jsonObj.getString("SSJDE_CUSTID");
+            String custName = jsonObj.getString("SSJDE_CUSTNAME");
+            if (catalogs != null) {
+                Customer row = catalogs.getCustomerKeys().get(custID);
+                if (row != null) {
+                    custID = row.getId();
+                    custName = CatalogIndex.canonical(custName, row.getName());
+                }
+            }
+            custID = pool.get(custID);
+            custName = pool.get(custName);
+            SSJDE ssjde = new SSJDE(jsonObj.getString("SSJDE_DateTime"), new Customer(custID, custName));
+            ssjde.setItemList(listMfgart);
+            //while still on the loading thread, binding the row then only reads it
+            ssjde.itemListToString();
+            list.add(ssjde);
+        }
+
+        return list;
+    }
+
     public String itemListToString(){
+        if (itemListText == null) itemListText = buildItemListText();
+        return itemListText;
+    }
+
+    /**
+     * forget the text of {@link #itemListToString()}, after the items were changed in place
+     */
+    public void itemListChanged(){
+        itemListText = null;
+    }
+
+    private String buildItemListText(){
         StringBuilder sb = new StringBuilder();
         for(int i = 0; i < itemList.size(); i++){
             Mfgart mfgart = itemList.get(i);
             sb.append(mfgart.getArticleName());
-            sb.append(" ("+mfgart.getGroupID()+")");
-            sb.append(" "+mfgart.getQuantity());
-            sb.append(" "+mfgart.getSatuan());
-            sb.append("\nCatatan: "+mfgart.getNote());
+            sb.append(" (").append(mfgart.getGroupID()).append(')');
+            sb.append(' ').append(mfgart.getQuantity());
+            sb.append(' ').append(mfgart.getSatuan());
+            sb.append("\nCatatan: ").append(mfgart.getNote());
             if(i != itemList.size()-1)sb.append("\r\n\r\n");
         }
         return sb.toString();
     }
+
+    protected SSJDE(Parcel in) {
+        id = in.readString();
+        user = in.readString();
+        customer = in.readByte() != 0 ? Customer.CREATOR.createFromParcel(in) : null;
+        itemList = in.createTypedArrayList(Mfgart.CREATOR);
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(id);
+        dest.writeString(user);
+        //written inline, writeParcelable would add the class name
+        dest.writeByte((byte) (customer != null ? 1 : 0));
+        if (customer != null) customer.writeToParcel(dest, flags);
+        dest.writeTypedList(itemList);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<SSJDE> CREATOR = new Creator<SSJDE>() {
+        @Override
+        public SSJDE createFromParcel(Parcel in) {
+            return new SSJDE(in);
+        }
+
+        @Override
+        public SSJDE[] newArray(int size) {
+            return new SSJDE[size];
+        }
+    };
 }
@@ -1,13 +1,10 @@
 package com.hartz.inventory.model;
 
-import android.content.Context;
-
-import com.hartz.inventory.SharedPrefsHelper;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.gson.stream.JsonReader;
+import com.hartz.inventory.CatalogIndex;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 
 /**
@@ -32,30 +29,53 @@ public class Satuan{
     }
 
     /**
-     * get satuan list from shared preferences
-     * @param context application context
-     * @return list converted from json preferences
+     * streaming reader for satuan list and delta responses
      */
-    public static ArrayList<Satuan> getListFromPrefs(Context context){
-        try {
-            String satuanJson = SharedPrefsHelper.readPrefs(SharedPrefsHelper.SATUAN_PREFS, context);
-            JSONObject userObject = new JSONObject(satuanJson);
-            if(userObject.getBoolean("error")) return null;
-            JSONArray satuanJSONArray = userObject.getJSONArray("satuan");
-            ArrayList<Satuan> satuanArray = new ArrayList<Satuan>();
-            for(int i = 0; i < satuanJSONArray.length(); i++){
-                JSONObject martObject = satuanJSONArray.getJSONObject(i);
-                satuanArray.add(new Satuan(martObject.getString("MSATUAN_SATUANID"),
-                        martObject.getString("MSATUAN_SATUANNAME")));
+    public static final CatalogReader<Satuan> READER = new CatalogReader<Satuan>("satuan") {
+        @Override
+        protected Satuan readRow(JsonReader reader) throws IOException {
+            String satuanID = null;
+            String satuanName = null;
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (field.equals("MSATUAN_SATUANID")) {
+                    satuanID = nextString(reader);
+                } else if (field.equals("MSATUAN_SATUANNAME")) {
+                    satuanName = nextString(reader);
+                } else {
+                    reader.skipValue();
+                }
             }
-
-            return satuanArray;
-        } catch (JSONException e) {
-            e.printStackTrace();
+            return new Satuan(satuanID, satuanName);
         }
-        return null;
+    };
+
+    /**
+     * parse a satuan list response without building a json tree
+     * @param json json text, closed when done
+     * @return the list, null if the response reports an error
+     */
+    public static ArrayList<Satuan> parseList(Reader json) throws IOException {
+        return READER.read(json);
     }
 
+    /**
+     * key a satuan is found by: satuan id
+     */
+    public static final CatalogIndex.KeyExtractor<Satuan> KEY =
+            new CatalogIndex.KeyExtractor<Satuan>() {
+                @Override
+                public String firstOf(Satuan row) {
+                    return row.getSatuanID();
+                }
+
+                @Override
+                public String secondOf(Satuan row) {
+                    return null;
+                }
+            };
+
+
     public String getSatuanID() {
         return satuanID;
     }
@@ -0,0 +1,141 @@
+package com.hartz.inventory;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * checks the decoding and reports what reading a catalog body allocates per megabyte,
+ * against the readLine loop it replaced
+ */
+public class BodyReaderTest {
+
+    private static final int ROWS = 20000;
+
+    @Test
+    public void readsTheBodyAsSent() throws Exception {
+        String body = "{\"entries\":[{\"name\":\"Sendal Jepit Ukuran 42\"}]}\r\n{\"note\":\"warna hijau é€\"}";
+        byte[] bytes = body.getBytes("UTF-8");
+
+        assertEquals(body, BodyReader.readString(new ByteArrayInputStream(bytes), bytes.length));
+        assertEquals(body, BodyReader.readString(new ByteArrayInputStream(bytes), -1));
+        //a wrong length only costs a copy
+        assertEquals(body, BodyReader.readString(new ByteArrayInputStream(bytes), 3));
+        assertEquals(body, BodyReader.readString(new ByteArrayInputStream(bytes), bytes.length * 10));
+        //multi byte characters cut between two reads
+        assertEquals(body, BodyReader.readString(new Trickle(new ByteArrayInputStream(bytes)), -1));
+        assertEquals("", BodyReader.readString(new ByteArrayInputStream(new byte[0]), 0));
+    }
+
+    @Test
+    public void closesTheStream() throws Exception {
+        final boolean[] closed = new boolean[1];
+        InputStream in = new ByteArrayInputStream(new byte[10]) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+            }
+        };
+        BodyReader.readString(in, 10);
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    public void lengthHintFollowsTheEncoding() {
+        assertEquals(1000, HttpTransport.bodyLengthHint(1000, null));
+        assertEquals(1000, HttpTransport.bodyLengthHint(1000, "identity"));
+        assertEquals(2000, HttpTransport.bodyLengthHint(1000, "gzip"));
+        assertEquals(-1, HttpTransport.bodyLengthHint(-1, null));
+    }
+
+    @Test
+    public void allocatesLessPerMegabyteThanReadLine() throws Exception {
+        byte[] bytes = catalog().getBytes("UTF-8");
+        double megabytes = bytes.length / (1024.0 * 1024.0);
+        //warm up
+        for (int i = 0; i < 3; i++) {
+            readLines(new ByteArrayInputStream(bytes));
+            BodyReader.readString(new ByteArrayInputStream(bytes), bytes.length);
+        }
+
+        long allocated = allocatedBytes();
+        String lines = readLines(new ByteArrayInputStream(bytes));
+        long lineBytes = allocatedBytes() - allocated;
+        allocated = allocatedBytes();
+        String sized = BodyReader.readString(new ByteArrayInputStream(bytes), bytes.length);
+        long sizedBytes = allocatedBytes() - allocated;
+        allocated = allocatedBytes();
+        String unsized = BodyReader.readString(new ByteArrayInputStream(bytes), -1);
+        long unsizedBytes = allocatedBytes() - allocated;
+
+        System.out.println(String.format("%.1f MB body, allocated per MB: readLine %d KB, "
+                        + "with Content-Length %d KB, without %d KB", megabytes,
+                (long) (lineBytes / megabytes / 1024), (long) (sizedBytes / megabytes / 1024),
+                (long) (unsizedBytes / megabytes / 1024)));
+        assertEquals(lines.trim(), sized.trim());
+        assertEquals(sized, unsized);
+        if (lineBytes > 0) assertTrue(sizedBytes < lineBytes);
+    }
+
+    /**
+     * the loop HttpTransport read bodies with before
+     */
+    private static String readLines(InputStream is) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+        StringBuilder sb = new StringBuilder();
+        String line;
+        try {
+            while ((line = reader.readLine()) != null) {
+                sb.append(line).append('\n');
+            }
+        } finally {
+            is.close();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * a mrmart response pretty printed one field a line, like the server sends it
+     */
+    private static String catalog() {
+        StringBuilder body = new StringBuilder("{\n  \"error\": false,\n  \"entries\": [\n");
+        for (int i = 0; i < ROWS; i++) {
+            if (i > 0) body.append(",\n");
+            body.append("    {\n      \"MRMART_GROUP\": \"G").append(i % 300)
+                    .append("\",\n      \"MRMART_ART\": \"A").append(i)
+                    .append("\",\n      \"MRMART_NAME\": \"Sendal Jepit Nomor ").append(i).append("\"\n    }");
+        }
+        return body.append("\n  ]\n}\n").toString();
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * gives at most three bytes a read, like a slow socket
+     */
+    private static class Trickle extends FilterInputStream {
+        Trickle(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 3));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.hartz.inventory;
+
+import com.hartz.inventory.model.Customer;
+import com.hartz.inventory.model.Mfgart;
+import com.hartz.inventory.model.Mrmart;
+import com.hartz.inventory.model.PPRE;
+import com.hartz.inventory.model.Satuan;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * checks the id lookups and compares what building one costs with a HashMap on
+ * concatenated keys
+ */
+public class CatalogIndexTest {
+
+    private static final int ROWS = 50000;
+
+    @Test
+    public void findsRowsByCompositeAndSingleKey() {
+        List<Mrmart> rows = Arrays.asList(
+                new Mrmart("G1", "A1", "Gula Pasir"),
+                new Mrmart("G2", "A1", "Gula Merah"),
+                new Mrmart("G1", "A1", "Duplikat"),
+                new Mrmart("G1A", "1", "Bukan Gula"));
+        CatalogIndex<Mrmart> index = new CatalogIndex<Mrmart>(rows, Mrmart.KEY);
+
+        assertSame(rows.get(0), index.get("G1", "A1"));
+        assertEquals(1, index.indexOf("G2", "A1"));
+        assertEquals(3, index.indexOf("G1A", "1"));
+        assertNull(index.get("G3", "A1"));
+        assertNull(index.get(null, null));
+
+        List<Satuan> units = Arrays.asList(new Satuan("PCS", "Pieces"), new Satuan("KG", "Kilogram"));
+        CatalogIndex<Satuan> satuanIndex = new CatalogIndex<Satuan>(units, Satuan.KEY);
+        assertEquals(1, satuanIndex.indexOf("KG"));
+        assertEquals(-1, satuanIndex.indexOf("LTR"));
+        assertEquals(-1, new CatalogIndex<Satuan>(new ArrayList<Satuan>(), Satuan.KEY).indexOf("KG"));
+    }
+
+    @Test
+    public void everyRowOfABigCatalogIsFound() {
+        ArrayList<Mrmart> rows = catalog(ROWS);
+        CatalogIndex<Mrmart> index = new CatalogIndex<Mrmart>(rows, Mrmart.KEY);
+        for (int i = 0; i < ROWS; i++) {
+            Mrmart row = rows.get(i);
+            assertEquals(i, index.indexOf(row.getGroupID(), row.getArticleID()));
+        }
+        assertEquals(-1, index.indexOf("G0", "A" + ROWS));
+    }
+
+    @Test
+    public void parsedLinesShareTheCatalogStrings() throws Exception {
+        ArrayList<Mrmart> mrmarts = new ArrayList<Mrmart>();
+        mrmarts.add(new Mrmart("G1", "A1", "Gula Pasir"));
+        ArrayList<Satuan> units = new ArrayList<Satuan>();
+        units.add(new Satuan("KG", "Kilogram"));
+        CatalogCache.Snapshot catalogs = new CatalogCache.Snapshot(mrmarts, new ArrayList<Mfgart>(), units,
+                new ArrayList<Customer>());
+
+        String body = "{\"entries\":[{\"PPRE_DateTime\":\"2017-01-05 10:00:00\",\"ppred\":["
+                + "{\"PPRED_GROUP\":\"G1\",\"PPRED_ART\":\"A1\",\"PPRED_ARTICLENAME\":\"Gula Pasir\","
+                + "\"PPRED_QTY\":2,\"PPRED_SATUAN\":\"KG\",\"PPRED_NOTE\":\"\"},"
+                + "{\"PPRED_GROUP\":\"G9\",\"PPRED_ART\":\"A9\",\"PPRED_ARTICLENAME\":\"Lama\","
+                + "\"PPRED_QTY\":1,\"PPRED_SATUAN\":\"PCS\",\"PPRED_NOTE\":\"\"}]}]}";
+        ArrayList<Mrmart> lines = PPRE.getEntriesFromJSON(new JSONObject(body), catalogs).get(0).getItemList();
+
+        assertSame(mrmarts.get(0).getGroupID(), lines.get(0).getGroupID());
+        assertSame(mrmarts.get(0).getArticleID(), lines.get(0).getArticleID());
+        assertSame(mrmarts.get(0).getArticleName(), lines.get(0).getArticleName());
+        assertSame(units.get(0).getSatuanID(), lines.get(0).getSatuan());
+        //not in the catalogs, kept as parsed
+        assertEquals("Lama", lines.get(1).getArticleName());
+        assertEquals("PCS", lines.get(1).getSatuan());
+        assertEquals(PPRE.getEntriesFromJSON(new JSONObject(body)).get(0).itemListToString(),
+                PPRE.getEntriesFromJSON(new JSONObject(body), catalogs).get(0).itemListToString());
+    }
+
+    @Test
+    public void indexAllocatesLessThanAHashMap() {
+        ArrayList<Mrmart> rows = catalog(ROWS);
+        //warm up
+        for (int i = 0; i < 3; i++) {
+            new CatalogIndex<Mrmart>(rows, Mrmart.KEY);
+            hashMap(rows);
+        }
+        long allocated = allocatedBytes();
+        CatalogIndex<Mrmart> index = new CatalogIndex<Mrmart>(rows, Mrmart.KEY);
+        long indexBytes = allocatedBytes() - allocated;
+        allocated = allocatedBytes();
+        HashMap<String, Integer> map = hashMap(rows);
+        long mapBytes = allocatedBytes() - allocated;
+
+        System.out.println(ROWS + " articles: index " + indexBytes / 1024 + " KB, HashMap " + mapBytes / 1024 + " KB");
+        assertEquals(map.get("G7" + "/" + "A7").intValue(), index.indexOf("G7", "A7"));
+        if (mapBytes > 0) assertTrue(indexBytes < mapBytes);
+    }
+
+    private static HashMap<String, Integer> hashMap(List<Mrmart> rows) {
+        HashMap<String, Integer> map = new HashMap<String, Integer>();
+        for (int i = 0; i < rows.size(); i++) {
+            Mrmart row = rows.get(i);
+            String key = row.getGroupID() + "/" + row.getArticleID();
+            if (!map.containsKey(key)) map.put(key, i);
+        }
+        return map;
+    }
+
+    private static ArrayList<Mrmart> catalog(int rows) {
+        ArrayList<Mrmart> list = new ArrayList<Mrmart>(rows);
+        for (int i = 0; i < rows; i++) {
+            list.add(new Mrmart("G" + (i % 300), "A" + i, "Artikel " + i));
+        }
+        return list;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,118 @@
+package com.hartz.inventory;
+
+import com.hartz.inventory.model.Mrmart;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * checks the article search index and compares it with the scan ArrayAdapter's
+ * filter does on every keystroke
+ */
+public class CatalogSearchIndexTest {
+
+    private static final int ROWS = 50000;
+    private static final String[] WORDS = {"gula", "pasir", "baut", "mur", "besi", "plat", "cat",
+            "kabel", "pipa", "semen", "kayu", "lem", "paku", "engsel", "kunci", "oli", "karet",
+            "selang", "kran", "lampu"};
+
+    @Test
+    public void matchesEveryWordPrefixInCatalogOrder() {
+        List<Mrmart> rows = Arrays.asList(
+                new Mrmart("G1", "A100", "Gula Pasir"),
+                new Mrmart("G2", "A200", "Baut Besi 10mm"),
+                new Mrmart("G1", "A300", "Gula Merah"),
+                new Mrmart("G3", "B400", "Cat-Tembok Putih"));
+        CatalogSearchIndex<Mrmart> index = new CatalogSearchIndex<Mrmart>(rows, Mrmart.SEARCH_TEXT);
+
+        assertEquals(Arrays.asList(rows.get(0), rows.get(2)), index.search("GU", 10));
+        assertEquals(Arrays.asList(rows.get(2)), index.search("gula mer", 10));
+        assertEquals(Arrays.asList(rows.get(0)), index.search("pas g1", 10));
+        assertEquals(Arrays.asList(rows.get(1)), index.search("a2", 10));
+        assertEquals(Arrays.asList(rows.get(3)), index.search("tembok", 10));
+        assertEquals(Arrays.asList(rows.get(0)), index.search("gula", 1));
+        assertTrue(index.search("gula baut", 10).isEmpty());
+        assertTrue(index.search(" - ", 10).isEmpty());
+        assertTrue(index.search(null, 10).isEmpty());
+    }
+
+    @Test
+    public void indexIsFasterThanArrayAdapterFilter() {
+        ArrayList<Mrmart> rows = syntheticCatalog(ROWS);
+        long start = System.nanoTime();
+        CatalogSearchIndex<Mrmart> index = new CatalogSearchIndex<Mrmart>(rows, Mrmart.SEARCH_TEXT);
+        index.build();
+        long buildNanos = System.nanoTime() - start;
+
+        //what a user typing two articles produces
+        String[] queries = {"gu", "gul", "gula", "gula p", "gula pa", "ka", "kab", "kabe", "kabel"};
+        for (int i = 0; i < 20; i++) {
+            for (String query : queries) {
+                index.search(query, CatalogSearchAdapter.MAX_SUGGESTIONS);
+                arrayAdapterFilter(rows, query);
+            }
+        }
+
+        int rounds = 20;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (String query : queries) {
+                index.search(query, CatalogSearchAdapter.MAX_SUGGESTIONS);
+            }
+        }
+        long indexNanos = (System.nanoTime() - start) / (rounds * queries.length);
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (String query : queries) {
+                arrayAdapterFilter(rows, query);
+            }
+        }
+        long scanNanos = (System.nanoTime() - start) / (rounds * queries.length);
+
+        System.out.println("50k articles: index build " + buildNanos / 1000000 + " ms, per keystroke index "
+                + indexNanos / 1000 + " us, ArrayAdapter filter " + scanNanos / 1000 + " us");
+        assertFalse(index.search("gula", 1).isEmpty());
+        assertTrue(indexNanos < scanNanos);
+    }
+
+    /**
+     * same matching as ArrayAdapter.ArrayFilter: the whole text or one of its words
+     * starts with the lowercased query
+     */
+    private static List<Mrmart> arrayAdapterFilter(List<Mrmart> values, CharSequence prefix) {
+        String prefixString = prefix.toString().toLowerCase();
+        ArrayList<Mrmart> newValues = new ArrayList<Mrmart>();
+        for (Mrmart value : values) {
+            String valueText = value.toString().toLowerCase();
+            if (valueText.startsWith(prefixString)) {
+                newValues.add(value);
+            } else {
+                for (String word : valueText.split(" ")) {
+                    if (word.startsWith(prefixString)) {
+                        newValues.add(value);
+                        break;
+                    }
+                }
+            }
+        }
+        return newValues;
+    }
+
+    private static ArrayList<Mrmart> syntheticCatalog(int rows) {
+        Random random = new Random(7);
+        ArrayList<Mrmart> list = new ArrayList<Mrmart>(rows);
+        for (int i = 0; i < rows; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " " + random.nextInt(1000);
+            list.add(new Mrmart("G" + (i % 300), "A" + i, name));
+        }
+        return list;
+    }
+}
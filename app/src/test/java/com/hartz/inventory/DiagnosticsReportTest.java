@@ -0,0 +1,67 @@
+package com.hartz.inventory;
+
+import com.hartz.inventory.model.Customer;
+import com.hartz.inventory.model.Mfgart;
+import com.hartz.inventory.model.Mrmart;
+import com.hartz.inventory.model.Satuan;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * checks the jank counting and what the exported snapshot holds
+ */
+public class DiagnosticsReportTest {
+
+    @Test
+    public void lateFramesCountAsJank() {
+        PerfStats stats = new PerfStats();
+        stats.recordFrame(PerfStats.FRAME_NANOS);
+        //vsync jitter is no jank
+        stats.recordFrame(PerfStats.FRAME_NANOS * 5 / 4);
+        assertEquals(0, stats.getJankFrames());
+
+        //a 100 ms main thread stall
+        stats.recordFrame(6 * PerfStats.FRAME_NANOS);
+        stats.recordFrame(2 * PerfStats.FRAME_NANOS);
+        assertEquals(2, stats.getJankFrames());
+        assertEquals(6, stats.getDroppedFrames());
+        assertEquals(4, stats.getFrames().getCount());
+    }
+
+    @Test
+    public void reportHoldsEverySection() {
+        ArrayList<Mrmart> mrmarts = new ArrayList<Mrmart>();
+        mrmarts.add(new Mrmart("G1", "A1", "Gula Pasir"));
+        mrmarts.add(new Mrmart("G1", "A2", "Gula Merah"));
+        ArrayList<Satuan> units = new ArrayList<Satuan>();
+        units.add(new Satuan("KG", "Kilogram"));
+        CatalogCache.Snapshot catalogs = new CatalogCache.Snapshot(mrmarts, new ArrayList<Mfgart>(), units,
+                new ArrayList<Customer>());
+
+        PerfStats stats = new PerfStats();
+        stats.recordParse(1500);
+        stats.recordBind(80);
+        stats.recordSync(930);
+        HttpTransport transport = HttpTransport.getInstance();
+        transport.getMetrics().route("GET /inventaris/public/api/mrmart").record(300, 3000, 400, 5000, 200);
+
+        String report = DiagnosticsReport.build(catalogs, stats, transport, Runtime.getRuntime(),
+                System.currentTimeMillis());
+
+        assertTrue(report.contains("mrmart 2, mfgart 0, satuan 1, customer 0"));
+        assertTrue(report.contains("last sync 930 ms"));
+        assertTrue(report.contains("page parse us n=1 mean=1500"));
+        assertTrue(report.contains("row bind us   n=1 mean=80"));
+        assertTrue(report.contains("jank 0, dropped 0"));
+        assertTrue(report.contains("heap\n  used "));
+        assertTrue(report.contains("GET /inventaris/public/api/mrmart\n  requests"));
+
+        String empty = DiagnosticsReport.build(null, new PerfStats(), transport, Runtime.getRuntime(), 0);
+        assertTrue(empty.contains("not loaded"));
+        assertTrue(empty.contains("no sync since the app started"));
+    }
+}
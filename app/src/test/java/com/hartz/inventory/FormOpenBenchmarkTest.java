@@ -0,0 +1,113 @@
+package com.hartz.inventory;
+
+import com.hartz.inventory.model.Customer;
+import com.hartz.inventory.model.Mfgart;
+import com.hartz.inventory.model.Mrmart;
+import com.hartz.inventory.model.Satuan;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * builds the lines of a 300 line document being edited against growing satuan catalogs,
+ * once with the scan ArrayAdapter.getPosition does per line and once with the snapshot
+ */
+public class FormOpenBenchmarkTest {
+
+    private static final int LINES = 300;
+    private static final int[] CATALOG_SIZES = {10, 100, 1000, 10000};
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void linesSelectTheUnitTheyWereSavedWith() {
+        List<Satuan> satuanList = satuanCatalog(5);
+        CatalogCache.Snapshot catalogs = snapshot(satuanList);
+        ArrayList<Mrmart> items = new ArrayList<Mrmart>();
+        items.add(new Mrmart("G1", "A1", "Sendal", 3, "S3", "hitam"));
+        items.add(new Mrmart("G1", "A2", "Sepatu", 1, "gone", ""));
+
+        ArrayList<LineItem<Mrmart>> lines = LineItem.fromMrmart(items, catalogs);
+        assertEquals(3, lines.get(0).getSatuanPosition());
+        assertEquals("3", lines.get(0).getQuantity());
+        assertEquals("hitam", lines.get(0).getNote());
+        assertSame(items.get(0), lines.get(0).getArticle());
+        //an unit missing from the catalog selects the first one, like before
+        assertEquals(0, lines.get(1).getSatuanPosition());
+        assertEquals(-1, catalogs.indexOfSatuan(null));
+    }
+
+    @Test
+    public void openTimeStaysFlatAsTheCatalogGrows() {
+        long scanNanos = 0;
+        long indexNanos = 0;
+        for (int size : CATALOG_SIZES) {
+            List<Satuan> satuanList = satuanCatalog(size);
+            CatalogCache.Snapshot catalogs = snapshot(satuanList);
+            ArrayList<Mrmart> items = document(size);
+            for (int i = 0; i < 3; i++) {
+                scanLines(items, satuanList);
+                LineItem.fromMrmart(items, catalogs);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                scanLines(items, satuanList);
+            }
+            scanNanos = (System.nanoTime() - start) / ROUNDS;
+
+            start = System.nanoTime();
+            ArrayList<LineItem<Mrmart>> lines = null;
+            for (int i = 0; i < ROUNDS; i++) {
+                lines = LineItem.fromMrmart(items, catalogs);
+            }
+            indexNanos = (System.nanoTime() - start) / ROUNDS;
+
+            int[] scanned = scanLines(items, satuanList);
+            for (int i = 0; i < LINES; i++) {
+                assertEquals(scanned[i], lines.get(i).getSatuanPosition());
+            }
+            System.out.println(LINES + " lines, " + size + " units: scan " + scanNanos / 1000 + " us, index "
+                    + indexNanos / 1000 + " us");
+        }
+        assertTrue(indexNanos < scanNanos);
+    }
+
+    /**
+     * the satuan positions as the form found them before, one adapter scan per line
+     */
+    private static int[] scanLines(List<Mrmart> items, List<Satuan> satuanList) {
+        int[] positions = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            positions[i] = Math.max(satuanList.indexOf(new Satuan(items.get(i).getSatuan())), 0);
+        }
+        return positions;
+    }
+
+    private static CatalogCache.Snapshot snapshot(List<Satuan> satuanList) {
+        return new CatalogCache.Snapshot(new ArrayList<Mrmart>(), new ArrayList<Mfgart>(), satuanList,
+                new ArrayList<Customer>());
+    }
+
+    private static List<Satuan> satuanCatalog(int size) {
+        List<Satuan> list = new ArrayList<Satuan>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new Satuan("S" + i, "Satuan " + i));
+        }
+        return list;
+    }
+
+    private static ArrayList<Mrmart> document(int catalogSize) {
+        Random random = new Random(7);
+        ArrayList<Mrmart> items = new ArrayList<Mrmart>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            items.add(new Mrmart("G" + i % 7, "A" + i, "Artikel " + i, i + 1,
+                    "S" + random.nextInt(catalogSize), "catatan " + i));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,292 @@
+package com.hartz.inventory;
+
+import com.hartz.inventory.model.PPRE;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * pages a fake history of 1000 documents, the executors only run what the test lets through
+ */
+public class HistoryPagerTest {
+
+    private static final int HISTORY_SIZE = 1000;
+
+    private final Queue<Runnable> pending = new ArrayDeque<Runnable>();
+    private final Executor queued = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            pending.add(command);
+        }
+    };
+    private final List<String> cursors = new ArrayList<String>();
+    private int pagesLoaded;
+    private int failures;
+    private boolean failedShowingItems;
+    private boolean offline;
+    //first page as the cache has it, null for none
+    private HistoryPager.Page<Integer> cached;
+    //first document of the history on the server
+    private int historyStart;
+    private HistoryPager<Integer> pager;
+
+    @Before
+    public void setUp() {
+        HistoryPager.PageLoader<Integer> loader = new HistoryPager.PageLoader<Integer>() {
+            @Override
+            public HistoryPager.Page<Integer> load(String cursor, int limit) throws IOException {
+                cursors.add(cursor);
+                if (offline) throw new IOException("offline");
+                int start = cursor == null ? historyStart : Integer.parseInt(cursor);
+                int end = Math.min(HISTORY_SIZE, start + limit);
+                List<Integer> entries = new ArrayList<Integer>();
+                for (int i = start; i < end; i++) {
+                    entries.add(i);
+                }
+                String next = end < HISTORY_SIZE ? String.valueOf(end) : null;
+                if (cursor == null) {
+                    boolean unchanged = cached != null && cached.getEntries().equals(entries);
+                    cached = new HistoryPager.Page<Integer>(entries, next);
+                    return new HistoryPager.Page<Integer>(entries, next, unchanged);
+                }
+                return new HistoryPager.Page<Integer>(entries, next);
+            }
+
+            @Override
+            public HistoryPager.Page<Integer> loadCached() {
+                return cached;
+            }
+        };
+        pager = new HistoryPager<Integer>(loader, queued, queued, new HistoryPager.Listener() {
+            @Override
+            public void onPageLoaded(boolean firstPage) {
+                pagesLoaded++;
+            }
+
+            @Override
+            public void onPageFailed(IOException e, boolean firstPage, boolean showingItems) {
+                failures++;
+                failedShowingItems = showingItems;
+            }
+        });
+    }
+
+    @Test
+    public void firstPageOnlyUntilTheEndIsNear() {
+        pager.reset();
+        runPending();
+        assertEquals(HistoryPager.PAGE_SIZE, pager.getItems().size());
+        assertTrue(pager.hasMore());
+
+        //far from the end, nothing is asked for
+        pager.onScroll(5, pager.getItems().size());
+        assertTrue(pending.isEmpty());
+
+        pager.onScroll(HistoryPager.PAGE_SIZE - HistoryPager.PREFETCH_DISTANCE, pager.getItems().size());
+        //scroll events while the page is on its way do not ask again
+        pager.onScroll(HistoryPager.PAGE_SIZE, pager.getItems().size());
+        runPending();
+        assertEquals(2, cursors.size());
+        assertEquals(String.valueOf(HistoryPager.PAGE_SIZE), cursors.get(1));
+        assertEquals(2 * HistoryPager.PAGE_SIZE, pager.getItems().size());
+        assertEquals(Integer.valueOf(HistoryPager.PAGE_SIZE), pager.getItems().get(HistoryPager.PAGE_SIZE));
+    }
+
+    @Test
+    public void stopsAtTheEndOfTheHistory() {
+        pager.reset();
+        runPending();
+        while (pager.hasMore()) {
+            pager.onScroll(pager.getItems().size(), pager.getItems().size());
+            runPending();
+        }
+        assertEquals(HISTORY_SIZE, pager.getItems().size());
+        assertEquals((HISTORY_SIZE + HistoryPager.PAGE_SIZE - 1) / HistoryPager.PAGE_SIZE, cursors.size());
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            assertEquals(Integer.valueOf(i), pager.getItems().get(i));
+        }
+
+        pager.onScroll(HISTORY_SIZE, HISTORY_SIZE);
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    public void resetReplacesTheListAndDropsPagesOnTheirWay() {
+        pager.reset();
+        runPending();
+        pager.loadMore();
+        //the next page is loaded but not delivered yet when the list is reloaded
+        pending.poll().run();
+        pager.reset();
+        runPending();
+
+        assertEquals(HistoryPager.PAGE_SIZE, pager.getItems().size());
+        assertEquals(Integer.valueOf(0), pager.getItems().get(0));
+        //the first page came back the same, so only the first load touched the list
+        assertEquals(1, pagesLoaded);
+    }
+
+    @Test
+    public void cancelDropsPagesOnTheirWayAndStopsLoading() {
+        pager.reset();
+        runPending();
+        pager.loadMore();
+        //loaded but not delivered when the view goes away
+        pending.poll().run();
+        pager.cancel();
+        runPending();
+        assertEquals(HistoryPager.PAGE_SIZE, pager.getItems().size());
+        assertEquals(1, pagesLoaded);
+
+        offline = true;
+        pager.reset();
+        pager.loadMore();
+        assertTrue(pending.isEmpty());
+        assertEquals(0, failures);
+        assertFalse(pager.isLoading());
+    }
+
+    @Test
+    public void failedPageIsAskedForAgainOnTheNextScroll() {
+        pager.reset();
+        runPending();
+        offline = true;
+        pager.loadMore();
+        runPending();
+        assertEquals(1, failures);
+        assertFalse(pager.isLoading());
+
+        offline = false;
+        pager.onScroll(HistoryPager.PAGE_SIZE, HistoryPager.PAGE_SIZE);
+        runPending();
+        assertEquals(2 * HistoryPager.PAGE_SIZE, pager.getItems().size());
+        assertEquals(cursors.get(1), cursors.get(2));
+    }
+
+    @Test
+    public void savedPageIsShownBeforeTheServerAnswers() {
+        pager.reset();
+        runPending();
+        assertEquals(1, pagesLoaded);
+
+        //a new list, like a fragment that was created again
+        setUp();
+        pagesLoaded = 0;
+        pager.reset();
+        //the background task hands over the saved page before it calls the server
+        pending.poll().run();
+        pending.poll().run();
+        assertEquals(HistoryPager.PAGE_SIZE, pager.getItems().size());
+        assertEquals(1, pagesLoaded);
+        assertTrue(pager.isLoading());
+
+        //the server has the same page, the list is left alone
+        runPending();
+        assertEquals(1, pagesLoaded);
+        assertFalse(pager.isLoading());
+        assertEquals(2, cursors.size());
+    }
+
+    @Test
+    public void failedFirstPageKeepsTheSavedPage() {
+        pager.reset();
+        runPending();
+
+        //created again without a network, the saved page stays on screen
+        setUp();
+        offline = true;
+        pager.reset();
+        runPending();
+        assertEquals(1, failures);
+        assertTrue(failedShowingItems);
+        assertEquals(HistoryPager.PAGE_SIZE, pager.getItems().size());
+
+        //nothing saved, nothing to show
+        cached = null;
+        setUp();
+        failures = 0;
+        pager.reset();
+        runPending();
+        assertEquals(1, failures);
+        assertFalse(failedShowingItems);
+        assertTrue(pager.getItems().isEmpty());
+    }
+
+    @Test
+    public void changedFirstPageReplacesTheList() {
+        pager.reset();
+        runPending();
+        pager.loadMore();
+        runPending();
+        assertEquals(2 * HistoryPager.PAGE_SIZE, pager.getItems().size());
+
+        //an unchanged first page keeps the pages after it
+        pager.reset();
+        runPending();
+        assertEquals(2 * HistoryPager.PAGE_SIZE, pager.getItems().size());
+        assertEquals(2, pagesLoaded);
+
+        historyStart = 3;
+        pager.reset();
+        runPending();
+        assertEquals(HistoryPager.PAGE_SIZE, pager.getItems().size());
+        assertEquals(Integer.valueOf(3), pager.getItems().get(0));
+        assertEquals(3, pagesLoaded);
+    }
+
+    @Test
+    public void firstPageParsesInConstantTime() throws Exception {
+        JSONObject history = historyResponse(5000);
+        JSONObject page = historyResponse(HistoryPager.PAGE_SIZE);
+        //warm up the parser first
+        for (int i = 0; i < 3; i++) {
+            PPRE.getEntriesFromJSON(history);
+        }
+
+        long start = System.nanoTime();
+        String historyBody = history.toString();
+        assertEquals(5000, PPRE.getFromJSON(historyBody).size());
+        long full = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        String pageBody = page.toString();
+        assertEquals(HistoryPager.PAGE_SIZE, PPRE.getFromJSON(pageBody).size());
+        long first = System.nanoTime() - start;
+
+        System.out.println("5000 documents: whole history " + full / 1000 + " us, first page "
+                + first / 1000 + " us");
+        assertTrue(first < full);
+    }
+
+    private static JSONObject historyResponse(int documents) throws Exception {
+        JSONArray entries = new JSONArray();
+        for (int i = 0; i < documents; i++) {
+            JSONArray lines = new JSONArray();
+            for (int j = 0; j < 5; j++) {
+                lines.put(new JSONObject().put("PPRED_GROUP", "G" + j).put("PPRED_ART", "A" + i + "-" + j)
+                        .put("PPRED_ARTICLENAME", "Artikel " + j).put("PPRED_QTY", j + 1)
+                        .put("PPRED_SATUAN", "PCS").put("PPRED_NOTE", ""));
+            }
+            entries.put(new JSONObject().put("PPRE_DateTime", "2017-01-05 10:00:" + i).put("ppred", lines));
+        }
+        return new JSONObject().put("error", false).put("entries", entries);
+    }
+
+    private void runPending() {
+        Runnable next;
+        while ((next = pending.poll()) != null) {
+            next.run();
+        }
+    }
+}
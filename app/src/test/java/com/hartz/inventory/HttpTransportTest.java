@@ -0,0 +1,180 @@
+package com.hartz.inventory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * checks that back to back requests share one pooled socket
+ */
+public class HttpTransportTest {
+
+    private MockHttpServer server;
+    private HttpTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockHttpServer(new MockHttpServer.Dispatcher() {
+            @Override
+            public MockHttpServer.MockResponse dispatch(MockHttpServer.RecordedRequest request) {
+                if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+                    return new MockHttpServer.MockResponse().setStatus(304).addHeader("ETag", "\"v1\"");
+                }
+                if (request.getPath().endsWith("/missing")) {
+                    return new MockHttpServer.MockResponse().setStatus(404).setBody("{\"error\":true}");
+                }
+                return new MockHttpServer.MockResponse().addHeader("ETag", "\"v1\"")
+                        .setBody("{\"error\":false,\"path\":\"" + request.getPath() + "\"}");
+            }
+        });
+        transport = HttpTransport.getInstance();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void masterDataDownloadReusesOneSocket() throws Exception {
+        String[] links = {HttpHandler.LINK_MRMART_GET, HttpHandler.LINK_MFGART_GET,
+                HttpHandler.LINK_SATUAN_GET, HttpHandler.LINK_CUSTOMER_GET};
+        for (String link : links) {
+            HttpTransport.Response response = transport.execute("GET", server.url(link), null, null);
+            assertEquals(200, response.getStatus());
+            assertTrue(response.getBody().contains(link));
+        }
+
+        assertEquals(4, server.getRequestCount());
+        assertEquals(1, server.getAcceptedSockets());
+    }
+
+    @Test
+    public void postAndErrorResponsesKeepTheSocket() throws Exception {
+        transport.execute("POST", server.url(HttpHandler.LINK_LOGIN), null, "username=a".getBytes("UTF-8"));
+        HttpTransport.Response missing = transport.execute("GET", server.url("/missing"), null, null);
+        transport.execute("GET", server.url(HttpHandler.LINK_SATUAN_GET), null, null);
+
+        assertFalse(missing.isSuccessful());
+        assertEquals(3, server.getRequestCount());
+        assertEquals(1, server.getAcceptedSockets());
+    }
+
+    @Test
+    public void streamedBodyIsDrainedAndKeepsTheSocket() throws Exception {
+        String route = HttpHandler.routeOf("GET", HttpHandler.LINK_MRMART_GET);
+        //reads only the first byte, the rest has to be drained before the socket is reused
+        int first = transport.execute(route, "GET", server.url(HttpHandler.LINK_MRMART_GET), null, null,
+                new HttpTransport.BodyHandler<Integer>() {
+                    @Override
+                    public Integer handle(HttpTransport.Response response, InputStream body) throws IOException {
+                        assertEquals(200, response.getStatus());
+                        assertEquals("\"v1\"", response.getHeader("ETag"));
+                        return body.read();
+                    }
+                });
+        assertEquals('{', first);
+        transport.execute("GET", server.url(HttpHandler.LINK_SATUAN_GET), null, null);
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, server.getAcceptedSockets());
+    }
+
+    @Test
+    public void conditionalGetIsAnsweredWithNotModified() throws Exception {
+        HttpTransport.Response first = transport.execute("GET", server.url(HttpHandler.LINK_CUSTOMER_GET), null, null);
+        assertEquals("\"v1\"", first.getHeader("etag"));
+
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("If-None-Match", first.getHeader("ETag"));
+        HttpTransport.Response second = transport.execute("GET", server.url(HttpHandler.LINK_CUSTOMER_GET), headers, null);
+
+        assertTrue(second.isNotModified());
+        assertEquals("", second.getBody());
+        assertEquals(1, server.getAcceptedSockets());
+    }
+
+    @Test
+    public void gzipResponsesAreDecodedAndCounted() throws Exception {
+        StringBuilder json = new StringBuilder("{\"error\":false,\"customers\":[");
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"MCUSTOMER_CUSTID\":\"C").append(i).append("\",\"MCUSTOMER_CUSTNAME\":\"Toko ")
+                    .append(i).append("\"}");
+        }
+        final String body = json.append("]}").toString();
+        final byte[] compressed = HttpTransport.gzip(body.getBytes("UTF-8"));
+        server.setDispatcher(new MockHttpServer.Dispatcher() {
+            @Override
+            public MockHttpServer.MockResponse dispatch(MockHttpServer.RecordedRequest request) {
+                assertTrue(request.getHeader("Accept-Encoding").contains("gzip"));
+                return new MockHttpServer.MockResponse().addHeader("Content-Encoding", "gzip").setBody(compressed);
+            }
+        });
+
+        transport.getTraffic().reset();
+        HttpTransport.Response response = transport.execute("GET customers", "GET",
+                server.url(HttpHandler.LINK_CUSTOMER_GET), null, null);
+
+        assertEquals(body, response.getBody());
+        TrafficCounter.Counters counters = transport.getTraffic().get("GET customers");
+        assertEquals(1, counters.getRequests());
+        assertEquals(compressed.length, counters.getResponseWireBytes());
+        assertEquals(body.length(), counters.getResponseBytes());
+        assertTrue(counters.getResponseWireBytes() * 5 < counters.getResponseBytes());
+    }
+
+    @Test
+    public void largeRequestBodiesAreGzippedWhenEnabled() throws Exception {
+        final byte[][] received = new byte[1][];
+        final String[] encoding = new String[1];
+        server.setDispatcher(new MockHttpServer.Dispatcher() {
+            @Override
+            public MockHttpServer.MockResponse dispatch(MockHttpServer.RecordedRequest request) {
+                received[0] = request.getBody();
+                encoding[0] = request.getHeader("Content-Encoding");
+                return new MockHttpServer.MockResponse().setBody("{\"error\":false}");
+            }
+        });
+        StringBuilder form = new StringBuilder("json=");
+        for (int i = 0; i < 200; i++) form.append("%7B%22PPRE_ART%22%3A%22").append(i).append("%22%7D");
+        byte[] body = form.toString().getBytes("UTF-8");
+
+        transport.setCompressRequests(true);
+        try {
+            transport.execute("POST", server.url(HttpHandler.LINK_PPRE_CREATE), null, body);
+        } finally {
+            transport.setCompressRequests(false);
+        }
+
+        assertEquals("gzip", encoding[0]);
+        assertTrue(received[0].length < body.length);
+        byte[] decoded = new byte[body.length];
+        InputStream in = HttpTransport.decode(new ByteArrayInputStream(received[0]), "gzip");
+        int read = 0;
+        int n;
+        while (read < decoded.length && (n = in.read(decoded, read, decoded.length - read)) > 0) {
+            read += n;
+        }
+        assertEquals(form.toString(), new String(decoded, 0, read, "UTF-8"));
+    }
+
+    @Test(expected = IOException.class)
+    public void droppedConnectionThrows() throws Exception {
+        server.setDispatcher(new MockHttpServer.Dispatcher() {
+            @Override
+            public MockHttpServer.MockResponse dispatch(MockHttpServer.RecordedRequest request) {
+                return new MockHttpServer.MockResponse().dropConnection();
+            }
+        });
+        transport.execute("GET", server.url(HttpHandler.LINK_MRMART_GET), null, null);
+    }
+}
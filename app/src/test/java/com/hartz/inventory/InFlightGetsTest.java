@@ -0,0 +1,171 @@
+package com.hartz.inventory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * history GETs of several screens at once against a server that answers slowly
+ */
+public class InFlightGetsTest {
+
+    private static final int CALLERS = 8;
+
+    private MockHttpServer server;
+    private HttpTransport transport;
+    private ExecutorService callers;
+    private final CountDownLatch answer = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockHttpServer(new MockHttpServer.Dispatcher() {
+            @Override
+            public MockHttpServer.MockResponse dispatch(MockHttpServer.RecordedRequest request)
+                    throws InterruptedException {
+                answer.await(5, TimeUnit.SECONDS);
+                if (request.getPath().endsWith("/missing")) {
+                    return new MockHttpServer.MockResponse().setStatus(404);
+                }
+                if (request.getPath().endsWith("/catalog")) {
+                    StringBuilder body = new StringBuilder("{\"entries\":[");
+                    while (body.length() <= InFlightGets.MAX_KEPT_CHARS) {
+                        body.append("{\"id\":\"A1001\"},");
+                    }
+                    return new MockHttpServer.MockResponse().setBody(body.append("{}]}").toString());
+                }
+                return new MockHttpServer.MockResponse().setBody("{\"entries\":[]}");
+            }
+        });
+        transport = HttpTransport.getInstance();
+        callers = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        callers.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void concurrentCallersShareOneRequest() throws Exception {
+        InFlightGets gets = new InFlightGets(0);
+        List<Future<HttpTransport.Response>> results = startCallers(gets, HttpHandler.LINK_PPRE_BY_USER + "7");
+        waitForCallers(gets);
+        answer.countDown();
+
+        HttpTransport.Response first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<HttpTransport.Response> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, gets.inFlightCount());
+
+        //nothing kept without a ttl, the next caller asks again
+        get(gets, HttpHandler.LINK_PPRE_BY_USER + "7");
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void finishedResponseIsKeptUntilAWrite() throws Exception {
+        answer.countDown();
+        InFlightGets gets = new InFlightGets(60000);
+        HttpTransport.Response first = get(gets, HttpHandler.LINK_SSJDE_BY_USER + "7");
+        assertSame(first, get(gets, HttpHandler.LINK_SSJDE_BY_USER + "7"));
+        //another user is another request
+        get(gets, HttpHandler.LINK_SSJDE_BY_USER + "8");
+        assertEquals(2, server.getRequestCount());
+
+        gets.invalidate();
+        assertNotSame(first, get(gets, HttpHandler.LINK_SSJDE_BY_USER + "7"));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void expiredResponsesGoOnTheNextCallAndBigOnesAreNotKept() throws Exception {
+        answer.countDown();
+        InFlightGets gets = new InFlightGets(50);
+        get(gets, HttpHandler.LINK_SSJDE_BY_USER + "7");
+        assertEquals(1, gets.keptCount());
+        Thread.sleep(100);
+        //another url is enough to drop the expired one
+        get(gets, HttpHandler.LINK_SSJDE_BY_USER + "8");
+        assertEquals(1, gets.keptCount());
+
+        gets = new InFlightGets(60000);
+        get(gets, "/catalog");
+        get(gets, "/catalog");
+        assertEquals(0, gets.keptCount());
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void errorsAreSharedButNotKept() throws Exception {
+        answer.countDown();
+        InFlightGets gets = new InFlightGets(60000);
+        assertEquals(404, get(gets, "/missing").getStatus());
+        assertEquals(404, get(gets, "/missing").getStatus());
+        assertEquals(2, server.getRequestCount());
+
+        try {
+            gets.execute("broken", new Callable<HttpTransport.Response>() {
+                @Override
+                public HttpTransport.Response call() throws IOException {
+                    throw new IOException("offline");
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("offline", e.getMessage());
+        }
+        assertEquals(0, gets.inFlightCount());
+    }
+
+    private List<Future<HttpTransport.Response>> startCallers(final InFlightGets gets, final String path) {
+        List<Future<HttpTransport.Response>> results = new ArrayList<Future<HttpTransport.Response>>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(new Callable<HttpTransport.Response>() {
+                @Override
+                public HttpTransport.Response call() throws Exception {
+                    return get(gets, path);
+                }
+            }));
+        }
+        return results;
+    }
+
+    /**
+     * the first request reaching the server means the callers are started, give the rest a
+     * moment to line up behind it
+     */
+    private void waitForCallers(InFlightGets gets) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getRequestCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(100);
+        assertEquals(1, gets.inFlightCount());
+    }
+
+    private HttpTransport.Response get(InFlightGets gets, String path) throws IOException {
+        final URL url = server.url(path);
+        return gets.execute(url.toString(), new Callable<HttpTransport.Response>() {
+            @Override
+            public HttpTransport.Response call() throws IOException {
+                return transport.execute(HttpHandler.routeOf("GET", url.getPath()), "GET", url, null, null);
+            }
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package com.hartz.inventory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LineItemTest {
+
+    @Test
+    public void firstInvalidLineIsReportedAndAllAreFlagged() {
+        List<LineItem<String>> lines = new ArrayList<LineItem<String>>();
+        lines.add(new LineItem<String>("A1", "Sendal", "3", 0, ""));
+        lines.add(new LineItem<String>("A2", "Sepatu", "", 0, ""));
+        lines.add(new LineItem<String>());
+        assertEquals(1, LineItem.validate(lines));
+        assertFalse(lines.get(0).hasError());
+        assertTrue(lines.get(1).quantityError);
+        assertFalse(lines.get(1).articleError);
+        assertTrue(lines.get(2).articleError);
+        assertTrue(lines.get(2).quantityError);
+    }
+
+    @Test
+    public void fixedLinesAreValidAgain() {
+        List<LineItem<String>> lines = new ArrayList<LineItem<String>>();
+        lines.add(new LineItem<String>());
+        assertEquals(0, LineItem.validate(lines));
+        lines.get(0).article = "A1";
+        lines.get(0).quantity = "2";
+        assertEquals(-1, LineItem.validate(lines));
+        assertFalse(lines.get(0).hasError());
+    }
+}
@@ -0,0 +1,146 @@
+package com.hartz.inventory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * items are "key:content" strings, a row counts as up to date when it was inserted or
+ * changed by the diff, or when it still holds the same key and content
+ */
+public class ListDiffTest {
+
+    private static final ListDiff.ItemCallback<String> CALLBACK = new ListDiff.ItemCallback<String>() {
+        @Override
+        public boolean areItemsTheSame(String oldItem, String newItem) {
+            return key(oldItem).equals(key(newItem));
+        }
+
+        @Override
+        public boolean areContentsTheSame(String oldItem, String newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    @Test
+    public void nextPageIsOneInsertAtTheEnd() {
+        List<String> page = rows(0, 25);
+        List<String> twoPages = rows(0, 50);
+        List<String> calls = dispatch(ListDiff.calculate(page, twoPages, CALLBACK));
+        assertEquals(Collections.singletonList("insert 25 25"), calls);
+    }
+
+    @Test
+    public void deleteIsOneRemoveAndEditOneChange() {
+        List<String> before = rows(0, 100);
+        List<String> after = new ArrayList<String>(before);
+        after.remove(40);
+        after.set(70, "k71:edited");
+        List<String> calls = dispatch(ListDiff.calculate(before, after, CALLBACK));
+        //dispatched from the end, so the change is still at its old position
+        assertEquals(Arrays.asList("change 71 1", "remove 40 1"), calls);
+
+        assertTrue(ListDiff.calculate(before, new ArrayList<String>(before), CALLBACK).isEmpty());
+    }
+
+    @Test
+    public void randomEditsGiveTheNewList() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            List<String> before = rows(0, random.nextInt(60));
+            List<String> after = new ArrayList<String>();
+            int nextKey = 1000;
+            for (String row : before) {
+                int roll = random.nextInt(10);
+                if (roll == 0) continue;
+                if (roll == 1) after.add("k" + nextKey++ + ":new");
+                after.add(roll == 2 ? key(row) + ":edited" : row);
+            }
+            if (random.nextBoolean()) after.add(0, "k" + nextKey + ":top");
+            assertUpToDate(before, after);
+        }
+    }
+
+    @Test
+    public void listsTooFarApartAreOneReload() {
+        List<String> before = rows(0, ListDiff.MAX_EDITS);
+        List<String> after = rows(ListDiff.MAX_EDITS, 2 * ListDiff.MAX_EDITS);
+        assertEquals(Collections.singletonList("reload"), dispatch(ListDiff.calculate(before, after, CALLBACK)));
+    }
+
+    private static void assertUpToDate(List<String> before, final List<String> after) {
+        //null marks a row that is bound again
+        final List<String> shown = new ArrayList<String>(before);
+        ListDiff.calculate(before, after, CALLBACK).dispatchTo(new ListDiff.UpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                shown.addAll(position, Collections.<String>nCopies(count, null));
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                shown.subList(position, position + count).clear();
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                for (int i = position; i < position + count; i++) {
+                    shown.set(i, null);
+                }
+            }
+
+            @Override
+            public void onReload() {
+                fail("small edits should not reload");
+            }
+        });
+        assertEquals(after.size(), shown.size());
+        for (int i = 0; i < after.size(); i++) {
+            if (shown.get(i) != null) assertEquals(after.get(i), shown.get(i));
+        }
+    }
+
+    private static List<String> dispatch(ListDiff.Result result) {
+        final List<String> calls = new ArrayList<String>();
+        result.dispatchTo(new ListDiff.UpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                calls.add("insert " + position + " " + count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                calls.add("remove " + position + " " + count);
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                calls.add("change " + position + " " + count);
+            }
+
+            @Override
+            public void onReload() {
+                calls.add("reload");
+            }
+        });
+        return calls;
+    }
+
+    private static List<String> rows(int from, int to) {
+        List<String> rows = new ArrayList<String>();
+        for (int i = from; i < to; i++) {
+            rows.add("k" + i + ":row " + i);
+        }
+        return rows;
+    }
+
+    private static String key(String row) {
+        return row.substring(0, row.indexOf(':'));
+    }
+}
@@ -0,0 +1,259 @@
+package com.hartz.inventory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP/1.1 server for JVM tests. It keeps connections alive between requests
+ * and counts accepted sockets, so tests can check how the client uses the network.
+ */
+public class MockHttpServer {
+
+    /**
+     * produces the response for a single request
+     */
+    public interface Dispatcher {
+        MockResponse dispatch(RecordedRequest request) throws InterruptedException;
+    }
+
+    private final ServerSocket serverSocket;
+    private final AtomicInteger acceptedSockets = new AtomicInteger();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile Dispatcher dispatcher;
+    private volatile boolean running = true;
+
+    public MockHttpServer(Dispatcher dispatcher) throws IOException {
+        this.dispatcher = dispatcher;
+        serverSocket = new ServerSocket(0);
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "MockHttpServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * @return host and port, in the form HttpHandler expects in the ServerName preference
+     */
+    public String getServerName() {
+        return "127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    public URL url(String path) throws IOException {
+        return new URL("http://" + getServerName() + path);
+    }
+
+    public int getAcceptedSockets() {
+        return acceptedSockets.get();
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public void setDispatcher(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public void shutdown() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            acceptedSockets.incrementAndGet();
+            Thread connectionThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            });
+            connectionThread.setDaemon(true);
+            connectionThread.start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            RecordedRequest request;
+            while ((request = readRequest(in)) != null) {
+                requestCount.incrementAndGet();
+                MockResponse response = dispatcher.dispatch(request);
+                if (response.isDropConnection()) {
+                    break;
+                }
+                writeResponse(out, response);
+            }
+        } catch (IOException e) {
+            //client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //ignore
+            }
+        }
+    }
+
+    private RecordedRequest readRequest(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null || requestLine.length() == 0) return null;
+        String[] parts = requestLine.split(" ");
+        Map<String, String> headers = new LinkedHashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                    line.substring(colon + 1).trim());
+        }
+        byte[] body = new byte[0];
+        String contentLength = headers.get("content-length");
+        if (contentLength != null) {
+            body = new byte[Integer.parseInt(contentLength)];
+            int read = 0;
+            while (read < body.length) {
+                int n = in.read(body, read, body.length - read);
+                if (n < 0) throw new IOException("unexpected end of request body");
+                read += n;
+            }
+        }
+        return new RecordedRequest(parts[0], parts[1], headers, body);
+    }
+
+    private String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                String s = line.toString("ISO-8859-1");
+                return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+            }
+            line.write(c);
+        }
+        return line.size() == 0 ? null : line.toString("ISO-8859-1");
+    }
+
+    private void writeResponse(OutputStream out, MockResponse response) throws IOException {
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(response.getStatus()).append(" Mock\r\n");
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        head.append("Content-Length: ").append(response.getBody().length).append("\r\n\r\n");
+        out.write(head.toString().getBytes("ISO-8859-1"));
+        out.write(response.getBody());
+        out.flush();
+    }
+
+    public static class RecordedRequest {
+        private final String method;
+        private final String path;
+        private final Map<String, String> headers;
+        private final byte[] body;
+
+        RecordedRequest(String method, String path, Map<String, String> headers, byte[] body) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @param name header name, case insensitive
+         */
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.US));
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    public static class MockResponse {
+        private int status = 200;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private byte[] body = new byte[0];
+        private boolean dropConnection;
+
+        public MockResponse setStatus(int status) {
+            this.status = status;
+            return this;
+        }
+
+        public MockResponse addHeader(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        public MockResponse setBody(String body) {
+            try {
+                this.body = body.getBytes("UTF-8");
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return this;
+        }
+
+        public MockResponse setBody(byte[] body) {
+            this.body = body;
+            return this;
+        }
+
+        /**
+         * close the socket instead of answering, like a dead zone in the warehouse would
+         */
+        public MockResponse dropConnection() {
+            this.dropConnection = true;
+            return this;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public boolean isDropConnection() {
+            return dropConnection;
+        }
+    }
+}
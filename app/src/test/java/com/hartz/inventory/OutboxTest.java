@@ -0,0 +1,338 @@
+package com.hartz.inventory;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+/**
+ * runs the outbox against a mock server that drops connections, like a dead zone in
+ * the warehouse does
+ */
+public class OutboxTest {
+
+    private MockHttpServer server;
+    private ScheduledExecutorService executor;
+    private MemoryStore store;
+    private Outbox outbox;
+    //requests that got an answer, in the order the server saw them
+    private final List<MockHttpServer.RecordedRequest> accepted =
+            Collections.synchronizedList(new ArrayList<MockHttpServer.RecordedRequest>());
+    private volatile int dropsLeft;
+    private volatile int status = 200;
+    private volatile int batchStatus = 200;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockHttpServer(new MockHttpServer.Dispatcher() {
+            @Override
+            public MockHttpServer.MockResponse dispatch(MockHttpServer.RecordedRequest request) {
+                if (dropsLeft > 0) {
+                    dropsLeft--;
+                    return new MockHttpServer.MockResponse().dropConnection();
+                }
+                if (request.getPath().equals(HttpHandler.LINK_BATCH)) {
+                    return batch(request);
+                }
+                if (status == 200) accepted.add(request);
+                return new MockHttpServer.MockResponse().setStatus(status).setBody("{\"error\":false}");
+            }
+        });
+        store = new MemoryStore();
+        executor = Outbox.newExecutor();
+        outbox = new Outbox(store, new Outbox.Sender() {
+            @Override
+            public HttpTransport.Response send(OutboxEntry entry) throws IOException {
+                LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+                headers.put("Content-Type", "application/x-www-form-urlencoded");
+                headers.put(OutboxHttpSender.IDEMPOTENCY_HEADER, entry.getIdempotencyKey());
+                return HttpTransport.getInstance().execute("POST", server.url(entry.getLink()), headers,
+                        entry.getBody().getBytes("UTF-8"));
+            }
+
+            @Override
+            public HttpTransport.Response sendBatch(List<OutboxEntry> entries) throws IOException {
+                LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+                headers.put("Content-Type", "application/json");
+                return HttpTransport.getInstance().execute("POST", server.url(HttpHandler.LINK_BATCH),
+                        headers, OutboxBatch.encode(entries).getBytes("UTF-8"));
+            }
+        }, executor, 20, 200);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void retriesDroppedCallsInOrderWithTheSameKey() throws Exception {
+        dropsLeft = 3;
+        List<OutboxEntry> entries = new ArrayList<OutboxEntry>();
+        for (int i = 0; i < 3; i++) {
+            LinkedHashMap<String, Object> params = new LinkedHashMap<String, Object>();
+            params.put("json", "{\"n\":" + i + "}");
+            OutboxEntry entry = OutboxEntry.create("POST", HttpHandler.LINK_PPRE_CREATE,
+                    HttpHandler.encodeForm(params));
+            entries.add(entry);
+            outbox.enqueue(entry);
+        }
+
+        awaitEmpty();
+        assertEquals(3, accepted.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(entries.get(i).getIdempotencyKey(),
+                    accepted.get(i).getHeader(OutboxHttpSender.IDEMPOTENCY_HEADER));
+            assertTrue(new String(accepted.get(i).getBody(), "UTF-8").contains("%22n%22%3A" + i));
+        }
+        //every dropped connection was sent again, the calls queued behind it then share one batch
+        assertTrue(server.getRequestCount() >= 4);
+    }
+
+    @Test
+    public void rejectedCallIsKeptAsFailedAndQueueMovesOn() throws Exception {
+        status = 422;
+        OutboxEntry rejected = OutboxEntry.create("PATCH", HttpHandler.LINK_PPRE_EDIT + "/1", "json=%7B%7D");
+        outbox.enqueue(rejected);
+        awaitEmpty();
+        status = 200;
+        outbox.enqueue(OutboxEntry.create("DELETE", HttpHandler.LINK_DELETE_PPRE + "/2", "_method=delete"));
+        awaitEmpty();
+
+        List<OutboxEntry> left = store.list();
+        assertEquals(1, left.size());
+        assertTrue(left.get(0).isFailed());
+        assertEquals("HTTP 422", left.get(0).getLastError());
+        assertEquals(1, accepted.size());
+        assertEquals(HttpHandler.LINK_DELETE_PPRE + "/2", accepted.get(0).getPath());
+    }
+
+    @Test
+    public void rejectedCallsCanBeSentAgainOrDropped() throws Exception {
+        status = 422;
+        outbox.enqueue(OutboxEntry.create("PATCH", HttpHandler.LINK_PPRE_EDIT + "/1", "json=%7B%7D"));
+        awaitEmpty();
+        assertEquals(1, outbox.getFailed().size());
+
+        status = 200;
+        outbox.retryFailed();
+        awaitEmpty();
+        assertTrue(outbox.getFailed().isEmpty());
+        assertTrue(store.list().isEmpty());
+        assertEquals(1, accepted.size());
+
+        status = 422;
+        outbox.enqueue(OutboxEntry.create("PATCH", HttpHandler.LINK_PPRE_EDIT + "/2", "json=%7B%7D"));
+        awaitEmpty();
+        outbox.discardFailed();
+        awaitEmpty();
+        assertTrue(store.list().isEmpty());
+    }
+
+    @Test
+    public void expiredSessionHoldsTheQueueUntilLogin() throws Exception {
+        status = 401;
+        List<OutboxEntry> entries = enqueueDeletes(2);
+        awaitIdle();
+        //nothing failed, nothing sent after the first refusal
+        assertEquals(2, store.peek(10).size());
+        int refused = server.getRequestCount();
+
+        outbox.drain();
+        awaitIdle();
+        assertEquals(refused, server.getRequestCount());
+
+        //the lists keep hiding the rows until the deletes are through
+        assertEquals(2, outbox.getPendingDeletes().size());
+        assertTrue(outbox.getPendingDeletes().contains(entries.get(1).getLink()));
+
+        status = 200;
+        outbox.resumeAfterLogin();
+        awaitEmpty();
+        assertEquals(entries.size(), accepted.size());
+        assertTrue(outbox.getPendingDeletes().isEmpty());
+        assertTrue(outbox.getFailed().isEmpty());
+    }
+
+    @Test
+    public void tokenIsTheOneOfTheLastLogin() throws Exception {
+        LinkedHashMap<String, Object> delete = new LinkedHashMap<String, Object>();
+        delete.put("token", "old");
+        delete.put("_method", "delete");
+        assertEquals("token=new&_method=delete",
+                OutboxHttpSender.withToken(HttpHandler.encodeForm(delete), "new"));
+
+        LinkedHashMap<String, Object> create = new LinkedHashMap<String, Object>();
+        create.put("json", new JSONObject().put("token", "old").put("entries", new JSONArray()).toString());
+        String body = OutboxHttpSender.withToken(HttpHandler.encodeForm(create), "new");
+        String json = URLDecoder.decode(body.substring("json=".length()), "UTF-8");
+        assertEquals("new", new JSONObject(json).getString("token"));
+        assertEquals(0, new JSONObject(json).getJSONArray("entries").length());
+
+        //logged out, the body goes as it was queued
+        assertEquals("_method=delete", OutboxHttpSender.withToken("_method=delete", null));
+    }
+
+    @Test
+    public void queuedCallsGoOutInOneBatch() throws Exception {
+        //hold the queue back until all entries are in
+        dropsLeft = 1;
+        List<OutboxEntry> entries = enqueueDeletes(5);
+        awaitEmpty();
+
+        //one dropped call, then the batch with everything
+        assertEquals(2, server.getRequestCount());
+        assertEquals(entries.size(), accepted.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).getIdempotencyKey(),
+                    accepted.get(i).getHeader(OutboxHttpSender.IDEMPOTENCY_HEADER));
+        }
+    }
+
+    @Test
+    public void fallsBackToSingleCallsWithoutBatchRoute() throws Exception {
+        batchStatus = 404;
+        dropsLeft = 1;
+        List<OutboxEntry> entries = enqueueDeletes(4);
+        awaitEmpty();
+
+        assertEquals(entries.size(), accepted.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).getLink(), accepted.get(i).getPath());
+        }
+        //dropped call, one batch attempt, then the single calls
+        assertEquals(2 + entries.size(), server.getRequestCount());
+    }
+
+    @Test
+    public void backoffGrowsUpToTheLimit() {
+        Outbox slow = new Outbox(store, null, executor, 1000, 10000);
+        for (int attempt = 1; attempt <= 8; attempt++) {
+            long expected = Math.min(10000, 1000L << (attempt - 1));
+            long delay = slow.backoff(attempt);
+            assertTrue(delay >= expected / 2 && delay <= expected);
+        }
+        assertTrue(Outbox.isRetryable(503));
+        assertTrue(Outbox.isRetryable(429));
+        assertFalse(Outbox.isRetryable(422));
+    }
+
+    private void awaitEmpty() throws Exception {
+        //let the enqueue calls reach the store first
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!store.peek(1).isEmpty()) {
+            assertTrue("outbox did not drain", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * waits until the queue thread has nothing left to run right now
+     */
+    private void awaitIdle() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        }
+    }
+
+    private List<OutboxEntry> enqueueDeletes(int count) {
+        List<OutboxEntry> entries = new ArrayList<OutboxEntry>();
+        for (int i = 0; i < count; i++) {
+            OutboxEntry entry = OutboxEntry.create("DELETE", HttpHandler.LINK_DELETE_SSJDE + "/" + i,
+                    "_method=delete");
+            entries.add(entry);
+            outbox.enqueue(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * answers the batch route like the server would, every operation as its own request
+     */
+    private MockHttpServer.MockResponse batch(MockHttpServer.RecordedRequest request) {
+        if (batchStatus != 200) return new MockHttpServer.MockResponse().setStatus(batchStatus);
+        try {
+            JSONArray operations = new JSONObject(new String(request.getBody(), "UTF-8"))
+                    .getJSONArray("operations");
+            JSONArray results = new JSONArray();
+            for (int i = 0; i < operations.length(); i++) {
+                JSONObject operation = operations.getJSONObject(i);
+                LinkedHashMap<String, String> headers = new LinkedHashMap<String, String>();
+                headers.put(OutboxHttpSender.IDEMPOTENCY_HEADER.toLowerCase(Locale.US), operation.getString("key"));
+                accepted.add(new MockHttpServer.RecordedRequest(operation.getString("method"),
+                        operation.getString("path"), headers, operation.getString("form").getBytes("UTF-8")));
+                results.put(new JSONObject().put("key", operation.getString("key")).put("status", status));
+            }
+            return new MockHttpServer.MockResponse().setBody(
+                    new JSONObject().put("error", false).put("results", results).toString());
+        } catch (JSONException | IOException e) {
+            return new MockHttpServer.MockResponse().setStatus(400);
+        }
+    }
+
+    /**
+     * keeps the queue in memory, the app uses the outbox table
+     */
+    private static class MemoryStore implements Outbox.Store {
+        private final List<OutboxEntry> entries = new ArrayList<OutboxEntry>();
+        private long nextId = 1;
+
+        @Override
+        public synchronized void add(OutboxEntry entry) {
+            entry.setId(nextId++);
+            entries.add(entry);
+        }
+
+        @Override
+        public synchronized List<OutboxEntry> peek(int limit) {
+            List<OutboxEntry> pending = new ArrayList<OutboxEntry>();
+            for (OutboxEntry entry : entries) {
+                if (pending.size() == limit) break;
+                if (!entry.isFailed()) pending.add(entry);
+            }
+            return pending;
+        }
+
+        @Override
+        public synchronized void update(OutboxEntry entry) {
+        }
+
+        @Override
+        public synchronized void remove(long id) {
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).getId() == id) {
+                    entries.remove(i);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public synchronized List<OutboxEntry> list() {
+            return new ArrayList<OutboxEntry>(entries);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.hartz.inventory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * fail-fast behaviour and a timing benchmark of the parallel master data download
+ */
+public class ParallelCallsTest {
+
+    private static final long DELAY_MILLIS = 200;
+
+    private MockHttpServer server;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockHttpServer(new MockHttpServer.Dispatcher() {
+            @Override
+            public MockHttpServer.MockResponse dispatch(MockHttpServer.RecordedRequest request)
+                    throws InterruptedException {
+                Thread.sleep(DELAY_MILLIS);
+                return new MockHttpServer.MockResponse().setBody(request.getPath());
+            }
+        });
+        executor = ParallelCalls.newBoundedExecutor(Catalog.values().length, "test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void parallelDownloadTakesAboutTheSlowestRequest() throws Exception {
+        List<Callable<String>> calls = catalogCalls();
+
+        long start = System.nanoTime();
+        for (Callable<String> call : calls) {
+            call.call();
+        }
+        long sequentialMillis = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        List<String> results = ParallelCalls.invokeAll(executor, calls);
+        long parallelMillis = (System.nanoTime() - start) / 1000000;
+
+        System.out.println("master data download: sequential " + sequentialMillis
+                + " ms, parallel " + parallelMillis + " ms");
+        assertEquals(Catalog.values().length, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(Catalog.values()[i].getLink(), results.get(i));
+        }
+        assertTrue(sequentialMillis >= DELAY_MILLIS * Catalog.values().length);
+        assertTrue(parallelMillis < sequentialMillis / 2);
+    }
+
+    @Test
+    public void firstFailureCancelsTheOtherCalls() throws Exception {
+        final AtomicBoolean slowCallInterrupted = new AtomicBoolean();
+        List<Callable<String>> calls = new ArrayList<Callable<String>>();
+        calls.add(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    slowCallInterrupted.set(true);
+                    throw e;
+                }
+                return "slow";
+            }
+        });
+        calls.add(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IOException("connection reset");
+            }
+        });
+
+        long start = System.nanoTime();
+        try {
+            ParallelCalls.invokeAll(executor, calls);
+            fail("expected the failure to be rethrown");
+        } catch (IOException e) {
+            assertEquals("connection reset", e.getMessage());
+        }
+        assertTrue((System.nanoTime() - start) / 1000000 < 5000);
+        Thread.sleep(100);
+        assertTrue(slowCallInterrupted.get());
+    }
+
+    private List<Callable<String>> catalogCalls() {
+        final HttpTransport transport = HttpTransport.getInstance();
+        List<Callable<String>> calls = new ArrayList<Callable<String>>();
+        for (final Catalog catalog : Catalog.values()) {
+            calls.add(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return transport.execute("GET", server.url(catalog.getLink()), null, null).getBody();
+                }
+            });
+        }
+        return calls;
+    }
+}
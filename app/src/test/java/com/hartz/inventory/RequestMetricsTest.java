@@ -0,0 +1,147 @@
+package com.hartz.inventory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * checks the histograms, that recording allocates nothing, and what the transport records
+ */
+public class RequestMetricsTest {
+
+    private MockHttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockHttpServer(new MockHttpServer.Dispatcher() {
+            @Override
+            public MockHttpServer.MockResponse dispatch(MockHttpServer.RecordedRequest request) {
+                if (request.getPath().endsWith("/missing")) {
+                    return new MockHttpServer.MockResponse().setStatus(404);
+                }
+                if (request.getPath().endsWith("/dead")) {
+                    return new MockHttpServer.MockResponse().dropConnection();
+                }
+                return new MockHttpServer.MockResponse().setBody("{\"error\":false}");
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void percentilesFallInTheRightBucket() {
+        RequestMetrics.Histogram histogram = new RequestMetrics.Histogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50500, histogram.getMean());
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 50000 && p50 < 100000);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p99 >= 99000 && p99 <= 100000);
+
+        assertEquals(0, RequestMetrics.Histogram.bucketOf(0));
+        assertEquals(1, RequestMetrics.Histogram.bucketOf(1));
+        assertEquals(11, RequestMetrics.Histogram.bucketOf(1024));
+        assertEquals(RequestMetrics.BUCKETS - 1, RequestMetrics.Histogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void recordingFromManyThreadsLosesNothing() throws Exception {
+        final RequestMetrics metrics = new RequestMetrics();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    RequestMetrics.Route route = metrics.route("GET /inventaris/public/api/mrmart");
+                    for (int i = 0; i < 10000; i++) {
+                        route.record(20, i, 40, 1000, 200);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        RequestMetrics.Route route = metrics.get("GET /inventaris/public/api/mrmart");
+        assertEquals(40000, route.getTotal().getCount());
+        assertEquals(40000, route.getStatusCount(2));
+        assertEquals(9999, route.getFirstByte().getMax());
+    }
+
+    @Test
+    public void recordingAllocatesNothing() {
+        RequestMetrics metrics = new RequestMetrics();
+        String name = "GET /inventaris/public/api/ssjde/user/{id}";
+        //the first round creates the route and lets the jit settle
+        record(metrics, name);
+
+        long allocated = allocatedBytes();
+        record(metrics, name);
+        long recordingBytes = allocatedBytes() - allocated;
+
+        System.out.println("100000 recordings allocated " + recordingBytes + " bytes");
+        //at most a few KB of the vm's own, nothing per call
+        assertTrue(recordingBytes < 8192);
+    }
+
+    @Test
+    public void transportRecordsEveryRoute() throws Exception {
+        HttpTransport transport = HttpTransport.getInstance();
+        transport.getMetrics().reset();
+        String route = HttpHandler.routeOf("GET", HttpHandler.LINK_MRMART_GET);
+        transport.execute(route, "GET", server.url(HttpHandler.LINK_MRMART_GET), null, null);
+        transport.execute(route, "GET", server.url(HttpHandler.LINK_MRMART_GET), null, null);
+        transport.execute("GET /missing", "GET", server.url("/missing"), null, null);
+        try {
+            transport.execute("GET /dead", "GET", server.url("/dead"), null, null);
+            fail();
+        } catch (IOException e) {
+            //expected
+        }
+
+        RequestMetrics.Route mrmart = transport.getMetrics().get(route);
+        assertEquals(2, mrmart.getTotal().getCount());
+        assertEquals(2, mrmart.getStatusCount(2));
+        assertEquals("{\"error\":false}".length(), mrmart.getResponseBytes().getMax());
+        assertEquals(1, transport.getMetrics().get("GET /missing").getStatusCount(4));
+        assertEquals(1, transport.getMetrics().get("GET /dead").getStatusCount(0));
+
+        StringWriter dump = new StringWriter();
+        transport.getMetrics().dump(dump);
+        assertTrue(dump.toString().contains(route + "\n  requests 2"));
+    }
+
+    private static void record(RequestMetrics metrics, String name) {
+        for (int i = 0; i < 100000; i++) {
+            metrics.route(name).record(2 * i, 3 * i, 4 * i, i, 200 + i % 400);
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,120 @@
+package com.hartz.inventory;
+
+import com.hartz.inventory.model.Mfgart;
+import com.hartz.inventory.model.SSJDE;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * checks the pool and reports what it saves on the strings of a 20k line SSJDE history,
+ * counted the way Android 5 lays a String out: object, char array and two bytes a char
+ */
+public class StringPoolTest {
+
+    private static final int DOCUMENTS = 4000;
+    private static final int LINES = 5;
+
+    @Test
+    public void equalStringsComeBackAsOneInstance() {
+        StringPool pool = new StringPool();
+        String first = new String("PCS");
+        assertSame(first, pool.get(first));
+        assertSame(first, pool.get(new String("PCS")));
+        assertNull(pool.get(null));
+
+        //grows past its initial table
+        String[] values = new String[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = pool.get("A" + i);
+        }
+        for (int i = 0; i < values.length; i++) {
+            assertSame(values[i], pool.get("A" + i));
+        }
+        assertEquals(values.length + 1, pool.size());
+    }
+
+    @Test
+    public void pooledHistoryKeepsEveryValueOnce() throws Exception {
+        JSONObject response = history();
+        ArrayList<SSJDE> pooled = SSJDE.getEntriesFromJSON(response, null, new StringPool());
+
+        long parsedBytes = 0;
+        int parsedStrings = 0;
+        IdentityHashMap<String, Boolean> distinct = new IdentityHashMap<String, Boolean>();
+        for (SSJDE ssjde : pooled) {
+            String[] customer = {ssjde.getCustomer().getId(), ssjde.getCustomer().getName()};
+            for (String value : customer) {
+                parsedBytes += stringBytes(value);
+                parsedStrings++;
+                distinct.put(value, Boolean.TRUE);
+            }
+            for (Mfgart mfgart : ssjde.getItemList()) {
+                String[] fields = {mfgart.getGroupID(), mfgart.getArticleID(), mfgart.getArticleName(),
+                        mfgart.getSatuan(), mfgart.getNote()};
+                for (String value : fields) {
+                    //before, getString gave every one of them an instance of its own
+                    parsedBytes += stringBytes(value);
+                    parsedStrings++;
+                    distinct.put(value, Boolean.TRUE);
+                }
+            }
+        }
+        long pooledBytes = 0;
+        for (String value : distinct.keySet()) {
+            pooledBytes += stringBytes(value);
+        }
+
+        System.out.println(DOCUMENTS * LINES + " line history: " + parsedStrings + " strings, "
+                + parsedBytes / 1024 + " KB as parsed, " + distinct.size() + " strings, "
+                + pooledBytes / 1024 + " KB pooled");
+        assertTrue(pooledBytes * 4 < parsedBytes);
+        assertEquals(SSJDE.getEntriesFromJSON(response).get(7).itemListToString(),
+                pooled.get(7).itemListToString());
+    }
+
+    private static long stringBytes(String value) {
+        //String object with its fields, char[] header and the chars, each rounded to 8 bytes
+        return 24 + ((16 + 2L * value.length() + 7) / 8) * 8;
+    }
+
+    /**
+     * documents of a shop ordering from a catalog of 2000 articles, 20 units and 300
+     * customers, most notes empty
+     */
+    private static JSONObject history() throws Exception {
+        Random random = new Random(7);
+        String[] notes = {"", "", "", "", "kirim pagi", "warna hitam", "segera"};
+        JSONArray entries = new JSONArray();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            JSONArray lines = new JSONArray();
+            for (int j = 0; j < LINES; j++) {
+                int article = random.nextInt(2000);
+                JSONObject line = new JSONObject();
+                line.put("SSJDE_GROUP", "G" + article % 40);
+                line.put("SSJDE_ART", "ART" + article);
+                line.put("SSJDE_ARTICLENAME", "Sendal Jepit Nomor " + article);
+                line.put("SSJDE_QTY", 1 + random.nextInt(50));
+                line.put("SSJDE_SATUAN", "S" + random.nextInt(20));
+                line.put("SSJDE_NOTE", notes[random.nextInt(notes.length)]);
+                lines.put(line);
+            }
+            int customer = random.nextInt(300);
+            JSONObject document = new JSONObject();
+            document.put("SSJDE_DateTime", "2017-01-09 08:00:" + i);
+            document.put("SSJDE_CUSTID", "C" + customer);
+            document.put("SSJDE_CUSTNAME", "Toko Nomor " + customer);
+            document.put("ssjded", lines);
+            entries.put(document);
+        }
+        //through text, like a response, so every value starts as its own instance
+        return new JSONObject(new JSONObject().put("entries", entries).toString());
+    }
+}
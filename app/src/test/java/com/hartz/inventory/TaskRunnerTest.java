@@ -0,0 +1,174 @@
+package com.hartz.inventory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * runs tasks on a real pool, results wait in a queue standing in for the main thread
+ */
+public class TaskRunnerTest {
+
+    private final Queue<Runnable> mainThread = new ArrayDeque<Runnable>();
+    private final Executor callback = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            synchronized (mainThread) {
+                mainThread.add(command);
+                mainThread.notifyAll();
+            }
+        }
+    };
+    private final List<String> delivered = new ArrayList<String>();
+    private ExecutorService pool;
+    private TaskRunner runner;
+
+    @Before
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(TaskRunner.DEFAULT_THREADS);
+        runner = new TaskRunner(pool, callback);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void resultsAndErrorsReachTheScreen() throws Exception {
+        TaskRunner.Scope scope = runner.newScope();
+        scope.run(new Recording("ok"));
+        scope.run(new Recording(null));
+        runCallbacks(2);
+        assertEquals(0, scope.size());
+        assertTrue(delivered.contains("ok"));
+        assertTrue(delivered.contains("error"));
+    }
+
+    @Test
+    public void slowTaskDoesNotHoldUpTheNext() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        TaskRunner.Scope scope = runner.newScope();
+        scope.run(new TaskRunner.Task<String>() {
+            @Override
+            protected String doInBackground() throws Exception {
+                release.await();
+                return "slow";
+            }
+
+            @Override
+            protected void onResult(String result) {
+                delivered.add(result);
+            }
+
+            @Override
+            protected void onError(Exception e) {
+                delivered.add("error");
+            }
+        });
+        scope.run(new Recording("quick"));
+        //with a serial executor this would wait for the slow task forever
+        runCallbacks(1);
+        assertEquals("quick", delivered.get(0));
+        release.countDown();
+        runCallbacks(1);
+        assertEquals("slow", delivered.get(1));
+    }
+
+    @Test
+    public void cancelledScopeInterruptsAndDropsResults() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        TaskRunner.Scope scope = runner.newScope();
+        scope.run(new TaskRunner.Task<String>() {
+            @Override
+            protected String doInBackground() throws Exception {
+                started.countDown();
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return "late";
+            }
+
+            @Override
+            protected void onResult(String result) {
+                delivered.add(result);
+            }
+
+            @Override
+            protected void onError(Exception e) {
+                delivered.add("error");
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        scope.cancel();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(0, scope.size());
+
+        //a screen gone away starts nothing more
+        scope.run(new Recording("after"));
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        synchronized (mainThread) {
+            while (!mainThread.isEmpty()) mainThread.poll().run();
+        }
+        assertTrue(delivered.isEmpty());
+    }
+
+    private void runCallbacks(int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            Runnable next;
+            synchronized (mainThread) {
+                long deadline = System.currentTimeMillis() + 5000;
+                while (mainThread.isEmpty() && System.currentTimeMillis() < deadline) {
+                    mainThread.wait(100);
+                }
+                next = mainThread.poll();
+            }
+            assertNotNull("no result delivered", next);
+            next.run();
+        }
+    }
+
+    /**
+     * returns its value, or throws when there is none
+     */
+    private class Recording extends TaskRunner.Task<String> {
+        private final String value;
+
+        Recording(String value) {
+            this.value = value;
+        }
+
+        @Override
+        protected String doInBackground() throws Exception {
+            if (value == null) throw new IllegalStateException("no value");
+            return value;
+        }
+
+        @Override
+        protected void onResult(String result) {
+            delivered.add(result);
+        }
+
+        @Override
+        protected void onError(Exception e) {
+            delivered.add("error");
+        }
+    }
+}
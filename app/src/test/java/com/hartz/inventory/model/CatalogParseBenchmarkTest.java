@@ -0,0 +1,120 @@
+package com.hartz.inventory.model;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * compares the streaming catalog parser with the old org.json tree parsing
+ * on a 100k row synthetic catalog
+ */
+public class CatalogParseBenchmarkTest {
+
+    private static final int ROWS = 100000;
+
+    @Test
+    public void parsesRowsAndErrors() throws Exception {
+        ArrayList<Mrmart> list = Mrmart.parseList(new StringReader("{\"mart\":[{\"MRMART_GROUPID\":\"G1\","
+                + "\"MRMART_ARTICLEID\":12,\"MRMART_ARTICLENAME\":\"Gula\",\"extra\":{\"a\":[1]}}],\"error\":false}"));
+        assertEquals(1, list.size());
+        assertEquals("G1", list.get(0).getGroupID());
+        assertEquals("12", list.get(0).getArticleID());
+        assertEquals("Gula", list.get(0).getArticleName());
+
+        assertNull(Satuan.parseList(new StringReader("{\"error\":true,\"message\":\"token\"}")));
+        assertEquals(0, Customer.parseList(new StringReader("{\"error\":false,\"customers\":[]}")).size());
+    }
+
+    @Test
+    public void streamingUsesLessHeapThanJsonTree() throws Exception {
+        String json = syntheticCatalog(ROWS);
+
+        //warm up both parsers
+        for (int i = 0; i < 3; i++) {
+            parseWithTree(json);
+            Mrmart.parseList(new StringReader(json));
+        }
+
+        long baseline = usedHeapAfterGc();
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        JSONObject tree = new JSONObject(json);
+        ArrayList<Mrmart> treeList = listFromTree(tree);
+        long treeNanos = System.nanoTime() - start;
+        long treeAllocated = allocatedBytes() - allocated;
+        //the old code holds the tree and the list at the same time
+        long treePeak = usedHeapAfterGc() - baseline;
+        assertEquals(ROWS, treeList.size());
+        tree = null;
+        treeList = null;
+
+        baseline = usedHeapAfterGc();
+        allocated = allocatedBytes();
+        start = System.nanoTime();
+        ArrayList<Mrmart> streamList = Mrmart.parseList(new StringReader(json));
+        long streamNanos = System.nanoTime() - start;
+        long streamAllocated = allocatedBytes() - allocated;
+        long streamPeak = usedHeapAfterGc() - baseline;
+        assertEquals(ROWS, streamList.size());
+
+        System.out.println("100k rows json tree: " + treeNanos / 1000000 + " ms, peak "
+                + treePeak / 1024 + " KB, allocated " + treeAllocated / 1024 + " KB");
+        System.out.println("100k rows streaming: " + streamNanos / 1000000 + " ms, peak "
+                + streamPeak / 1024 + " KB, allocated " + streamAllocated / 1024 + " KB");
+        assertTrue(streamPeak < treePeak);
+        if (treeAllocated > 0) assertTrue(streamAllocated < treeAllocated);
+    }
+
+    private static ArrayList<Mrmart> parseWithTree(String json) throws Exception {
+        return listFromTree(new JSONObject(json));
+    }
+
+    private static ArrayList<Mrmart> listFromTree(JSONObject userObject) throws Exception {
+        JSONArray martJSONArray = userObject.getJSONArray("mart");
+        ArrayList<Mrmart> martArray = new ArrayList<Mrmart>();
+        for (int i = 0; i < martJSONArray.length(); i++) {
+            JSONObject martObject = martJSONArray.getJSONObject(i);
+            martArray.add(new Mrmart(martObject.getString("MRMART_GROUPID"),
+                    martObject.getString("MRMART_ARTICLEID"),
+                    martObject.getString("MRMART_ARTICLENAME")));
+        }
+        return martArray;
+    }
+
+    static String syntheticCatalog(int rows) {
+        StringBuilder sb = new StringBuilder(rows * 96);
+        sb.append("{\"error\":false,\"mart\":[");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"MRMART_GROUPID\":\"G").append(i % 50)
+                    .append("\",\"MRMART_ARTICLEID\":\"A").append(i)
+                    .append("\",\"MRMART_ARTICLENAME\":\"Barang nomor ").append(i)
+                    .append("\",\"MRMART_SATUAN\":\"PCS\"}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
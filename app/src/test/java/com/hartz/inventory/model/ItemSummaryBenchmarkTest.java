@@ -0,0 +1,115 @@
+package com.hartz.inventory.model;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * scrolls a 5000 document PPRE list frame by frame, binding every visible row like the
+ * adapter does, once with the text built on every bind as before and once memoized
+ */
+public class ItemSummaryBenchmarkTest {
+
+    private static final int DOCUMENTS = 5000;
+    private static final int LINES = 5;
+    private static final int VISIBLE_ROWS = 8;
+    private static final int ITERATIONS = 5;
+
+    @Test
+    public void memoizedTextMatchesAndFollowsEdits() {
+        PPRE ppre = document(1);
+        assertEquals(perBindText(ppre), ppre.itemListToString());
+        assertSame(ppre.itemListToString(), ppre.itemListToString());
+
+        ppre.getItemList().get(0).setQuantity(99);
+        ppre.itemListChanged();
+        assertTrue(ppre.itemListToString().contains(" 99\n"));
+        assertEquals(perBindText(ppre), ppre.itemListToString());
+
+        ppre.setItemList(new ArrayList<Mrmart>());
+        assertEquals("", ppre.itemListToString());
+    }
+
+    @Test
+    public void memoizedTextAllocatesLessPerFrame() {
+        ArrayList<PPRE> documents = new ArrayList<PPRE>(DOCUMENTS);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            documents.add(document(i));
+        }
+        //warm up, and let the memoized side build its text like the parser does
+        for (int i = 0; i < ITERATIONS; i++) {
+            scroll(documents, false);
+            scroll(documents, true);
+        }
+
+        long perBind = Long.MAX_VALUE;
+        long memoized = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            perBind = Math.min(perBind, scroll(documents, false));
+            memoized = Math.min(memoized, scroll(documents, true));
+        }
+        int frames = DOCUMENTS - VISIBLE_ROWS;
+        System.out.println(DOCUMENTS + " documents: per bind " + perBind / frames + " bytes/frame, memoized "
+                + memoized / frames + " bytes/frame");
+        if (perBind > 0) assertTrue(memoized * 10 < perBind);
+    }
+
+    /**
+     * @return bytes allocated while scrolling from the top to the bottom one row per frame
+     */
+    private static long scroll(ArrayList<PPRE> documents, boolean memoized) {
+        long checksum = 0;
+        long allocated = allocatedBytes();
+        for (int frame = 0; frame < documents.size() - VISIBLE_ROWS; frame++) {
+            for (int row = frame; row < frame + VISIBLE_ROWS; row++) {
+                PPRE ppre = documents.get(row);
+                String text = memoized ? ppre.itemListToString() : perBindText(ppre);
+                checksum += text.length();
+            }
+        }
+        allocated = allocatedBytes() - allocated;
+        assertTrue(checksum > 0);
+        return allocated;
+    }
+
+    /**
+     * the text as getView built it before, on every bind
+     */
+    private static String perBindText(PPRE ppre) {
+        ArrayList<Mrmart> itemList = ppre.getItemList();
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < itemList.size(); i++){
+            Mrmart mrmart = itemList.get(i);
+            sb.append(mrmart.getArticleName());
+            sb.append(" ("+mrmart.getGroupID()+")");
+            sb.append(" "+mrmart.getQuantity());
+
+            sb.append("\nCatatan: "+mrmart.getNote());
+            if(i != itemList.size()-1)sb.append("\r\n\r\n");
+        }
+        return sb.toString();
+    }
+
+    private static PPRE document(int n) {
+        ArrayList<Mrmart> lines = new ArrayList<Mrmart>();
+        for (int j = 0; j < LINES; j++) {
+            lines.add(new Mrmart("G" + j, "A" + n + "-" + j, "Artikel nomor " + j, j + 1, "PCS",
+                    "catatan " + n));
+        }
+        PPRE ppre = new PPRE("2017-01-05 10:00:" + n);
+        ppre.setItemList(lines);
+        return ppre;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}